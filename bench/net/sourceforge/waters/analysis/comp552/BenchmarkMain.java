@@ -0,0 +1,48 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the checker with the GC profiler, so that every result comes with its allocation rate.
+ *
+ * <P>The benchmarks are compiled from the <CODE>bench</CODE> directory together with the sources, with JMH and its
+ * annotation processor on the class path, and run as follows. Any JMH option can be given, for example a pattern
+ * selecting the benchmarks to run.</P>
+ *
+ * <P><CODE>java -cp &lt;<I>classpath</I>&gt; net.sourceforge.waters.analysis.comp552.BenchmarkMain
+ * [<I>jmh options</I>]</CODE></P>
+ *
+ * <P>The benchmarks are the following.</P>
+ *
+ * <UL>
+ * <LI>{@link StateTupleEncoderBenchmark} &ndash; encoding and decoding state tuples.</LI>
+ * <LI>{@link StateTupleSetBenchmark} &ndash; the visited state sets at several fill levels.</LI>
+ * <LI>{@link SuccessorGeneratorBenchmark} &ndash; the successors of a single state.</LI>
+ * <LI>{@link ControllabilityCheckerBenchmark} &ndash; complete runs of the checker.</LI>
+ * </UL>
+ */
+public class BenchmarkMain {
+  /**
+   * Dummy constructor to prevent instantiation of this class.
+   */
+  private BenchmarkMain() {
+  }
+
+  /**
+   * Runs the benchmarks.
+   *
+   * @param args JMH options.
+   * @throws Exception If the options are not valid or a benchmark fails.
+   */
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,84 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.des.ProductDESProxy;
+import net.sourceforge.waters.model.des.ProductDESProxyFactory;
+import net.sourceforge.waters.plain.des.ProductDESElementFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures complete runs of a {@link ControllabilityChecker} on models from a {@link ModelGenerator}, including
+ * compiling the model and, for models with a planted violation, computing the counterexample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ControllabilityCheckerBenchmark {
+  /**
+   * Number of plants of the model.
+   */
+  @Param({"4", "5"})
+  public int plants;
+
+  /**
+   * Number of states of each plant.
+   */
+  @Param({"8"})
+  public int states;
+
+  /**
+   * Number of steps before the planted violation, or -1 for a controllable model.
+   */
+  @Param({"-1", "12"})
+  public int violationDepth;
+
+  /**
+   * The strategy to explore with.
+   */
+  @Param({"BREADTH_FIRST", "DEPTH_FIRST", "SYMBOLIC"})
+  public ExplorationStrategy strategy;
+
+  /**
+   * The factory for the model and the counterexamples.
+   */
+  private final ProductDESProxyFactory factory = ProductDESElementFactory.getInstance();
+
+  /**
+   * The model.
+   */
+  private ProductDESProxy des;
+
+  /**
+   * Builds the model.
+   */
+  @Setup
+  public void setup() {
+    ModelGenerator generator = new ModelGenerator(factory);
+    generator.setPlantCount(plants);
+    generator.setStateCount(states);
+    generator.setViolationDepth(violationDepth);
+    des = generator.generate();
+  }
+
+  /**
+   * Checks the model.
+   *
+   * @return The number of states visited.
+   * @throws Exception If the check fails.
+   */
+  @Benchmark
+  public long run() throws Exception {
+    ControllabilityChecker checker = new ControllabilityChecker(des, factory);
+    checker.setExplorationStrategy(strategy);
+    if (checker.run() != violationDepth < 0) throw new IllegalStateException("The verdict is wrong.");
+    return checker.getVisitedStateCount();
+  }
+}
@@ -0,0 +1,110 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures converting between tuples of state indices and state tuple codes with a {@link StateTupleEncoder}.
+ */
+@State(Scope.Thread)
+public class StateTupleEncoderBenchmark {
+  /**
+   * Number of tuples and codes cycled through, a power of two.
+   */
+  private static final int SAMPLES = 1024;
+
+  /**
+   * Number of automata in a tuple.
+   */
+  @Param({"4", "16"})
+  public int automata;
+
+  /**
+   * Number of states of each automaton.
+   */
+  @Param({"3", "15"})
+  public int states;
+
+  /**
+   * The encoder.
+   */
+  private StateTupleEncoder encoder;
+
+  /**
+   * Random tuples of state indices.
+   */
+  private int[][] tuples;
+
+  /**
+   * The codes of the tuples.
+   */
+  private long[] codes;
+
+  /**
+   * Buffer for decoded tuples.
+   */
+  private int[] decoded;
+
+  /**
+   * Index of the next tuple or code to use.
+   */
+  private int next;
+
+  /**
+   * Creates the encoder and the tuples.
+   */
+  @Setup
+  public void setup() {
+    int[] stateCounts = new int[automata];
+    for (int i = 0; i < automata; i++) stateCounts[i] = states;
+    encoder = new StateTupleEncoder(stateCounts);
+
+    Random random = new Random(0);
+    tuples = new int[SAMPLES][automata];
+    codes = new long[SAMPLES];
+    for (int k = 0; k < SAMPLES; k++) {
+      for (int i = 0; i < automata; i++) tuples[k][i] = random.nextInt(states);
+      codes[k] = encoder.encode(tuples[k]);
+    }
+    decoded = new int[automata];
+  }
+
+  /**
+   * Encodes a tuple of state indices.
+   *
+   * @return The code.
+   */
+  @Benchmark
+  public long encode() {
+    next = (next + 1) & (SAMPLES - 1);
+    return encoder.encode(tuples[next]);
+  }
+
+  /**
+   * Decodes a state tuple code.
+   *
+   * @return The decoded tuple.
+   */
+  @Benchmark
+  public int[] decode() {
+    next = (next + 1) & (SAMPLES - 1);
+    encoder.decode(codes[next], decoded);
+    return decoded;
+  }
+
+  /**
+   * Reads the state of one automaton from a state tuple code.
+   *
+   * @return The state index.
+   */
+  @Benchmark
+  public int getStateIndex() {
+    next = (next + 1) & (SAMPLES - 1);
+    return encoder.getStateIndex(codes[next], next % automata);
+  }
+}
@@ -0,0 +1,173 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * Measures the operations of the {@link StateTupleSet} implementations on sets already holding a number of states.
+ * Adding and popping change the set, so they are measured in batches on a set filled again before each batch.
+ */
+public class StateTupleSetBenchmark {
+  /**
+   * Number of operations in a batch.
+   */
+  private static final int BATCH = 65536;
+
+  /**
+   * Creates a state tuple set for a storage.
+   *
+   * @param storage The storage.
+   * @return The empty set.
+   */
+  private static StateTupleSet create(StateStorage storage) {
+    return storage == StateStorage.OFF_HEAP ? new OffHeapStateTupleSet() : new HeapStateTupleSet();
+  }
+
+  /**
+   * Codes of distinct random states, the first of which fill the set and the rest of which are not in it.
+   *
+   * @param count Number of codes.
+   * @return The codes.
+   */
+  private static long[] randomStates(int count) {
+    // states of a 40 bit model, like a model of ten automata of fifteen states
+    return new Random(0).longs(0, 1L << 40).distinct().limit(count).toArray();
+  }
+
+  /**
+   * A set filled once for operations that do not change it.
+   */
+  @State(Scope.Thread)
+  public static class FilledSet {
+    /**
+     * The storage of the set.
+     */
+    @Param({"HEAP", "OFF_HEAP"})
+    public StateStorage storage;
+
+    /**
+     * Number of states in the set.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int fill;
+
+    /**
+     * The set.
+     */
+    StateTupleSet set;
+
+    /**
+     * States in the set followed by as many states not in it.
+     */
+    long[] states;
+
+    /**
+     * Index of the next state to look up.
+     */
+    int next;
+
+    /**
+     * Fills the set.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+      states = randomStates(2 * fill);
+      set = create(storage);
+      for (int k = 0; k < fill; k++) set.add(states[k], states[0], k & 0xFF);
+    }
+  }
+
+  /**
+   * A set filled again before each batch, for operations that change it.
+   */
+  @State(Scope.Thread)
+  public static class BatchSet {
+    /**
+     * The storage of the set.
+     */
+    @Param({"HEAP", "OFF_HEAP"})
+    public StateStorage storage;
+
+    /**
+     * Number of states in the set before a batch, at least a batch so that popping never runs out.
+     */
+    @Param({"100000", "1000000"})
+    public int fill;
+
+    /**
+     * The set.
+     */
+    StateTupleSet set;
+
+    /**
+     * States filling the set followed by a batch of states not in it.
+     */
+    long[] states;
+
+    /**
+     * Creates the states.
+     */
+    @Setup(Level.Trial)
+    public void createStates() {
+      states = randomStates(fill + BATCH);
+    }
+
+    /**
+     * Fills a new set, which is not timed.
+     */
+    @Setup(Level.Invocation)
+    public void fill() {
+      set = create(storage);
+      for (int k = 0; k < fill; k++) set.add(states[k], states[0], k & 0xFF);
+    }
+  }
+
+  /**
+   * Looks up a state in the set, alternating between states in it and states not in it.
+   *
+   * @param state The filled set.
+   * @return Whether the state is in the set.
+   */
+  @Benchmark
+  public boolean contains(FilledSet state) {
+    int k = state.next;
+    state.next = k + 1 == state.states.length ? 0 : k + 1;
+    // alternate between the first and second half
+    int index = (k & 1) == 0 ? k >> 1 : state.fill + (k >> 1);
+    return state.set.contains(state.states[index]);
+  }
+
+  /**
+   * Adds a batch of new states to the set.
+   *
+   * @param state The set.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void add(BatchSet state) {
+    StateTupleSet set = state.set;
+    long[] states = state.states;
+    for (int k = state.fill; k < states.length; k++) set.add(states[k], states[k - 1], k & 0xFF);
+  }
+
+  /**
+   * Pops a batch of unexpanded states from the queue of the set.
+   *
+   * @param state     The set.
+   * @param blackhole Consumes the states.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void popUnexpanded(BatchSet state, Blackhole blackhole) {
+    StateTupleSet set = state.set;
+    for (int k = 0; k < BATCH && set.containsUnexpanded(); k++) blackhole.consume(set.popUnexpanded());
+  }
+}
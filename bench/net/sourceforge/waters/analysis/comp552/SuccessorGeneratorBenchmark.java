@@ -0,0 +1,107 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.des.AutomatonProxy;
+import net.sourceforge.waters.model.des.EventProxy;
+import net.sourceforge.waters.model.des.ProductDESProxy;
+import net.sourceforge.waters.plain.des.ProductDESElementFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Measures computing the successors of a single state with a {@link SuccessorGenerator}, cycling through reachable
+ * states of a model from a {@link ModelGenerator}.
+ */
+@State(Scope.Thread)
+public class SuccessorGeneratorBenchmark {
+  /**
+   * Number of reachable states cycled through, a power of two.
+   */
+  private static final int SAMPLES = 4096;
+
+  /**
+   * Number of plants of the model.
+   */
+  @Param({"4", "12"})
+  public int plants;
+
+  /**
+   * Number of states of each plant.
+   */
+  @Param({"8"})
+  public int states;
+
+  /**
+   * The order in which the generator intersects the enabled events.
+   */
+  @Param({"FIXED", "STATIC", "DYNAMIC"})
+  public AutomatonOrdering ordering;
+
+  /**
+   * The generator.
+   */
+  private SuccessorGenerator generator;
+
+  /**
+   * Codes of reachable states.
+   */
+  private long[] reachable;
+
+  /**
+   * Index of the next state to expand.
+   */
+  private int next;
+
+  /**
+   * Compiles the model and collects reachable states breadth first.
+   */
+  @Setup
+  public void setup() {
+    ModelGenerator modelGenerator = new ModelGenerator(ProductDESElementFactory.getInstance());
+    modelGenerator.setPlantCount(plants);
+    modelGenerator.setStateCount(states);
+    ProductDESProxy des = modelGenerator.generate();
+    AutomatonProxy[] automata = des.getAutomata().toArray(new AutomatonProxy[0]);
+    EventProxy[] events = des.getEvents().toArray(new EventProxy[0]);
+    StateTupleEncoder encoder = new StateTupleEncoder(automata);
+    CompiledModel model = new CompiledModel(automata, events, encoder);
+    model.setAutomatonOrdering(ordering);
+    generator = new SuccessorGenerator(model, encoder);
+
+    reachable = new long[SAMPLES];
+    Set<Long> visited = new HashSet<>();
+    Queue<Long> queue = new ArrayDeque<>();
+    long initial = encoder.encode(model.getInitialState());
+    visited.add(initial);
+    queue.add(initial);
+    int count = 0;
+    while (count < SAMPLES && !queue.isEmpty()) {
+      long state = queue.remove();
+      reachable[count++] = state;
+      int successorCount = generator.expand(state);
+      for (int k = 0; k < successorCount; k++) {
+        if (visited.add(generator.getSuccessor(k))) queue.add(generator.getSuccessor(k));
+      }
+    }
+    // small models are cycled through more than once
+    for (int k = count; k < SAMPLES; k++) reachable[k] = reachable[k - count];
+  }
+
+  /**
+   * Computes the successors of a reachable state.
+   *
+   * @return Number of successors.
+   */
+  @Benchmark
+  public int expand() {
+    next = (next + 1) & (SAMPLES - 1);
+    return generator.expand(reachable[next]);
+  }
+}
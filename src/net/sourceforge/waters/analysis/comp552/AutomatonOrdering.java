@@ -0,0 +1,25 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * The orders in which a {@link SuccessorGenerator} can intersect the sets of events enabled by the states of the
+ * automata. The generator stops as soon as no event can be enabled or violate controllability any more, so visiting
+ * the automata that disable the most events first makes states with nothing to explore cheaper. The order never
+ * changes the successors found.
+ */
+public enum AutomatonOrdering {
+  /**
+   * The order of the automata in the model, plants first and specifications last.
+   */
+  FIXED,
+
+  /**
+   * Decreasing number of events an automaton disables in an average state, computed from the transition tables.
+   */
+  STATIC,
+
+  /**
+   * Decreasing number of events an automaton disabled in the states seen by the first expansions of each generator,
+   * starting from the {@link #STATIC} order.
+   */
+  DYNAMIC
+}
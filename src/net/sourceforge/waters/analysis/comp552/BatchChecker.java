@@ -0,0 +1,289 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.des.EventProxy;
+import net.sourceforge.waters.model.des.ProductDESProxy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks many models in one process, so that the loader and the compiled code of the checker stay warm between
+ * models. Models are checked concurrently by a fixed number of workers, and the verdict of each model is written as
+ * soon as it is known, so verdicts come in the order the checks finish rather than the order they were submitted.
+ *
+ * <P>Each verdict is one line of tab separated fields: the path of the model, the verdict (<CODE>controllable</CODE>,
+ * <CODE>probably controllable</CODE>, <CODE>NOT controllable</CODE>, <CODE>UNKNOWN</CODE> or <CODE>ERROR</CODE>), the
+ * number of states visited, the time taken in milliseconds and, for uncontrollable models, the events of the
+ * counterexample separated by spaces. A check stopped by a {@link ResourceLimitException} is unknown, and its line
+ * ends with the exceeded limit in place of the counterexample. An error line has the message of the error in place of
+ * the number of states and the time.</P>
+ *
+ * <P>At most twice as many models as there are workers are accepted at once, and submitting blocks until a worker
+ * catches up, so that a long list of models is not read into memory ahead of the checks.</P>
+ */
+public class BatchChecker implements AutoCloseable {
+  /**
+   * Number of milliseconds the server waits for a connection before it checks whether its thread was interrupted.
+   */
+  private static final int ACCEPT_TIMEOUT = 500;
+
+  /**
+   * Loads the models of all jobs.
+   */
+  private final ModelLoader loader;
+
+  /**
+   * The workers checking the models.
+   */
+  private final ExecutorService workers;
+
+  /**
+   * Permits for the jobs accepted but not finished.
+   */
+  private final Semaphore slots;
+
+  /**
+   * Watches the progress of the checks, or null if their progress is not surfaced.
+   */
+  private ProgressReporter progressReporter;
+
+  /**
+   * Create a batch checker.
+   *
+   * @param loader      Loads the models of all jobs.
+   * @param workerCount Number of models checked at once.
+   */
+  public BatchChecker(ModelLoader loader, int workerCount) {
+    this.loader = loader;
+    workers = Executors.newFixedThreadPool(workerCount);
+    slots = new Semaphore(2 * workerCount);
+  }
+
+  /**
+   * Sets a reporter to watch the progress of each check while it runs.
+   *
+   * @param progressReporter The reporter, or null to not surface the progress of the checks.
+   */
+  public void setProgressReporter(ProgressReporter progressReporter) {
+    this.progressReporter = progressReporter;
+  }
+
+  /**
+   * Starts a batch of jobs whose verdicts are written to an output.
+   *
+   * @param output Where the verdicts are written.
+   * @return The batch.
+   */
+  public Batch open(PrintWriter output) {
+    return new Batch(output);
+  }
+
+  /**
+   * Checks the models named by the lines of a reader, one path per line, until the reader is exhausted and all of the
+   * models are checked. Blank lines are skipped.
+   *
+   * @param input    The reader.
+   * @param settings The options to check the models with.
+   * @param output   Where the verdicts are written.
+   * @throws IOException          If the reader fails.
+   * @throws InterruptedException If the thread is interrupted while waiting for the workers.
+   */
+  public void checkAll(BufferedReader input, CheckerSettings settings, PrintWriter output)
+      throws IOException, InterruptedException {
+    Batch batch = open(output);
+    for (String line = input.readLine(); line != null; line = input.readLine()) {
+      line = line.trim();
+      if (!line.isEmpty()) batch.submit(new File(line), settings);
+    }
+    batch.await();
+  }
+
+  /**
+   * Accepts connections on a port of the loopback address until the thread is interrupted or the socket fails. Each
+   * connection sends model paths, one per line, and receives their verdicts. The verdicts of a connection are complete
+   * when it is closed after its last path is sent. An interrupt is noticed within {@link #ACCEPT_TIMEOUT}
+   * milliseconds.
+   *
+   * @param port     The port.
+   * @param settings The options to check the models with.
+   * @throws IOException If the server socket cannot be opened.
+   */
+  public void serve(int port, CheckerSettings settings) throws IOException {
+    try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      // accepting ignores interrupts, so it gives up regularly to look for one
+      server.setSoTimeout(ACCEPT_TIMEOUT);
+      while (!Thread.currentThread().isInterrupted()) {
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketTimeoutException exception) {
+          continue;
+        }
+        Thread connection = new Thread(() -> handle(socket, settings), "batch-connection");
+        connection.setDaemon(true);
+        connection.start();
+      }
+    }
+  }
+
+  /**
+   * Checks the models sent by one connection.
+   *
+   * @param socket   The connection.
+   * @param settings The options to check the models with.
+   */
+  private void handle(Socket socket, CheckerSettings settings) {
+    try (Socket closing = socket;
+         BufferedReader input = new BufferedReader(
+             new InputStreamReader(closing.getInputStream(), StandardCharsets.UTF_8));
+         PrintWriter output = new PrintWriter(
+             new OutputStreamWriter(closing.getOutputStream(), StandardCharsets.UTF_8), true)) {
+      checkAll(input, settings, output);
+    } catch (IOException exception) {
+      // the client went away, its remaining verdicts have nowhere to go
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Checks a model and describes the result.
+   *
+   * @param file     The file of the model.
+   * @param settings The options to check the model with.
+   * @return The verdict line.
+   */
+  private String check(File file, CheckerSettings settings) {
+    StringJoiner line = new StringJoiner("\t");
+    line.add(file.getPath());
+    try {
+      long start = System.nanoTime();
+      ProductDESProxy des = loader.load(file);
+      ControllabilityChecker checker = new ControllabilityChecker(des, loader.getFactory());
+      settings.configure(checker);
+      ProgressReporter reporter = progressReporter;
+      if (reporter != null) reporter.watch(checker.getMetrics());
+      boolean result;
+      try {
+        result = checker.run();
+      } catch (ResourceLimitException exception) {
+        line.add("UNKNOWN");
+        line.add(Long.toString(exception.getStateCount()));
+        line.add(Long.toString(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        line.add(exception.getMessage());
+        return line.toString();
+      } finally {
+        if (reporter != null) reporter.unwatch(checker.getMetrics());
+      }
+      long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      if (result && checker.isResultApproximate()) line.add("probably controllable");
+      else if (result) line.add("controllable");
+      else line.add("NOT controllable");
+      line.add(Long.toString(checker.getVisitedStateCount()));
+      line.add(Long.toString(time));
+      if (!result) {
+        StringJoiner trace = new StringJoiner(" ");
+        for (EventProxy event : checker.getCounterExample().getTrace().getEvents()) trace.add(event.getName());
+        line.add(trace.toString());
+      }
+    } catch (Exception | OutOfMemoryError exception) {
+      line.add("ERROR");
+      String message = exception.getMessage();
+      line.add(exception.getClass().getSimpleName() + (message == null ? "" : ": " + message.replace('\n', ' ')));
+    }
+    return line.toString();
+  }
+
+  /**
+   * Stops accepting jobs and waits for the accepted ones to finish. If the thread is interrupted while waiting, the
+   * accepted jobs are left to finish on their own and the interrupt status of the thread is restored.
+   */
+  @Override
+  public void close() {
+    workers.shutdown();
+    try {
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A group of jobs whose verdicts go to the same output, which can be waited for together.
+   */
+  public class Batch {
+    /**
+     * Where the verdicts are written, also used to keep lines from interleaving.
+     */
+    private final PrintWriter output;
+
+    /**
+     * Tracks the jobs of the batch that have not finished.
+     */
+    private final Phaser pending = new Phaser(1);
+
+    /**
+     * Create a batch.
+     *
+     * @param output Where the verdicts are written.
+     */
+    private Batch(PrintWriter output) {
+      this.output = output;
+    }
+
+    /**
+     * Submits a model to be checked, waiting while too many jobs are in progress.
+     *
+     * @param file     The file of the model.
+     * @param settings The options to check the model with, which must not be changed afterwards.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void submit(File file, CheckerSettings settings) throws InterruptedException {
+      slots.acquire();
+      pending.register();
+      try {
+        workers.execute(() -> {
+          try {
+            String line = check(file, settings);
+            synchronized (output) {
+              output.println(line);
+              output.flush();
+            }
+          } finally {
+            pending.arriveAndDeregister();
+            slots.release();
+          }
+        });
+      } catch (RuntimeException exception) {
+        pending.arriveAndDeregister();
+        slots.release();
+        throw exception;
+      }
+    }
+
+    /**
+     * Waits for all jobs submitted so far to finish. No jobs may be submitted afterwards.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void await() throws InterruptedException {
+      pending.awaitAdvanceInterruptibly(pending.arrive());
+    }
+  }
+}
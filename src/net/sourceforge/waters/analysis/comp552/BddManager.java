@@ -0,0 +1,596 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A table of reduced ordered binary decision diagrams over a fixed number of variables, with the operations needed to
+ * explore a state space symbolically.
+ *
+ * <P>Nodes are referred to by their index in parallel arrays. Index 0 is the constant false and index 1 the constant
+ * true, whose variable is the number of variables so they come after every real variable. Nodes are unique, so two
+ * diagrams are equal exactly when their indices are. The results of operations are remembered in a direct mapped
+ * cache.</P>
+ *
+ * <P>Nodes that are no longer needed are only freed by {@link #collectGarbage()}, which keeps the nodes reachable from
+ * those with a positive reference count. It must only be called when every diagram still in use has been referenced
+ * with {@link #ref(int)}.</P>
+ */
+public class BddManager {
+  /**
+   * The constant false.
+   */
+  public static final int FALSE = 0;
+
+  /**
+   * The constant true.
+   */
+  public static final int TRUE = 1;
+
+  /**
+   * Largest number of nodes the table may hold.
+   */
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  /**
+   * Operation code of conjunction in the cache.
+   */
+  private static final int OP_AND = 0;
+
+  /**
+   * Operation code of disjunction in the cache.
+   */
+  private static final int OP_OR = 1;
+
+  /**
+   * Operation code of negation in the cache.
+   */
+  private static final int OP_NOT = 2;
+
+  /**
+   * Operation code of the relational product in the cache.
+   */
+  private static final int OP_REL_PROD = 3;
+
+  /**
+   * Operation code of renaming next state variables in the cache.
+   */
+  private static final int OP_RENAME = 4;
+
+  /**
+   * Number of variables.
+   */
+  private final int variableCount;
+
+  /**
+   * The variable of each node.
+   */
+  private int[] variables;
+
+  /**
+   * The child of each node for the variable being false.
+   */
+  private int[] lows;
+
+  /**
+   * The child of each node for the variable being true.
+   */
+  private int[] highs;
+
+  /**
+   * The next node in the same bucket of the unique table, or in the free list for free nodes.
+   */
+  private int[] nexts;
+
+  /**
+   * The number of references to each node from outside the table.
+   */
+  private int[] refs;
+
+  /**
+   * The first node in each bucket of the unique table.
+   */
+  private int[] buckets;
+
+  /**
+   * The first free node, or -1 if there is none.
+   */
+  private int freeList;
+
+  /**
+   * Number of nodes in use, including the constants.
+   */
+  private int nodeCount;
+
+  /**
+   * The operation code and operands of each cache entry, four ints per entry.
+   */
+  private int[] cacheKeys;
+
+  /**
+   * The result of each cache entry.
+   */
+  private int[] cacheResults;
+
+  /**
+   * Create an empty table.
+   *
+   * @param variableCount   Number of variables.
+   * @param initialCapacity Number of nodes the table can hold before it is grown.
+   */
+  public BddManager(int variableCount, int initialCapacity) {
+    this.variableCount = variableCount;
+    int capacity = Integer.highestOneBit(Math.max(initialCapacity, 1024) - 1) << 1;
+    variables = new int[capacity];
+    lows = new int[capacity];
+    highs = new int[capacity];
+    nexts = new int[capacity];
+    refs = new int[capacity];
+    buckets = new int[capacity];
+    cacheKeys = new int[capacity << 2];
+    cacheResults = new int[capacity];
+
+    for (int n = FALSE; n <= TRUE; n++) {
+      variables[n] = variableCount;
+      lows[n] = n;
+      highs[n] = n;
+      refs[n] = 1;
+    }
+    Arrays.fill(variables, TRUE + 1, capacity, -1);
+    nodeCount = 2;
+    rebuild();
+  }
+
+  /**
+   * Gets the number of variables.
+   *
+   * @return The number of variables.
+   */
+  public int getVariableCount() {
+    return variableCount;
+  }
+
+  /**
+   * Gets the number of nodes in use, including the constants.
+   *
+   * @return The number of nodes.
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * Gets the number of bytes used by the node table and the operation cache.
+   *
+   * @return The number of bytes.
+   */
+  public long getMemoryBytes() {
+    return 4L * (5L * variables.length + buckets.length + cacheKeys.length + cacheResults.length);
+  }
+
+  /**
+   * Gets the variable of a node.
+   *
+   * @param node The node.
+   * @return The variable, or the number of variables for a constant.
+   */
+  public int getVariable(int node) {
+    return variables[node];
+  }
+
+  /**
+   * Gets the child of a node for its variable being false.
+   *
+   * @param node The node.
+   * @return The child.
+   */
+  public int getLow(int node) {
+    return lows[node];
+  }
+
+  /**
+   * Gets the child of a node for its variable being true.
+   *
+   * @param node The node.
+   * @return The child.
+   */
+  public int getHigh(int node) {
+    return highs[node];
+  }
+
+  /**
+   * Adds a reference to a diagram, keeping it from being freed by {@link #collectGarbage()}.
+   *
+   * @param node The root of the diagram.
+   * @return The node.
+   */
+  public int ref(int node) {
+    refs[node]++;
+    return node;
+  }
+
+  /**
+   * Removes a reference added by {@link #ref(int)}.
+   *
+   * @param node The root of the diagram.
+   */
+  public void deref(int node) {
+    if (refs[node] == 0) throw new IllegalStateException("Node " + node + " is not referenced.");
+    refs[node]--;
+  }
+
+  /**
+   * Gets the node for a variable and its two children, creating it if it does not exist yet.
+   *
+   * @param variable The variable, which must come before the variables of both children.
+   * @param low      The child for the variable being false.
+   * @param high     The child for the variable being true.
+   * @return The node, or the child if both children are the same.
+   */
+  public int mk(int variable, int low, int high) {
+    if (low == high) return low;
+
+    int bucket = hash(variable, low, high) & (buckets.length - 1);
+    for (int n = buckets[bucket]; n >= 0; n = nexts[n]) {
+      if (variables[n] == variable && lows[n] == low && highs[n] == high) return n;
+    }
+
+    if (freeList < 0) {
+      grow();
+      bucket = hash(variable, low, high) & (buckets.length - 1);
+    }
+    int n = freeList;
+    freeList = nexts[n];
+    variables[n] = variable;
+    lows[n] = low;
+    highs[n] = high;
+    nexts[n] = buckets[bucket];
+    buckets[bucket] = n;
+    nodeCount++;
+    return n;
+  }
+
+  /**
+   * Gets the diagram of a single variable being true or false.
+   *
+   * @param variable The variable.
+   * @param value    The value of the variable.
+   * @return The diagram.
+   */
+  public int literal(int variable, boolean value) {
+    return value ? mk(variable, FALSE, TRUE) : mk(variable, TRUE, FALSE);
+  }
+
+  /**
+   * Computes the conjunction of two diagrams.
+   *
+   * @param a The first diagram.
+   * @param b The second diagram.
+   * @return The conjunction.
+   */
+  public int and(int a, int b) {
+    if (a == FALSE || b == FALSE) return FALSE;
+    if (a == TRUE || a == b) return b;
+    if (b == TRUE) return a;
+    if (a > b) {
+      int swap = a;
+      a = b;
+      b = swap;
+    }
+
+    int cached = lookup(OP_AND, a, b, 0);
+    if (cached >= 0) return cached;
+
+    int variable = Math.min(variables[a], variables[b]);
+    int low = and(cofactor(a, variable, false), cofactor(b, variable, false));
+    int high = and(cofactor(a, variable, true), cofactor(b, variable, true));
+    return store(OP_AND, a, b, 0, mk(variable, low, high));
+  }
+
+  /**
+   * Computes the disjunction of two diagrams.
+   *
+   * @param a The first diagram.
+   * @param b The second diagram.
+   * @return The disjunction.
+   */
+  public int or(int a, int b) {
+    if (a == TRUE || b == TRUE) return TRUE;
+    if (a == FALSE || a == b) return b;
+    if (b == FALSE) return a;
+    if (a > b) {
+      int swap = a;
+      a = b;
+      b = swap;
+    }
+
+    int cached = lookup(OP_OR, a, b, 0);
+    if (cached >= 0) return cached;
+
+    int variable = Math.min(variables[a], variables[b]);
+    int low = or(cofactor(a, variable, false), cofactor(b, variable, false));
+    int high = or(cofactor(a, variable, true), cofactor(b, variable, true));
+    return store(OP_OR, a, b, 0, mk(variable, low, high));
+  }
+
+  /**
+   * Computes the negation of a diagram.
+   *
+   * @param a The diagram.
+   * @return The negation.
+   */
+  public int not(int a) {
+    if (a <= TRUE) return TRUE - a;
+
+    int cached = lookup(OP_NOT, a, 0, 0);
+    if (cached >= 0) return cached;
+
+    return store(OP_NOT, a, 0, 0, mk(variables[a], not(lows[a]), not(highs[a])));
+  }
+
+  /**
+   * Computes the states in one diagram but not in another.
+   *
+   * @param a The first diagram.
+   * @param b The second diagram.
+   * @return The conjunction of the first diagram and the negation of the second.
+   */
+  public int diff(int a, int b) {
+    return and(a, not(b));
+  }
+
+  /**
+   * Computes the conjunction of two diagrams with a set of variables existentially quantified, without building the
+   * whole conjunction first.
+   *
+   * @param a    The first diagram.
+   * @param b    The second diagram.
+   * @param cube The conjunction of the positive literals of the variables to quantify.
+   * @return The quantified conjunction.
+   */
+  public int relProd(int a, int b, int cube) {
+    if (a == FALSE || b == FALSE) return FALSE;
+    if (a == TRUE && b == TRUE) return TRUE;
+
+    int variable = Math.min(variables[a], variables[b]);
+    while (variables[cube] < variable) cube = highs[cube];
+    if (cube == TRUE) return and(a, b);
+    if (a > b) {
+      int swap = a;
+      a = b;
+      b = swap;
+    }
+
+    int cached = lookup(OP_REL_PROD, a, b, cube);
+    if (cached >= 0) return cached;
+
+    int result;
+    if (variables[cube] == variable) {
+      int rest = highs[cube];
+      int low = relProd(cofactor(a, variable, false), cofactor(b, variable, false), rest);
+      result = low == TRUE ? TRUE : or(low, relProd(cofactor(a, variable, true), cofactor(b, variable, true), rest));
+    } else {
+      int low = relProd(cofactor(a, variable, false), cofactor(b, variable, false), cube);
+      int high = relProd(cofactor(a, variable, true), cofactor(b, variable, true), cube);
+      result = mk(variable, low, high);
+    }
+    return store(OP_REL_PROD, a, b, cube, result);
+  }
+
+  /**
+   * Renames every odd variable to the even variable before it. Variables are expected to come in pairs of a current
+   * and a next state variable, and the diagram must not contain both variables of any pair.
+   *
+   * @param a The diagram.
+   * @return The renamed diagram.
+   */
+  public int renameNextToCurrent(int a) {
+    if (a <= TRUE) return a;
+
+    int cached = lookup(OP_RENAME, a, 0, 0);
+    if (cached >= 0) return cached;
+
+    int low = renameNextToCurrent(lows[a]);
+    int high = renameNextToCurrent(highs[a]);
+    return store(OP_RENAME, a, 0, 0, mk(variables[a] & ~1, low, high));
+  }
+
+  /**
+   * Counts the assignments to the even variables satisfying a diagram over only even variables.
+   *
+   * @param a The diagram.
+   * @return The number of satisfying assignments.
+   */
+  public double satCountCurrent(int a) {
+    // only the nodes of the diagram are counted, which are usually few compared to the whole table
+    return satCountCurrent(a, new HashMap<>()) * Math.pow(2, variables[a] >> 1);
+  }
+
+  /**
+   * Finds an assignment satisfying a diagram, with variables the diagram does not depend on set to false.
+   *
+   * @param a The diagram, which must not be false.
+   * @return Array of the value of each variable.
+   */
+  public boolean[] satOne(int a) {
+    if (a == FALSE) throw new IllegalArgumentException("The diagram is not satisfiable.");
+
+    boolean[] assignment = new boolean[variableCount];
+    while (a != TRUE) {
+      if (lows[a] != FALSE) {
+        a = lows[a];
+      } else {
+        assignment[variables[a]] = true;
+        a = highs[a];
+      }
+    }
+
+    return assignment;
+  }
+
+  /**
+   * Frees all nodes that cannot be reached from a referenced node, and clears the cache.
+   */
+  public void collectGarbage() {
+    boolean[] marked = new boolean[variables.length];
+    int[] stack = new int[variables.length];
+    int size = 0;
+    for (int n = 0; n < variables.length; n++) {
+      if (refs[n] > 0 && !marked[n]) {
+        marked[n] = true;
+        stack[size++] = n;
+      }
+    }
+
+    while (size > 0) {
+      int n = stack[--size];
+      if (n <= TRUE) continue;
+
+      if (!marked[lows[n]]) {
+        marked[lows[n]] = true;
+        stack[size++] = lows[n];
+      }
+      if (!marked[highs[n]]) {
+        marked[highs[n]] = true;
+        stack[size++] = highs[n];
+      }
+    }
+
+    nodeCount = 0;
+    for (int n = 0; n < variables.length; n++) {
+      if (marked[n]) {
+        nodeCount++;
+      } else {
+        variables[n] = -1;
+      }
+    }
+    rebuild();
+  }
+
+  /**
+   * Gets a child of a node for a value of a variable that comes no later than its own.
+   *
+   * @param node     The node.
+   * @param variable The variable.
+   * @param value    The value of the variable.
+   * @return The child if the node is on the variable, or the node itself.
+   */
+  private int cofactor(int node, int variable, boolean value) {
+    if (variables[node] != variable) return node;
+    return value ? highs[node] : lows[node];
+  }
+
+  /**
+   * Counts the assignments to the even variables from that of a node onwards satisfying it.
+   *
+   * @param a      The node.
+   * @param counts Map from each node already counted to its count.
+   * @return The number of satisfying assignments.
+   */
+  private double satCountCurrent(int a, Map<Integer, Double> counts) {
+    if (a <= TRUE) return a;
+    Double count = counts.get(a);
+    if (count != null) return count;
+
+    int level = variables[a] >> 1;
+    double low = satCountCurrent(lows[a], counts) * Math.pow(2, (variables[lows[a]] >> 1) - level - 1);
+    double high = satCountCurrent(highs[a], counts) * Math.pow(2, (variables[highs[a]] >> 1) - level - 1);
+    counts.put(a, low + high);
+    return low + high;
+  }
+
+  /**
+   * Looks up the result of an operation in the cache.
+   *
+   * @param op The operation code.
+   * @param a  The first operand.
+   * @param b  The second operand.
+   * @param c  The third operand.
+   * @return The result, or -1 if it is not in the cache.
+   */
+  private int lookup(int op, int a, int b, int c) {
+    int slot = hash(a ^ op << 28, b, c) & (cacheResults.length - 1);
+    int key = slot << 2;
+    if (cacheKeys[key] == op && cacheKeys[key + 1] == a && cacheKeys[key + 2] == b && cacheKeys[key + 3] == c) {
+      return cacheResults[slot];
+    }
+
+    return -1;
+  }
+
+  /**
+   * Stores the result of an operation in the cache, replacing whatever was in its entry.
+   *
+   * @param op     The operation code.
+   * @param a      The first operand.
+   * @param b      The second operand.
+   * @param c      The third operand.
+   * @param result The result.
+   * @return The result.
+   */
+  private int store(int op, int a, int b, int c, int result) {
+    int slot = hash(a ^ op << 28, b, c) & (cacheResults.length - 1);
+    int key = slot << 2;
+    cacheKeys[key] = op;
+    cacheKeys[key + 1] = a;
+    cacheKeys[key + 2] = b;
+    cacheKeys[key + 3] = c;
+    cacheResults[slot] = result;
+    return result;
+  }
+
+  /**
+   * Doubles the number of nodes the table can hold.
+   */
+  private void grow() {
+    if (variables.length == MAX_CAPACITY) throw new IllegalStateException("The BDD node table cannot grow any further.");
+
+    int capacity = variables.length << 1;
+    int oldCapacity = variables.length;
+    variables = Arrays.copyOf(variables, capacity);
+    lows = Arrays.copyOf(lows, capacity);
+    highs = Arrays.copyOf(highs, capacity);
+    nexts = Arrays.copyOf(nexts, capacity);
+    refs = Arrays.copyOf(refs, capacity);
+    buckets = new int[capacity];
+    cacheKeys = new int[capacity << 2];
+    cacheResults = new int[capacity];
+    Arrays.fill(variables, oldCapacity, capacity, -1);
+    rebuild();
+  }
+
+  /**
+   * Rebuilds the unique table and free list from the variables of the nodes, with free nodes having variable -1, and
+   * clears the cache.
+   */
+  private void rebuild() {
+    Arrays.fill(buckets, -1);
+    Arrays.fill(cacheKeys, -1);
+    freeList = -1;
+    for (int n = variables.length - 1; n > TRUE; n--) {
+      if (variables[n] < 0) {
+        nexts[n] = freeList;
+        freeList = n;
+      } else {
+        int bucket = hash(variables[n], lows[n], highs[n]) & (buckets.length - 1);
+        nexts[n] = buckets[bucket];
+        buckets[bucket] = n;
+      }
+    }
+  }
+
+  /**
+   * Mixes three ints into a hash.
+   *
+   * @param a The first int.
+   * @param b The second int.
+   * @param c The third int.
+   * @return The hash.
+   */
+  private static int hash(int a, int b, int c) {
+    int hash = a * 0x9E3779B1 + b;
+    hash = hash * 0x9E3779B1 + c;
+    return hash ^ hash >>> 15;
+  }
+}
@@ -0,0 +1,138 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * An approximate set of visited state tuples that sets a number of bits in a fixed size bit array for each state
+ * tuple, as in bitstate hashing or supertrace.
+ *
+ * <P>A state tuple is considered visited if all of its bits are set, so a state tuple never added may be considered
+ * visited when other state tuples happen to have set all of its bits. A search using this set may thus omit parts of
+ * the state space, but everything it finds is real. The memory used is fixed no matter how many state tuples are
+ * added.</P>
+ */
+public class BitStateSet implements VisitedStateSet {
+  /**
+   * Largest number of bits in the bit array.
+   */
+  private static final long MAX_BITS = 1L << 36;
+
+  /**
+   * The bit array.
+   */
+  private final long[] bits;
+
+  /**
+   * Mask of a bit index, the number of bits being a power of two.
+   */
+  private final long mask;
+
+  /**
+   * Number of bits set for each state tuple.
+   */
+  private final int hashCount;
+
+  /**
+   * Number of state tuples added.
+   */
+  private long size;
+
+  /**
+   * Create an empty set.
+   *
+   * @param memory    Number of bytes the bit array may use, rounded down to a power of two.
+   * @param hashCount Number of bits set for each state tuple.
+   */
+  public BitStateSet(long memory, int hashCount) {
+    long bitCount = Math.max(64, Math.min(Long.highestOneBit(Math.max(memory, 1) * 8), MAX_BITS));
+    bits = new long[(int) (bitCount >>> 6)];
+    mask = bitCount - 1;
+    this.hashCount = hashCount;
+  }
+
+  /**
+   * Sets the bits of a state tuple.
+   *
+   * @param state The state tuple code.
+   * @return True if any of the bits was not set before, in which case the state tuple counts as added.
+   */
+  @Override
+  public boolean add(long state) {
+    // double hashing derives all bit indices from two independent hashes
+    long hash1 = mix(state);
+    long hash2 = mix(state ^ 0x5DEECE66DL) | 1;
+    boolean added = false;
+
+    for (int i = 0; i < hashCount; i++) {
+      long index = (hash1 + i * hash2) & mask;
+      int word = (int) (index >>> 6);
+      long bit = 1L << index;
+      if ((bits[word] & bit) == 0) {
+        bits[word] |= bit;
+        added = true;
+      }
+    }
+
+    if (added) size++;
+    return added;
+  }
+
+  /**
+   * Gets the number of state tuples added.
+   *
+   * @return The number of state tuples.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of bits in the bit array.
+   *
+   * @return The number of bits.
+   */
+  public long getBitCount() {
+    return mask + 1;
+  }
+
+  /**
+   * Gets the number of bits in the bit array, so that the load factor is the number of state tuples per bit.
+   *
+   * @return The number of bits.
+   */
+  @Override
+  public long getCapacity() {
+    return getBitCount();
+  }
+
+  /**
+   * Gets the number of bytes of the bit array.
+   *
+   * @return The number of bytes.
+   */
+  @Override
+  public long getMemoryBytes() {
+    return 8L * bits.length;
+  }
+
+  /**
+   * Estimates the probability that a state tuple not added is considered visited, which is the chance that a search
+   * using this set omitted any particular reachable state. With <I>n</I> state tuples added, <I>m</I> bits and
+   * <I>k</I> bits per state tuple this is (1 - e<SUP>-kn/m</SUP>)<SUP>k</SUP>.
+   *
+   * @return The estimated omission probability.
+   */
+  public double getOmissionProbability() {
+    return Math.pow(1 - Math.exp(-(double) hashCount * size / getBitCount()), hashCount);
+  }
+
+  /**
+   * Mixes all bits of a state tuple code.
+   *
+   * @param state The state tuple code.
+   * @return The hash.
+   */
+  private static long mix(long state) {
+    long hash = (state ^ state >>> 33) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ hash >>> 33) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ hash >>> 33;
+  }
+}
@@ -0,0 +1,223 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.io.File;
+
+/**
+ * The options of a {@link ControllabilityChecker} as given on the command line of {@link ControllabilityMain}, so that
+ * the same options can be applied to every model of a run or passed along with a batch job.
+ */
+public class CheckerSettings {
+  /**
+   * Number of threads to explore with.
+   */
+  private int threadCount = 1;
+
+  /**
+   * The strategy to explore with.
+   */
+  private ExplorationStrategy strategy = ExplorationStrategy.BREADTH_FIRST;
+
+  /**
+   * Whether the model is reduced before it is explored.
+   */
+  private boolean modelReduction = false;
+
+  /**
+   * Whether partial order reduction is used.
+   */
+  private boolean partialOrderReduction = false;
+
+  /**
+   * The order in which the enabled events of the automata are intersected.
+   */
+  private AutomatonOrdering ordering = AutomatonOrdering.STATIC;
+
+  /**
+   * Whether each specification is checked against the plants relevant to it.
+   */
+  private boolean modular = false;
+
+  /**
+   * Where the visited states are stored.
+   */
+  private StateStorage storage = StateStorage.HEAP;
+
+  /**
+   * Directory for the files of the external memory strategy, or null for the default.
+   */
+  private File scratchDirectory = null;
+
+  /**
+   * Number of bytes of successors the external memory strategy collects in memory.
+   */
+  private long memoryBudget = 64L << 20;
+
+  /**
+   * Number of bytes of the bit array of the bit state strategy.
+   */
+  private long bitStateMemory = 64L << 20;
+
+  /**
+   * Number of bits the bit state strategy sets per state.
+   */
+  private int bitStateHashCount = 3;
+
+  /**
+   * Directory of the result cache, or null if results are not cached.
+   */
+  private File cacheDirectory = null;
+
+  /**
+   * Largest number of states a check may visit, or 0 for no limit.
+   */
+  private long stateLimit = 0;
+
+  /**
+   * Largest number of bytes the visited state set of a check may use, or 0 for no limit.
+   */
+  private long memoryLimit = 0;
+
+  /**
+   * Longest time a check may take in milliseconds, or 0 for no limit.
+   */
+  private long timeLimit = 0;
+
+  /**
+   * Directory of the checkpoints of explorations, or null if explorations are not checkpointed.
+   */
+  private File checkpointDirectory = null;
+
+  /**
+   * Number of milliseconds between checkpoints.
+   */
+  private long checkpointInterval = 60000;
+
+  /**
+   * Create settings with the default options.
+   */
+  public CheckerSettings() {
+  }
+
+  /**
+   * Create a copy of settings.
+   *
+   * @param settings The settings to copy.
+   */
+  public CheckerSettings(CheckerSettings settings) {
+    threadCount = settings.threadCount;
+    strategy = settings.strategy;
+    modelReduction = settings.modelReduction;
+    partialOrderReduction = settings.partialOrderReduction;
+    ordering = settings.ordering;
+    modular = settings.modular;
+    storage = settings.storage;
+    scratchDirectory = settings.scratchDirectory;
+    memoryBudget = settings.memoryBudget;
+    bitStateMemory = settings.bitStateMemory;
+    bitStateHashCount = settings.bitStateHashCount;
+    cacheDirectory = settings.cacheDirectory;
+    stateLimit = settings.stateLimit;
+    memoryLimit = settings.memoryLimit;
+    timeLimit = settings.timeLimit;
+    checkpointDirectory = settings.checkpointDirectory;
+    checkpointInterval = settings.checkpointInterval;
+  }
+
+  /**
+   * Reads a checker option from the command line.
+   *
+   * @param args The arguments of the command line.
+   * @param i    Index of the argument to read.
+   * @return Number of arguments read, 0 if the argument is not a checker option.
+   * @throws IllegalArgumentException If the value of the option is not valid.
+   */
+  public int parse(String[] args, int i) {
+    String name = args[i];
+    boolean hasValue = i + 1 < args.length;
+    switch (name) {
+      case "-reduce":
+        modelReduction = true;
+        return 1;
+      case "-por":
+        partialOrderReduction = true;
+        return 1;
+      case "-modular":
+        modular = true;
+        return 1;
+    }
+
+    if (!hasValue) return 0;
+    String value = args[i + 1];
+    switch (name) {
+      case "-threads":
+        threadCount = Integer.parseInt(value);
+        return 2;
+      case "-strategy":
+        strategy = ExplorationStrategy.valueOf(value.toUpperCase());
+        return 2;
+      case "-ordering":
+        ordering = AutomatonOrdering.valueOf(value.toUpperCase());
+        return 2;
+      case "-storage":
+        storage = StateStorage.valueOf(value.toUpperCase());
+        return 2;
+      case "-scratch":
+        scratchDirectory = new File(value);
+        return 2;
+      case "-memory":
+        memoryBudget = Long.parseLong(value) << 20;
+        return 2;
+      case "-bitmemory":
+        bitStateMemory = Long.parseLong(value) << 20;
+        return 2;
+      case "-hashes":
+        bitStateHashCount = Integer.parseInt(value);
+        return 2;
+      case "-cache":
+        cacheDirectory = new File(value);
+        return 2;
+      case "-maxstates":
+        stateLimit = Long.parseLong(value);
+        return 2;
+      case "-maxmemory":
+        memoryLimit = Long.parseLong(value) << 20;
+        return 2;
+      case "-timeout":
+        timeLimit = Long.parseLong(value) * 1000;
+        return 2;
+      case "-checkpoint":
+        checkpointDirectory = new File(value);
+        return 2;
+      case "-checkpointinterval":
+        checkpointInterval = Long.parseLong(value) * 1000;
+        return 2;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Applies the options to a checker.
+   *
+   * @param checker The checker.
+   */
+  public void configure(ControllabilityChecker checker) {
+    checker.setThreadCount(threadCount);
+    checker.setExplorationStrategy(strategy);
+    checker.setModelReduction(modelReduction);
+    checker.setPartialOrderReduction(partialOrderReduction);
+    checker.setAutomatonOrdering(ordering);
+    checker.setModular(modular);
+    checker.setStateStorage(storage);
+    checker.setScratchDirectory(scratchDirectory);
+    checker.setMemoryBudget(memoryBudget);
+    checker.setBitStateMemory(bitStateMemory);
+    checker.setBitStateHashCount(bitStateHashCount);
+    checker.setCacheDirectory(cacheDirectory);
+    checker.setStateLimit(stateLimit);
+    checker.setMemoryLimit(memoryLimit);
+    checker.setTimeLimit(timeLimit);
+    checker.setCheckpointDirectory(checkpointDirectory);
+    checker.setCheckpointInterval(checkpointInterval);
+  }
+}
@@ -0,0 +1,375 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The checkpoint file of a breadth first exploration, which lets a long exploration that was stopped resume where it
+ * left off instead of starting over.
+ *
+ * <P>A checkpoint holds the visited states with their previous states and events, the queue of unexpanded states,
+ * the position of the exploration in its current level and a fingerprint of the model it was taken for. It is written
+ * sequentially through a direct buffer as a compact stream of fixed size records, first to a temporary file that then
+ * replaces the previous checkpoint, so a crash while writing leaves the previous checkpoint intact. Periodic
+ * checkpoints are written by a background thread from a copy of the state set, so the exploration continues while
+ * they are written. They are only a safeguard, so a periodic checkpoint that cannot be written is reported to the
+ * standard error stream and tried again at the next interval rather than stopping the exploration.</P>
+ */
+public class CheckpointStore implements AutoCloseable {
+  /**
+   * Number written at the start of each checkpoint file, changed whenever the format changes.
+   */
+  private static final int MAGIC = 0x57434B31;
+
+  /**
+   * Number of bytes of the buffer through which checkpoint files are read and written.
+   */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /**
+   * The checkpoint file.
+   */
+  private final Path file;
+
+  /**
+   * The fingerprint of the model being explored.
+   */
+  private final String fingerprint;
+
+  /**
+   * Number of milliseconds between periodic checkpoints.
+   */
+  private final long intervalMillis;
+
+  /**
+   * The thread writing periodic checkpoints, or null if none has been written yet.
+   */
+  private ExecutorService writer;
+
+  /**
+   * The checkpoint being written in the background, or null if none is.
+   */
+  private Future<?> pending;
+
+  /**
+   * The time the last checkpoint was loaded or started to be written, in milliseconds.
+   */
+  private long lastSaved = System.currentTimeMillis();
+
+  /**
+   * Create a store for the checkpoints of a model.
+   *
+   * @param file           The checkpoint file.
+   * @param fingerprint    The fingerprint of the model being explored.
+   * @param intervalMillis Number of milliseconds between periodic checkpoints.
+   */
+  public CheckpointStore(Path file, String fingerprint, long intervalMillis) {
+    this.file = file;
+    this.fingerprint = fingerprint;
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Loads the checkpoint of the model.
+   *
+   * @return The checkpoint, or null if there is none, it was taken for a different model or it cannot be read.
+   */
+  public Checkpoint load() {
+    if (!Files.isRegularFile(file)) return null;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      buffer.flip();
+
+      require(channel, buffer, 6);
+      if (buffer.getInt() != MAGIC) return null;
+      byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+      require(channel, buffer, bytes.length);
+      buffer.get(bytes);
+      if (!fingerprint.equals(new String(bytes, StandardCharsets.UTF_8))) return null;
+
+      require(channel, buffer, 20);
+      long expandedCount = buffer.getLong();
+      long levelEnd = buffer.getLong();
+      int depth = buffer.getInt();
+      HeapStateTupleSet stateTupleSet = HeapStateTupleSet.read(channel, buffer);
+
+      lastSaved = System.currentTimeMillis();
+      return new Checkpoint(stateTupleSet, expandedCount, levelEnd, depth);
+    } catch (IOException exception) {
+      // a damaged checkpoint is as good as none, the exploration starts over
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the next periodic checkpoint is due, which is when the interval has passed since the last one
+   * and it has been written or has failed.
+   *
+   * @return True if a checkpoint should be saved.
+   */
+  public boolean isDue() {
+    if (pending != null && !pending.isDone()) return false;
+
+    awaitPeriodic();
+    return System.currentTimeMillis() - lastSaved >= intervalMillis;
+  }
+
+  /**
+   * Starts writing a checkpoint in the background, replacing the previous one when it has been written. The
+   * checkpoint must not be changed afterwards, so it should hold a copy of the state set being explored.
+   *
+   * @param checkpoint The checkpoint.
+   */
+  public void save(Checkpoint checkpoint) {
+    awaitPeriodic();
+    if (writer == null) {
+      writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    lastSaved = System.currentTimeMillis();
+    pending = writer.submit(() -> {
+      write(checkpoint);
+      return null;
+    });
+  }
+
+  /**
+   * Writes a checkpoint, replacing the previous one, and waits until it has been written.
+   *
+   * @param checkpoint The checkpoint.
+   * @throws UncheckedIOException If the checkpoint could not be written.
+   */
+  public void saveNow(Checkpoint checkpoint) {
+    awaitPeriodic();
+    lastSaved = System.currentTimeMillis();
+    try {
+      write(checkpoint);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  /**
+   * Deletes the checkpoint of the model, once the exploration is complete. A checkpoint that cannot be deleted is
+   * reported to the standard error stream, as the result of the exploration is still valid.
+   */
+  public void delete() {
+    try {
+      await();
+    } catch (UncheckedIOException exception) {
+      // a checkpoint that could not be written is not needed any more
+    }
+
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException exception) {
+      System.err.println("Checkpoint " + file + " could not be deleted: " + exception.getMessage());
+    }
+  }
+
+  /**
+   * Waits for the checkpoint being written and stops the background thread.
+   */
+  @Override
+  public void close() {
+    try {
+      awaitPeriodic();
+    } finally {
+      if (writer != null) writer.shutdown();
+    }
+  }
+
+  /**
+   * Waits for the periodic checkpoint being written in the background, if any, reporting a failure to write it.
+   */
+  private void awaitPeriodic() {
+    try {
+      await();
+    } catch (UncheckedIOException exception) {
+      System.err.println("Checkpoint " + file + " could not be written: " + exception.getCause().getMessage());
+    }
+  }
+
+  /**
+   * Waits for the checkpoint being written in the background, if any.
+   *
+   * @throws UncheckedIOException If the checkpoint could not be written.
+   */
+  private void await() {
+    if (pending == null) return;
+
+    try {
+      pending.get();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof IOException) throw new UncheckedIOException((IOException) cause);
+      if (cause instanceof Error) throw (Error) cause;
+      throw (RuntimeException) cause;
+    } finally {
+      pending = null;
+    }
+  }
+
+  /**
+   * Writes a checkpoint to a temporary file and moves it over the previous checkpoint.
+   *
+   * @param checkpoint The checkpoint.
+   * @throws IOException If the checkpoint could not be written.
+   */
+  private void write(Checkpoint checkpoint) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, "checkpoint", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        byte[] bytes = fingerprint.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(MAGIC).putShort((short) bytes.length).put(bytes);
+        buffer.putLong(checkpoint.expandedCount).putLong(checkpoint.levelEnd).putInt(checkpoint.depth);
+        checkpoint.stateTupleSet.write(channel, buffer);
+
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        channel.force(false);
+      }
+
+      // readers see either the old or the new checkpoint
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Makes room for a number of bytes in a buffer being filled, writing its contents to a channel if it is too full.
+   *
+   * @param channel The channel to write to.
+   * @param buffer  The buffer being filled.
+   * @param bytes   The number of bytes to make room for.
+   * @throws IOException If the buffer cannot be written.
+   */
+  static void reserve(WritableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) return;
+
+    buffer.flip();
+    while (buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+  }
+
+  /**
+   * Makes sure a number of bytes can be read from a buffer being drained, reading more from a channel if needed.
+   *
+   * @param channel The channel to read from.
+   * @param buffer  The buffer being drained.
+   * @param bytes   The number of bytes needed.
+   * @throws IOException If the channel ends before the bytes can be read.
+   */
+  static void require(ReadableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) return;
+    if (bytes > buffer.capacity()) throw new IOException("Record of " + bytes + " bytes does not fit the buffer.");
+
+    buffer.compact();
+    while (buffer.position() < bytes) {
+      if (channel.read(buffer) < 0) throw new EOFException();
+    }
+    buffer.flip();
+  }
+
+  /**
+   * The state of a breadth first exploration.
+   */
+  public static class Checkpoint {
+    /**
+     * The visited states with their previous states and events and the queue of unexpanded states.
+     */
+    private final HeapStateTupleSet stateTupleSet;
+
+    /**
+     * Number of states expanded so far.
+     */
+    private final long expandedCount;
+
+    /**
+     * Number of states expanded when the current level is complete.
+     */
+    private final long levelEnd;
+
+    /**
+     * Number of levels fully expanded.
+     */
+    private final int depth;
+
+    /**
+     * Create a checkpoint.
+     *
+     * @param stateTupleSet The visited states with their previous states and events and the queue of unexpanded
+     *                      states.
+     * @param expandedCount Number of states expanded so far.
+     * @param levelEnd      Number of states expanded when the current level is complete.
+     * @param depth         Number of levels fully expanded.
+     */
+    public Checkpoint(HeapStateTupleSet stateTupleSet, long expandedCount, long levelEnd, int depth) {
+      this.stateTupleSet = stateTupleSet;
+      this.expandedCount = expandedCount;
+      this.levelEnd = levelEnd;
+      this.depth = depth;
+    }
+
+    /**
+     * Gets the visited states with their previous states and events and the queue of unexpanded states.
+     *
+     * @return The state set.
+     */
+    public HeapStateTupleSet getStateTupleSet() {
+      return stateTupleSet;
+    }
+
+    /**
+     * Gets the number of states expanded so far.
+     *
+     * @return The number of states.
+     */
+    public long getExpandedCount() {
+      return expandedCount;
+    }
+
+    /**
+     * Gets the number of states expanded when the current level is complete.
+     *
+     * @return The number of states.
+     */
+    public long getLevelEnd() {
+      return levelEnd;
+    }
+
+    /**
+     * Gets the number of levels fully expanded.
+     *
+     * @return The number of levels.
+     */
+    public int getDepth() {
+      return depth;
+    }
+  }
+}
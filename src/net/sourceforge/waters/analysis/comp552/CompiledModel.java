@@ -0,0 +1,380 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.base.ComponentKind;
+import net.sourceforge.waters.model.base.EventKind;
+import net.sourceforge.waters.model.des.AutomatonProxy;
+import net.sourceforge.waters.model.des.EventProxy;
+import net.sourceforge.waters.model.des.StateProxy;
+import net.sourceforge.waters.model.des.TransitionProxy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compiled form of a model, where states and events are referred to by index and the transition relation of each
+ * automaton is stored as a dense table from state and event to target state.
+ */
+public class CompiledModel {
+  /**
+   * Entry in a transition table for an event in the alphabet of the automaton that has no transition from the state.
+   */
+  public static final int DISABLED = -1;
+
+  /**
+   * Entry in a transition table for an event not in the alphabet of the automaton, which is an implicit self loop.
+   */
+  public static final int NOT_IN_ALPHABET = -2;
+
+  /**
+   * Array of all the automata in the model.
+   */
+  private final AutomatonProxy[] automata;
+
+  /**
+   * Array of all events in the model.
+   */
+  private final EventProxy[] events;
+
+  /**
+   * Array of transition tables for each automaton. The entry for a state and event is found at index
+   * <CODE>state * events.length + event</CODE> and contains the index of the target state, {@link #DISABLED} or
+   * {@link #NOT_IN_ALPHABET}.
+   */
+  private final int[][] transitions;
+
+  /**
+   * Array of whether each automaton is a specification.
+   */
+  private final boolean[] specs;
+
+  /**
+   * Array of whether each event is uncontrollable.
+   */
+  private final boolean[] uncontrollable;
+
+  /**
+   * Array of the index of the initial state of each automaton, or {@link #DISABLED} if an automaton has no initial state.
+   */
+  private final int[] initialState;
+
+  /**
+   * Number of longs in a set of events.
+   */
+  private int eventWords;
+
+  /**
+   * Array of the sets of events each automaton does not disable in each of its states, that is the events enabled in
+   * the state and the events outside its alphabet. The set for a state starts at index <CODE>state * eventWords</CODE>,
+   * with event <CODE>e</CODE> at bit <CODE>e % 64</CODE> of long <CODE>e / 64</CODE>.
+   */
+  private long[][] enabledEvents;
+
+  /**
+   * The set of all events, in the same form as {@link #enabledEvents}.
+   */
+  private long[] allEvents;
+
+  /**
+   * The set of uncontrollable events, in the same form as {@link #enabledEvents}.
+   */
+  private long[] uncontrollableEvents;
+
+  /**
+   * Array of the indices of the automata with each event in their alphabet.
+   */
+  private int[][] automataOfEvent;
+
+  /**
+   * Array of the average number of events each automaton disables in a state.
+   */
+  private double[] disablingDensities;
+
+  /**
+   * The order in which successor generators for this model intersect the enabled events of the automata.
+   */
+  private AutomatonOrdering automatonOrdering = AutomatonOrdering.STATIC;
+
+  /**
+   * Compile the transition relations of a set of automata.
+   *
+   * @param automata Array of the automata to compile.
+   * @param events   Array of the events to compile, propositions should not be included.
+   * @param encoder  The state tuple encoder that determines the index of each state.
+   */
+  public CompiledModel(AutomatonProxy[] automata, EventProxy[] events, StateTupleEncoder encoder) {
+    this.automata = automata;
+    this.events = events;
+    transitions = new int[automata.length][];
+    specs = new boolean[automata.length];
+    uncontrollable = new boolean[events.length];
+    initialState = new int[automata.length];
+
+    // create a mapping between all events and an index
+    Map<EventProxy, Integer> eventIndices = new HashMap<>();
+    for (int e = 0; e < events.length; e++) {
+      eventIndices.put(events[e], e);
+      uncontrollable[e] = events[e].getKind() == EventKind.UNCONTROLLABLE;
+    }
+
+    // create a transition table for each automaton
+    for (int i = 0; i < automata.length; i++) {
+      AutomatonProxy automaton = automata[i];
+      specs[i] = automaton.getKind() == ComponentKind.SPEC;
+
+      int[] table = new int[automaton.getStates().size() * events.length];
+      // events outside the alphabet are implicit self loops in every state
+      for (int e = 0; e < events.length; e++) {
+        int entry = automaton.getEvents().contains(events[e]) ? DISABLED : NOT_IN_ALPHABET;
+        for (int s = 0; s < automaton.getStates().size(); s++) {
+          table[s * events.length + e] = entry;
+        }
+      }
+
+      // add each transition to the table, keeping the first one if the automaton is nondeterministic
+      for (TransitionProxy transition : automaton.getTransitions()) {
+        Integer e = eventIndices.get(transition.getEvent());
+        if (e == null) continue;
+
+        int index = encoder.getStateIndex(i, transition.getSource()) * events.length + e;
+        if (table[index] == DISABLED) {
+          table[index] = encoder.getStateIndex(i, transition.getTarget());
+        }
+      }
+      transitions[i] = table;
+
+      // find the initial state
+      initialState[i] = DISABLED;
+      for (StateProxy state : automaton.getStates()) {
+        if (state.isInitial()) {
+          initialState[i] = encoder.getStateIndex(i, state);
+          break;
+        }
+      }
+    }
+
+    indexEvents();
+  }
+
+  /**
+   * Create a compiled model from transition tables that were already computed, such as by a {@link ModelReducer}.
+   *
+   * @param automata     Array of the automata the tables belong to.
+   * @param events       Array of the events indexing the tables.
+   * @param transitions  The transition table of each automaton, see {@link #transitions}.
+   * @param initialState The index of the initial state of each automaton, or {@link #DISABLED}.
+   */
+  public CompiledModel(AutomatonProxy[] automata, EventProxy[] events, int[][] transitions, int[] initialState) {
+    this.automata = automata;
+    this.events = events;
+    this.transitions = transitions;
+    this.initialState = initialState;
+    specs = new boolean[automata.length];
+    uncontrollable = new boolean[events.length];
+
+    for (int i = 0; i < automata.length; i++) {
+      specs[i] = automata[i].getKind() == ComponentKind.SPEC;
+    }
+    for (int e = 0; e < events.length; e++) {
+      uncontrollable[e] = events[e].getKind() == EventKind.UNCONTROLLABLE;
+    }
+
+    indexEvents();
+  }
+
+  /**
+   * Gets the target of the transition from a state with an event.
+   *
+   * @param automatonIndex Index of the automaton.
+   * @param state          Index of the source state.
+   * @param event          Index of the event.
+   * @return The index of the target state, {@link #DISABLED} or {@link #NOT_IN_ALPHABET}.
+   */
+  public int getTarget(int automatonIndex, int state, int event) {
+    return transitions[automatonIndex][state * events.length + event];
+  }
+
+  /**
+   * Gets the transition tables of all automata, see {@link #transitions}.
+   *
+   * @return The transition tables.
+   */
+  public int[][] getTransitionTables() {
+    return transitions;
+  }
+
+  /**
+   * Gets the number of longs in a set of events, see {@link #getEnabledEvents()}.
+   *
+   * @return The number of longs.
+   */
+  public int getEventWords() {
+    return eventWords;
+  }
+
+  /**
+   * Gets the sets of events each automaton does not disable in each of its states, see {@link #enabledEvents}. The
+   * events enabled in a state tuple are the intersection of these sets for the states of all automata.
+   *
+   * @return The sets of events for each automaton.
+   */
+  public long[][] getEnabledEvents() {
+    return enabledEvents;
+  }
+
+  /**
+   * Gets the set of all events, see {@link #getEnabledEvents()}.
+   *
+   * @return The set of events.
+   */
+  public long[] getAllEvents() {
+    return allEvents;
+  }
+
+  /**
+   * Gets the set of uncontrollable events, see {@link #getEnabledEvents()}.
+   *
+   * @return The set of events.
+   */
+  public long[] getUncontrollableEvents() {
+    return uncontrollableEvents;
+  }
+
+  /**
+   * Gets the indices of the automata with each event in their alphabet.
+   *
+   * @return Array of the indices of the automata for each event.
+   */
+  public int[][] getAutomataOfEvent() {
+    return automataOfEvent;
+  }
+
+  /**
+   * Gets the average number of events each automaton disables in a state, counting all its states equally.
+   *
+   * @return Array of the average for each automaton.
+   */
+  public double[] getDisablingDensities() {
+    return disablingDensities;
+  }
+
+  /**
+   * Sets the order in which the successor generators created afterwards for this model intersect the enabled events
+   * of the automata.
+   *
+   * @param automatonOrdering The automaton ordering.
+   */
+  public void setAutomatonOrdering(AutomatonOrdering automatonOrdering) {
+    this.automatonOrdering = automatonOrdering;
+  }
+
+  /**
+   * Gets the order in which successor generators for this model intersect the enabled events of the automata.
+   *
+   * @return The automaton ordering.
+   */
+  public AutomatonOrdering getAutomatonOrdering() {
+    return automatonOrdering;
+  }
+
+  /**
+   * Gets the array of automata.
+   *
+   * @return The array of automata.
+   */
+  public AutomatonProxy[] getAutomata() {
+    return automata;
+  }
+
+  /**
+   * Gets the array of events.
+   *
+   * @return The array of events.
+   */
+  public EventProxy[] getEvents() {
+    return events;
+  }
+
+  /**
+   * Gets the array of whether each automaton is a specification.
+   *
+   * @return The array of whether each automaton is a specification.
+   */
+  public boolean[] getSpecs() {
+    return specs;
+  }
+
+  /**
+   * Gets the array of whether each event is uncontrollable.
+   *
+   * @return The array of whether each event is uncontrollable.
+   */
+  public boolean[] getUncontrollable() {
+    return uncontrollable;
+  }
+
+  /**
+   * Gets the index of the initial state of each automaton.
+   *
+   * @return The array of initial state indices, which contains {@link #DISABLED} for automata without an initial state.
+   */
+  public int[] getInitialState() {
+    return initialState;
+  }
+
+  /**
+   * Returns true if every automaton has an initial state.
+   *
+   * @return True if every automaton has an initial state.
+   */
+  public boolean hasInitialState() {
+    for (int state : initialState) {
+      if (state == DISABLED) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Builds the sets of events not disabled in each state of each automaton, the automata with each event in their
+   * alphabet and the disabling density of each automaton, from the transition tables.
+   */
+  private void indexEvents() {
+    int eventCount = events.length;
+    eventWords = (eventCount + 63) >>> 6;
+    allEvents = new long[eventWords];
+    uncontrollableEvents = new long[eventWords];
+    for (int e = 0; e < eventCount; e++) {
+      allEvents[e >>> 6] |= 1L << e;
+      if (uncontrollable[e]) uncontrollableEvents[e >>> 6] |= 1L << e;
+    }
+
+    enabledEvents = new long[transitions.length][];
+    disablingDensities = new double[transitions.length];
+    int[] alphabetSizes = new int[eventCount];
+    for (int i = 0; i < transitions.length; i++) {
+      int stateCount = eventCount == 0 ? 1 : transitions[i].length / eventCount;
+      enabledEvents[i] = new long[stateCount * eventWords];
+      for (int s = 0; s < stateCount; s++) {
+        for (int e = 0; e < eventCount; e++) {
+          if (transitions[i][s * eventCount + e] != DISABLED) enabledEvents[i][s * eventWords + (e >>> 6)] |= 1L << e;
+          else disablingDensities[i]++;
+        }
+      }
+      if (stateCount > 0) disablingDensities[i] /= stateCount;
+
+      // the alphabet is the same in every state, and an automaton without states has none
+      for (int e = 0; e < eventCount && transitions[i].length > 0; e++) {
+        if (transitions[i][e] != NOT_IN_ALPHABET) alphabetSizes[e]++;
+      }
+    }
+
+    automataOfEvent = new int[eventCount][];
+    for (int e = 0; e < eventCount; e++) {
+      automataOfEvent[e] = new int[alphabetSizes[e]];
+      int count = 0;
+      for (int i = 0; i < transitions.length; i++) {
+        if (transitions[i].length > 0 && transitions[i][e] != NOT_IN_ALPHABET) automataOfEvent[e][count++] = i;
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * A set of state tuples and the previous state and event for all those states that can be used by several threads at
+ * once.
+ *
+ * <P>The set is striped into segments, each an open addressing map guarded by its own lock, so threads adding states
+ * that hash to different segments do not contend.</P>
+ */
+public class ConcurrentStateTupleSet implements PredecessorMap {
+  /**
+   * Initial capacity of the map of each segment.
+   */
+  private static final int INITIAL_SEGMENT_CAPACITY = 256;
+
+  /**
+   * The segments, the number of which is a power of two.
+   */
+  private final StateTupleMap[] segments;
+
+  /**
+   * Number of bits to shift a mixed hash to get a segment index.
+   */
+  private final int segmentShift;
+
+  /**
+   * Create an empty set of state tuples.
+   *
+   * @param concurrency The number of threads expected to use the set, which determines the number of segments.
+   */
+  public ConcurrentStateTupleSet(int concurrency) {
+    int segmentCount = Integer.highestOneBit(Math.max(concurrency, 1) * 16 - 1) << 1;
+    segments = new StateTupleMap[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new StateTupleMap(INITIAL_SEGMENT_CAPACITY);
+    }
+    segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+  }
+
+  /**
+   * Adds a state tuple to the set if it is not already in it.
+   *
+   * @param state         The state to add.
+   * @param previousState The previous state of the state to add.
+   * @param event         The index of the event from the previous state, or {@link StateTupleMap#NO_EVENT}.
+   * @return True if the state was added, false if it was already in the set.
+   */
+  public boolean add(long state, long previousState, int event) {
+    StateTupleMap segment = getSegment(state);
+    synchronized (segment) {
+      return segment.add(state, previousState, event);
+    }
+  }
+
+  /**
+   * Returns true if a specific state tuple is in the set.
+   *
+   * @param state State tuple to check for.
+   * @return True if state tuple is in the set.
+   */
+  public boolean contains(long state) {
+    StateTupleMap segment = getSegment(state);
+    synchronized (segment) {
+      return segment.contains(state);
+    }
+  }
+
+  /**
+   * Gets the previous state tuple for a specified state tuple.
+   *
+   * @param state The state tuple to get the previous state tuple of.
+   * @return The previous state tuple.
+   */
+  @Override
+  public long getPrevious(long state) {
+    StateTupleMap segment = getSegment(state);
+    synchronized (segment) {
+      return segment.getPrevious(state);
+    }
+  }
+
+  /**
+   * Gets the index of the event leading from the previous state tuple to a specified state tuple.
+   *
+   * @param state The state tuple to get the previous event of.
+   * @return The index of the event.
+   */
+  @Override
+  public int getPreviousEvent(long state) {
+    StateTupleMap segment = getSegment(state);
+    synchronized (segment) {
+      return segment.getPreviousEvent(state);
+    }
+  }
+
+  /**
+   * Gets the number of state tuples in the set.
+   *
+   * @return The number of state tuples in the set.
+   */
+  public long size() {
+    long size = 0;
+    for (StateTupleMap segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+
+    return size;
+  }
+
+  /**
+   * Gets the number of slots of all segments.
+   *
+   * @return The number of slots.
+   */
+  public long getCapacity() {
+    long capacity = 0;
+    for (StateTupleMap segment : segments) {
+      synchronized (segment) {
+        capacity += segment.getCapacity();
+      }
+    }
+
+    return capacity;
+  }
+
+  /**
+   * Gets the number of bytes used by all segments.
+   *
+   * @return The number of bytes.
+   */
+  public long getMemoryBytes() {
+    long bytes = 0;
+    for (StateTupleMap segment : segments) {
+      synchronized (segment) {
+        bytes += segment.getMemoryBytes();
+      }
+    }
+
+    return bytes;
+  }
+
+  /**
+   * Gets the segment a state tuple belongs to, using the high bits of a multiplicative hash so that codes differing
+   * only in a few bits are spread over all segments.
+   *
+   * @param state The state tuple.
+   * @return The segment.
+   */
+  private StateTupleMap getSegment(long state) {
+    return segments[(int) ((state * 0x9E3779B97F4A7C15L) >>> segmentShift)];
+  }
+}
@@ -34,10 +34,12 @@
 package net.sourceforge.waters.analysis.comp552;
 
 import net.sourceforge.waters.model.analysis.AnalysisException;
-import net.sourceforge.waters.model.base.ComponentKind;
 import net.sourceforge.waters.model.base.EventKind;
 import net.sourceforge.waters.model.des.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -80,155 +82,1269 @@ public class ControllabilityChecker extends ModelChecker {
   private EventProxy[] events;
 
   /**
-   * An array of the sets of event explicitly defined in the various automata in the model.
+   * The model compiled into transition tables indexed by state and event.
    */
-  private Set<EventProxy>[] eventsInAutomata;
+  private CompiledModel compiledModel;
 
   /**
-   * An array of mappings between source states and transitions states for each automaton.
+   * A state tuple encoder to convert between a state tuple and the long representation of the state tuple.
+   */
+  private StateTupleEncoder stateTupleEncoder;
+
+  /**
+   * Set to contain all encountered state, if state tuple codes fit in a single long.
+   */
+  private StateTupleSet stateTupleSet;
+
+  /**
+   * Set to contain all encountered state, if state tuple codes need more than one long.
+   */
+  private MultiWordStateTupleSet multiWordStateTupleSet;
+
+  /**
+   * Number of threads used to explore the state space.
+   */
+  private int threadCount = 1;
+
+  /**
+   * The way the state space is explored.
+   */
+  private ExplorationStrategy explorationStrategy = ExplorationStrategy.BREADTH_FIRST;
+
+  /**
+   * Whether the compiled model is reduced before its state space is explored.
+   */
+  private boolean modelReduction;
+
+  /**
+   * The reducer used by the last run, or null if the model was not reduced.
+   */
+  private ModelReducer modelReducer;
+
+  /**
+   * Whether the sequential breadth first search only expands stubborn sets of events.
+   */
+  private boolean partialOrderReduction;
+
+  /**
+   * The order in which successor generators intersect the enabled events of the automata.
+   */
+  private AutomatonOrdering automatonOrdering = AutomatonOrdering.STATIC;
+
+  /**
+   * Whether each specification is checked separately against the plants relevant to it.
+   */
+  private boolean modular;
+
+  /**
+   * Where the sequential breadth first search stores the visited states.
+   */
+  private StateStorage stateStorage = StateStorage.HEAP;
+
+  /**
+   * Directory for the files of an external memory exploration, or null for the default temporary directory.
+   */
+  private File scratchDirectory;
+
+  /**
+   * Number of bytes an external memory exploration may use to collect successors in memory.
+   */
+  private long memoryBudget = 64L << 20;
+
+  /**
+   * Number of bytes of the bit array of a bitstate exploration.
+   */
+  private long bitStateMemory = 64L << 20;
+
+  /**
+   * Number of bits set for each state in a bitstate exploration.
+   */
+  private int bitStateHashCount = 3;
+
+  /**
+   * Number of states visited by the last run.
+   */
+  private long visitedStateCount;
+
+  /**
+   * Whether the last result may be wrong because states were omitted.
+   */
+  private boolean resultApproximate;
+
+  /**
+   * Estimated probability that the last exploration omitted any particular reachable state.
+   */
+  private double omissionProbability;
+
+  /**
+   * Directory of the results of earlier checks, or null if results are not cached.
+   */
+  private File cacheDirectory;
+
+  /**
+   * Whether the last result was taken from the cache without exploring the state space.
+   */
+  private boolean resultCached;
+
+  /**
+   * The fingerprint of each automaton of the model, while results are cached.
+   */
+  private Map<AutomatonProxy, String> fingerprints;
+
+  /**
+   * Sets of automaton fingerprints whose composition is known to be controllable, collected while results are cached.
+   */
+  private List<Set<String>> proofs;
+
+  /**
+   * Largest number of states a run may visit, or 0 for no limit.
+   */
+  private long stateLimit;
+
+  /**
+   * Largest number of bytes the visited state set of a run may use, or 0 for no limit.
+   */
+  private long memoryLimit;
+
+  /**
+   * Longest time a run may take in milliseconds, or 0 for no limit.
+   */
+  private long timeLimit;
+
+  /**
+   * Directory of the checkpoints of breadth first explorations, or null if explorations are not checkpointed.
+   */
+  private File checkpointDirectory;
+
+  /**
+   * Number of milliseconds between checkpoints.
+   */
+  private long checkpointInterval = 60000;
+
+  /**
+   * Whether the last run resumed its exploration from a checkpoint.
+   */
+  private boolean resumed;
+
+  /**
+   * The progress of the current or last run.
+   */
+  private final ExplorationMetrics metrics;
+
+  //#########################################################################
+  //# Constructors
+
+  /**
+   * Creates a new controllability checker to check a particular model.
+   *
+   * @param model      The model to be checked by this controllability
+   *                   checker.
+   * @param desFactory Factory used for trace construction.
+   */
+  public ControllabilityChecker(final ProductDESProxy model,
+                                final ProductDESProxyFactory desFactory) {
+    super(model, desFactory);
+    metrics = new ExplorationMetrics(model.getName());
+  }
+
+  //#########################################################################
+  //# Configuration
+
+  /**
+   * Sets the number of threads used to explore the state space. With more than one thread the state space is explored
+   * in parallel, and unless the {@link ExplorationStrategy#LEVEL_SYNCHRONOUS} strategy is used the counterexample found
+   * is valid but not necessarily the shortest. Models whose state tuple codes need more than one long are always
+   * explored with a single thread.
+   *
+   * @param threadCount The number of threads, at least one.
+   */
+  public void setThreadCount(int threadCount) {
+    if (threadCount < 1) throw new IllegalArgumentException("At least one thread is needed.");
+    this.threadCount = threadCount;
+  }
+
+  /**
+   * Gets the number of threads used to explore the state space.
+   *
+   * @return The number of threads.
+   */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  /**
+   * Sets the way the state space is explored. Models whose state tuple codes need more than one long are explored
+   * with {@link ExplorationStrategy#BREADTH_FIRST} unless {@link ExplorationStrategy#SYMBOLIC} is chosen.
+   *
+   * @param explorationStrategy The exploration strategy.
+   */
+  public void setExplorationStrategy(ExplorationStrategy explorationStrategy) {
+    this.explorationStrategy = explorationStrategy;
+  }
+
+  /**
+   * Gets the way the state space is explored.
+   *
+   * @return The exploration strategy.
+   */
+  public ExplorationStrategy getExplorationStrategy() {
+    return explorationStrategy;
+  }
+
+  /**
+   * Sets whether the compiled model is reduced by a {@link ModelReducer} before its state space is explored, which
+   * removes automata that never disable events, events that are self loops everywhere and states that are equivalent.
+   * This shrinks the state tuple codes and the work per state without changing the result.
+   *
+   * @param modelReduction True to reduce the model.
+   */
+  public void setModelReduction(boolean modelReduction) {
+    this.modelReduction = modelReduction;
+  }
+
+  /**
+   * Returns whether the compiled model is reduced before its state space is explored.
+   *
+   * @return True if the model is reduced.
+   */
+  public boolean isModelReduction() {
+    return modelReduction;
+  }
+
+  /**
+   * Gets the reducer used by the last run, which reports how much the model was reduced.
+   *
+   * @return The reducer, or null if the model was not reduced.
+   */
+  public ModelReducer getModelReducer() {
+    return modelReducer;
+  }
+
+  /**
+   * Sets whether the sequential breadth first search uses partial order reduction, expanding only a stubborn set of
+   * the enabled events in each state instead of all of them. This avoids exploring all interleavings of independent
+   * events, while events that can affect whether a state violates controllability are always fully explored, so the
+   * result is the same. Counterexamples may be longer than the shortest one. The other ways to explore the state space
+   * ignore this setting.
+   *
+   * @param partialOrderReduction True to use partial order reduction.
+   */
+  public void setPartialOrderReduction(boolean partialOrderReduction) {
+    this.partialOrderReduction = partialOrderReduction;
+  }
+
+  /**
+   * Returns whether the sequential breadth first search uses partial order reduction.
+   *
+   * @return True if partial order reduction is used.
+   */
+  public boolean isPartialOrderReduction() {
+    return partialOrderReduction;
+  }
+
+  /**
+   * Sets the order in which successor generators intersect the sets of events enabled by the automata, which decides
+   * how soon a state with nothing to explore is recognised but never changes the result. The symbolic and multi word
+   * searches ignore this setting.
+   *
+   * @param automatonOrdering The automaton ordering.
+   */
+  public void setAutomatonOrdering(AutomatonOrdering automatonOrdering) {
+    this.automatonOrdering = automatonOrdering;
+  }
+
+  /**
+   * Gets the order in which successor generators intersect the sets of events enabled by the automata.
+   *
+   * @return The automaton ordering.
+   */
+  public AutomatonOrdering getAutomatonOrdering() {
+    return automatonOrdering;
+  }
+
+  /**
+   * Sets whether each specification is checked separately. A modular check starts with a subsystem of a
+   * specification and the plants sharing its uncontrollable events, and checks it with the other settings of this
+   * checker. Whenever a counterexample of the subsystem is not accepted by the whole model, the automaton rejecting it
+   * is added to the subsystem and the subsystem is checked again. Since most specifications only interact with a few
+   * plants, this usually avoids exploring the full synchronous product.
+   *
+   * @param modular True to check each specification separately.
+   */
+  public void setModular(boolean modular) {
+    this.modular = modular;
+  }
+
+  /**
+   * Returns whether each specification is checked separately.
+   *
+   * @return True if each specification is checked separately.
+   */
+  public boolean isModular() {
+    return modular;
+  }
+
+  /**
+   * Sets where the sequential breadth first search stores the visited states. Storing them off the heap keeps garbage
+   * collection pauses short on large state spaces. The other ways to explore the state space ignore this setting.
+   *
+   * @param stateStorage The state storage.
+   */
+  public void setStateStorage(StateStorage stateStorage) {
+    this.stateStorage = stateStorage;
+  }
+
+  /**
+   * Gets where the sequential breadth first search stores the visited states.
+   *
+   * @return The state storage.
+   */
+  public StateStorage getStateStorage() {
+    return stateStorage;
+  }
+
+  /**
+   * Sets the directory in which the {@link ExplorationStrategy#EXTERNAL_MEMORY} strategy stores its files. The files
+   * are removed when the check finishes.
+   *
+   * @param scratchDirectory The directory, or null for the default temporary directory.
+   */
+  public void setScratchDirectory(File scratchDirectory) {
+    this.scratchDirectory = scratchDirectory;
+  }
+
+  /**
+   * Gets the directory in which the {@link ExplorationStrategy#EXTERNAL_MEMORY} strategy stores its files.
+   *
+   * @return The directory, or null for the default temporary directory.
+   */
+  public File getScratchDirectory() {
+    return scratchDirectory;
+  }
+
+  /**
+   * Sets the number of bytes the {@link ExplorationStrategy#EXTERNAL_MEMORY} strategy may use to collect successors
+   * in memory before sorting them and writing them to disk. Larger budgets mean fewer files to merge per level.
+   *
+   * @param memoryBudget The number of bytes.
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    if (memoryBudget <= 0) throw new IllegalArgumentException("The memory budget must be positive.");
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Gets the number of bytes the {@link ExplorationStrategy#EXTERNAL_MEMORY} strategy may use to collect successors
+   * in memory.
+   *
+   * @return The number of bytes.
+   */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Sets the number of bytes of the bit array used by the {@link ExplorationStrategy#BITSTATE} strategy, which is
+   * rounded down to a power of two. More memory means fewer omitted states.
+   *
+   * @param bitStateMemory The number of bytes.
+   */
+  public void setBitStateMemory(long bitStateMemory) {
+    if (bitStateMemory <= 0) throw new IllegalArgumentException("The bitstate memory must be positive.");
+    this.bitStateMemory = bitStateMemory;
+  }
+
+  /**
+   * Gets the number of bytes of the bit array used by the {@link ExplorationStrategy#BITSTATE} strategy.
+   *
+   * @return The number of bytes.
+   */
+  public long getBitStateMemory() {
+    return bitStateMemory;
+  }
+
+  /**
+   * Sets the number of bits the {@link ExplorationStrategy#BITSTATE} strategy sets for each state.
+   *
+   * @param bitStateHashCount The number of bits, at least one.
+   */
+  public void setBitStateHashCount(int bitStateHashCount) {
+    if (bitStateHashCount < 1) throw new IllegalArgumentException("At least one hash function is needed.");
+    this.bitStateHashCount = bitStateHashCount;
+  }
+
+  /**
+   * Gets the number of bits the {@link ExplorationStrategy#BITSTATE} strategy sets for each state.
+   *
+   * @return The number of bits.
+   */
+  public int getBitStateHashCount() {
+    return bitStateHashCount;
+  }
+
+  /**
+   * Gets the number of states visited by the last run. For the {@link ExplorationStrategy#BITSTATE} strategy this is
+   * the number of states marked in the bit array.
+   *
+   * @return The number of states.
+   */
+  public long getVisitedStateCount() {
+    return visitedStateCount;
+  }
+
+  /**
+   * Returns whether the result of the last run may be wrong because states were omitted. This is only the case when
+   * the {@link ExplorationStrategy#BITSTATE} strategy claims a model is controllable; counterexamples are always
+   * confirmed.
+   *
+   * @return True if the last result is only probable.
+   */
+  public boolean isResultApproximate() {
+    return resultApproximate;
+  }
+
+  /**
+   * Gets the estimated probability that the last run omitted any particular reachable state, which is zero unless
+   * {@link #isResultApproximate()} is true.
+   *
+   * @return The estimated omission probability.
+   */
+  public double getOmissionProbability() {
+    return omissionProbability;
+  }
+
+  /**
+   * Sets the directory of a {@link ResultCache} to reuse the results of earlier checks of models with the same name.
+   * A model whose automata and events are all unchanged gets its cached result without exploring anything. For a
+   * revised model, a cached counterexample that is still a counterexample is returned, and specifications that were
+   * proven controllable together with automata that are all unchanged are not checked again, which saves work in a
+   * modular check or when every specification is proven. Results that are only probable are not cached.
+   *
+   * @param cacheDirectory The cache directory, or null to not cache results.
+   */
+  public void setCacheDirectory(File cacheDirectory) {
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  /**
+   * Gets the directory of the cache of results.
+   *
+   * @return The cache directory, or null if results are not cached.
+   */
+  public File getCacheDirectory() {
+    return cacheDirectory;
+  }
+
+  /**
+   * Returns whether the result of the last run was reused from the cache without exploring the state space.
+   *
+   * @return True if the last result came from the cache.
+   */
+  public boolean isResultCached() {
+    return resultCached;
+  }
+
+  /**
+   * Sets the largest number of states a run may visit before it stops with a {@link ResourceLimitException}. The
+   * limit is checked every {@link ExplorationMetrics#PUBLISH_INTERVAL} states, or once per level for the
+   * {@link ExplorationStrategy#SYMBOLIC} and {@link ExplorationStrategy#EXTERNAL_MEMORY} strategies, so a run may
+   * visit somewhat more states before it stops. A run that completes its exploration is never stopped.
+   *
+   * @param stateLimit The number of states, or 0 for no limit.
+   */
+  public void setStateLimit(long stateLimit) {
+    this.stateLimit = stateLimit;
+  }
+
+  /**
+   * Gets the largest number of states a run may visit.
+   *
+   * @return The number of states, or 0 if there is no limit.
+   */
+  public long getStateLimit() {
+    return stateLimit;
+  }
+
+  /**
+   * Sets the largest number of bytes the visited state set of a run may use before the run stops with a
+   * {@link ResourceLimitException}. The limit is checked at the same points as the state limit, after the set has
+   * grown, so it should leave room for the set to double once more than the limit.
+   *
+   * @param memoryLimit The number of bytes, or 0 for no limit.
+   */
+  public void setMemoryLimit(long memoryLimit) {
+    this.memoryLimit = memoryLimit;
+  }
+
+  /**
+   * Gets the largest number of bytes the visited state set of a run may use.
+   *
+   * @return The number of bytes, or 0 if there is no limit.
+   */
+  public long getMemoryLimit() {
+    return memoryLimit;
+  }
+
+  /**
+   * Sets the longest time a run may take before it stops with a {@link ResourceLimitException}. The time includes
+   * compiling the model and is checked at the same points as the state limit.
+   *
+   * @param timeLimit The time in milliseconds, or 0 for no limit.
+   */
+  public void setTimeLimit(long timeLimit) {
+    this.timeLimit = timeLimit;
+  }
+
+  /**
+   * Gets the longest time a run may take.
+   *
+   * @return The time in milliseconds, or 0 if there is no limit.
+   */
+  public long getTimeLimit() {
+    return timeLimit;
+  }
+
+  /**
+   * Sets the directory of a {@link CheckpointStore} to periodically save the state of the exploration of a model to,
+   * so a run that was stopped by a resource limit or killed can resume from the last checkpoint of a model with the
+   * same name, automata and events. A checkpoint is also saved when a resource limit is exceeded, and the checkpoint
+   * is deleted once the exploration is complete. Only the single threaded {@link ExplorationStrategy#BREADTH_FIRST}
+   * strategy with {@link StateStorage#HEAP} storage of a model whose state tuple codes fit in a single long is
+   * checkpointed; the other strategies ignore this setting. A periodic checkpoint that cannot be written is reported
+   * and tried again later, but a run stopped by a limit fails if its checkpoint cannot be written.
+   *
+   * @param checkpointDirectory The checkpoint directory, or null to not save checkpoints.
+   */
+  public void setCheckpointDirectory(File checkpointDirectory) {
+    this.checkpointDirectory = checkpointDirectory;
+  }
+
+  /**
+   * Gets the directory of the checkpoints.
+   *
+   * @return The checkpoint directory, or null if checkpoints are not saved.
+   */
+  public File getCheckpointDirectory() {
+    return checkpointDirectory;
+  }
+
+  /**
+   * Sets how often the state of the exploration is saved. Each checkpoint is written in the background from a copy of
+   * the visited states, which briefly needs as much memory again as the visited states.
+   *
+   * @param checkpointInterval The time between checkpoints in milliseconds.
+   */
+  public void setCheckpointInterval(long checkpointInterval) {
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  /**
+   * Gets how often the state of the exploration is saved.
+   *
+   * @return The time between checkpoints in milliseconds.
+   */
+  public long getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  /**
+   * Returns whether the last run resumed its exploration from a checkpoint instead of starting from the initial
+   * state.
+   *
+   * @return True if the last run was resumed.
+   */
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  /**
+   * Gets the progress of this checker, which other threads may read while it runs. The same metrics are reset by
+   * every run, so they can be registered once for all runs of the checker.
+   *
+   * @return The metrics.
+   */
+  public ExplorationMetrics getMetrics() {
+    return metrics;
+  }
+
+  //#########################################################################
+  //# Invocation
+
+  /**
+   * Runs this controllability checker.
+   * This method starts the model checking process on the model given
+   * as parameter to the constructor of this object. On termination,
+   * if the result is false, a counterexample can be queried using the
+   * {@link #getCounterExample()} method.
+   *
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
+   * @throws ResourceLimitException If the run exceeds a resource limit
+   * before the result is known. The number of states visited so far is
+   * kept, and the visited states are released.
+   */
+  @Override
+  public boolean run() {
+    metrics.reset(getModel().getName());
+    metrics.setLimits(stateLimit, memoryLimit, timeLimit);
+    try {
+      setup();
+
+      mCounterExample = null;
+      resultApproximate = false;
+      omissionProbability = 0;
+      visitedStateCount = 0;
+      modelReducer = null;
+      resultCached = false;
+      resumed = false;
+      fingerprints = null;
+      proofs = null;
+
+      // without an initial state there is no behaviour to violate controllability
+      if (!compiledModel.hasInitialState()) return true;
+
+      if (cacheDirectory != null) return runCached();
+      return check(new boolean[automata.length]);
+    } catch (ResourceLimitException exception) {
+      visitedStateCount = exception.getStateCount();
+      stateTupleSet = null;
+      multiWordStateTupleSet = null;
+      throw exception;
+    } finally {
+      metrics.finish(visitedStateCount);
+    }
+  }
+
+  /**
+   * Checks the model, reusing and updating the results of earlier checks in the cache directory.
+   *
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
    */
-  private Map<StateProxy, List<TransitionProxy>>[] transitionsBySource;
+  private boolean runCached() {
+    ResultCache cache = new ResultCache(cacheDirectory);
+    String name = getModel().getName();
+    ResultCache.Entry previous = cache.load(name);
+
+    fingerprints = new HashMap<>();
+    String[] automatonFingerprints = new String[automata.length];
+    for (int i = 0; i < automata.length; i++) {
+      automatonFingerprints[i] = ResultCache.getFingerprint(automata[i]);
+      fingerprints.put(automata[i], automatonFingerprints[i]);
+    }
+    String fingerprint = ResultCache.getFingerprint(automatonFingerprints, events);
+    proofs = new ArrayList<>();
+
+    boolean[] verified = new boolean[automata.length];
+    if (previous != null) {
+      // an unchanged model has the same result
+      if (previous.getFingerprint().equals(fingerprint)) {
+        if (previous.isControllable()) {
+          resultCached = true;
+          return true;
+        }
+
+        mCounterExample = restoreCounterExample(previous.getTrace());
+        if (mCounterExample != null) {
+          resultCached = true;
+          return false;
+        }
+      }
+
+      // specifications proven together with automata that are all unchanged still hold
+      Set<String> present = new HashSet<>(fingerprints.values());
+      for (Set<String> proof : previous.getProofs()) {
+        if (!present.containsAll(proof)) continue;
+
+        proofs.add(proof);
+        for (int i = 0; i < automata.length; i++) {
+          if (proof.contains(automatonFingerprints[i])) verified[i] = true;
+        }
+      }
+
+      // a counterexample of the previous revision may still be one
+      if (!previous.isControllable()) {
+        SafetyCounterExampleProxy counterExample = restoreCounterExample(previous.getTrace());
+        if (counterExample != null && isCounterExample(counterExample)) {
+          mCounterExample = counterExample;
+          resultCached = true;
+          cache.store(name, new ResultCache.Entry(fingerprint, false, 0, previous.getTrace(), proofs));
+          return false;
+        }
+        mCounterExample = null;
+      }
+    }
+
+    boolean result = check(verified);
+    if (resultApproximate) return result;
+
+    List<String> trace = new ArrayList<>();
+    if (result && !modular) {
+      proofs.add(new HashSet<>(fingerprints.values()));
+    } else if (!result) {
+      for (EventProxy event : mCounterExample.getTrace().getEvents()) trace.add(event.getName());
+    }
+    cache.store(name, new ResultCache.Entry(fingerprint, result, visitedStateCount, trace, proofs));
+    return result;
+  }
 
   /**
-   * A state tuple encoder to convert between a state tuple and the long representation of the state tuple.
+   * Checks the model.
+   *
+   * @param verified Array of whether each automaton is a specification already known to hold.
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
    */
-  private StateTupleEncoder stateTupleEncoder;
+  private boolean check(boolean[] verified) {
+    if (modular) return runModular(verified);
+
+    boolean[] specs = compiledModel.getSpecs();
+    boolean allVerified = true;
+    for (int i = 0; i < automata.length; i++) allVerified &= !specs[i] || verified[i];
+    if (allVerified) return true;
+
+    if (modelReduction) reduce();
+    compiledModel.setAutomatonOrdering(automatonOrdering);
+    metrics.beginPhase(ExplorationMetrics.Phase.EXPLORE);
+
+    if (explorationStrategy == ExplorationStrategy.SYMBOLIC) {
+      return exploreSymbolic();
+    } else if (stateTupleEncoder.getWordCount() > 1) {
+      return exploreMultiWord();
+    } else if (explorationStrategy == ExplorationStrategy.DEPTH_FIRST) {
+      return exploreDepthFirst();
+    } else if (explorationStrategy == ExplorationStrategy.ITERATIVE_DEEPENING) {
+      return exploreIterativeDeepening();
+    } else if (explorationStrategy == ExplorationStrategy.BITSTATE) {
+      return exploreBitState();
+    } else if (explorationStrategy == ExplorationStrategy.EXTERNAL_MEMORY) {
+      return exploreExternalMemory();
+    } else if (explorationStrategy == ExplorationStrategy.LEVEL_SYNCHRONOUS) {
+      return exploreLevelSynchronous();
+    } else if (threadCount > 1) {
+      return exploreParallel();
+    } else {
+      return exploreSingleWord();
+    }
+  }
 
   /**
-   * Set to contain all encountered state.
+   * Checks each specification against a subsystem of the plants, growing the subsystem until it is controllable or
+   * gives a counterexample for the whole model.
+   *
+   * @param verified Array of whether each automaton is a specification known to hold, which is updated as
+   *                 subsystems are found controllable.
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
    */
-  private StateTupleSet stateTupleSet;
+  private boolean runModular(boolean[] verified) {
+    boolean[] specs = compiledModel.getSpecs();
+    long stateCount = 0;
+    metrics.beginPhase(ExplorationMetrics.Phase.EXPLORE);
 
-  //#########################################################################
-  //# Constructors
+    for (int spec = 0; spec < automata.length; spec++) {
+      if (!specs[spec] || verified[spec]) continue;
+
+      // start with the plants sharing an uncontrollable event with the specification
+      Set<AutomatonProxy> subsystem = new LinkedHashSet<>();
+      subsystem.add(automata[spec]);
+      for (int i = 0; i < automata.length; i++) {
+        if (specs[i]) continue;
+        for (EventProxy event : automata[i].getEvents()) {
+          if (event.getKind() == EventKind.UNCONTROLLABLE && automata[spec].getEvents().contains(event)) {
+            subsystem.add(automata[i]);
+            break;
+          }
+        }
+      }
+
+      while (true) {
+        ControllabilityChecker checker = createSubsystemChecker(subsystem, stateCount);
+        boolean result;
+        try {
+          result = checker.run();
+        } catch (ResourceLimitException exception) {
+          // report the states of the whole modular check
+          throw new ResourceLimitException(exception.getLimit(), stateCount + exception.getStateCount(),
+              exception.getMemoryBytes(), metrics.getElapsedMillis());
+        }
+        stateCount += checker.getVisitedStateCount();
+        metrics.update(stateCount, 0, 0);
+        if (checker.isResultApproximate()) {
+          resultApproximate = true;
+          omissionProbability = Math.max(omissionProbability, checker.getOmissionProbability());
+        }
+
+        if (result) {
+          for (int i = 0; i < automata.length; i++) {
+            if (subsystem.contains(automata[i])) verified[i] = true;
+          }
+          if (proofs != null && !checker.isResultApproximate()) {
+            Set<String> proof = new HashSet<>();
+            for (AutomatonProxy automaton : subsystem) proof.add(fingerprints.get(automaton));
+            proofs.add(proof);
+          }
+          break;
+        }
+
+        List<EventProxy> trace = checker.getCounterExample().getTrace().getEvents();
+        int rejecting = findRejectingAutomaton(trace);
+        if (rejecting < 0) {
+          visitedStateCount = stateCount;
+          mCounterExample = createCounterExample(trace);
+          assert isCounterExample(mCounterExample);
+          return false;
+        }
+        subsystem.add(automata[rejecting]);
+      }
+    }
+
+    visitedStateCount = stateCount;
+    return true;
+  }
 
   /**
-   * Creates a new controllability checker to check a particular model.
+   * Creates a controllability checker for a subsystem of the model with the same settings as this checker, apart
+   * from checking the subsystem as a whole.
    *
-   * @param model      The model to be checked by this controllability
-   *                   checker.
-   * @param desFactory Factory used for trace construction.
+   * @param subsystem  The automata of the subsystem.
+   * @param stateCount Number of states visited by the subsystems checked so far.
+   * @return The controllability checker.
    */
-  public ControllabilityChecker(final ProductDESProxy model,
-                                final ProductDESProxyFactory desFactory) {
-    super(model, desFactory);
+  private ControllabilityChecker createSubsystemChecker(Collection<AutomatonProxy> subsystem, long stateCount) {
+    Set<EventProxy> subsystemEvents = new LinkedHashSet<>();
+    for (AutomatonProxy automaton : subsystem) subsystemEvents.addAll(automaton.getEvents());
+
+    ProductDESProxyFactory desFactory = getFactory();
+    ProductDESProxy model = desFactory.createProductDESProxy(getModel().getName() + ":subsystem", subsystemEvents,
+        subsystem);
+    ControllabilityChecker checker = new ControllabilityChecker(model, desFactory);
+    checker.setThreadCount(threadCount);
+    checker.setExplorationStrategy(explorationStrategy);
+    checker.setModelReduction(modelReduction);
+    checker.setPartialOrderReduction(partialOrderReduction);
+    checker.setAutomatonOrdering(automatonOrdering);
+    checker.setStateStorage(stateStorage);
+    checker.setScratchDirectory(scratchDirectory);
+    checker.setMemoryBudget(memoryBudget);
+    checker.setBitStateMemory(bitStateMemory);
+    checker.setBitStateHashCount(bitStateHashCount);
+    // the states of all subsystems count towards the state limit of this checker
+    if (stateLimit > 0) checker.setStateLimit(Math.max(1, stateLimit - stateCount));
+    checker.setMemoryLimit(memoryLimit);
+    if (timeLimit > 0) checker.setTimeLimit(Math.max(1, timeLimit - metrics.getElapsedMillis()));
+    return checker;
   }
 
-  //#########################################################################
-  //# Invocation
+  /**
+   * Replays a counterexample of a subsystem on the whole model.
+   *
+   * @param trace The events of the counterexample.
+   * @return The index of the first automaton that does not accept the counterexample, or -1 if it is a
+   * counterexample for the whole model.
+   */
+  private int findRejectingAutomaton(List<EventProxy> trace) {
+    boolean[] specs = compiledModel.getSpecs();
+    Map<EventProxy, Integer> eventIndices = new HashMap<>();
+    for (int e = 0; e < events.length; e++) eventIndices.put(events[e], e);
+    int[] state = compiledModel.getInitialState().clone();
+
+    // every automaton must execute all events but the last one
+    for (int step = 0; step < trace.size() - 1; step++) {
+      int event = eventIndices.get(trace.get(step));
+      for (int i = 0; i < automata.length; i++) {
+        int target = compiledModel.getTarget(i, state[i], event);
+        if (target == CompiledModel.DISABLED) return i;
+        if (target != CompiledModel.NOT_IN_ALPHABET) state[i] = target;
+      }
+    }
+
+    // the last event must be enabled by all plants and disabled by a specification
+    int last = eventIndices.get(trace.get(trace.size() - 1));
+    for (int i = 0; i < automata.length; i++) {
+      if (!specs[i] && compiledModel.getTarget(i, state[i], last) == CompiledModel.DISABLED) return i;
+    }
+    for (int i = 0; i < automata.length; i++) {
+      if (specs[i] && compiledModel.getTarget(i, state[i], last) == CompiledModel.DISABLED) return -1;
+    }
+
+    throw new IllegalStateException("Counterexample of a subsystem is accepted by all specifications.");
+  }
 
   /**
-   * Runs this controllability checker.
-   * This method starts the model checking process on the model given
-   * as parameter to the constructor of this object. On termination,
-   * if the result is false, a counterexample can be queried using the
-   * {@link #getCounterExample()} method.
+   * Explores the state space breadth first with state tuple codes stored in a single long.
    *
    * @return <CODE>true</CODE> if the model is controllable, or
    * <CODE>false</CODE> if it is not.
    */
-  @Override
-  public boolean run() {
-    setup();
-
-    // create state set and add initial state
-    stateTupleSet = new StateTupleSet();
-    long initialStateCode = stateTupleEncoder.encode(getInitialState());
-    stateTupleSet.add(initialStateCode, initialStateCode);
+  private boolean exploreSingleWord() {
+    try (CheckpointStore checkpoints = openCheckpointStore()) {
+      CheckpointStore.Checkpoint checkpoint = checkpoints == null ? null : checkpoints.load();
+      // states are expanded in the order they were added, so a level ends with the last state added before it started
+      long expanded = 0;
+      long levelEnd = 1;
+      int depth = 0;
+      if (checkpoint != null) {
+        // resume with the queue of unexpanded states, which keeps the breadth first order
+        stateTupleSet = checkpoint.getStateTupleSet();
+        expanded = checkpoint.getExpandedCount();
+        levelEnd = checkpoint.getLevelEnd();
+        depth = checkpoint.getDepth();
+        resumed = true;
+      } else {
+        // create state set and add initial state
+        stateTupleSet = stateStorage == StateStorage.OFF_HEAP ? new OffHeapStateTupleSet() : new HeapStateTupleSet();
+        long initialStateCode = stateTupleEncoder.encode(compiledModel.getInitialState());
+        stateTupleSet.add(initialStateCode, initialStateCode, StateTupleMap.NO_EVENT);
+      }
 
-    StateProxy[] nextState = new StateProxy[automata.length];
-    // continue while there are unvisited states
-    while (stateTupleSet.containsUnexpanded()) {
-      long currentStateCode = stateTupleSet.popUnexpanded();
-      StateProxy[] currentState = stateTupleEncoder.decode(currentStateCode);
-
-      // check every event for a legal transition
-      for (EventProxy event : events) {
-        StateProxy temp;
-
-        boolean success = true;
-        // check the event for every state in the state tuple
-        for (int i = 0; i < nextState.length; i++) {
-          AutomatonProxy automaton = automata[i];
-          // check for implicit self loop
-          if (!eventsInAutomata[i].contains(event)) {
-            nextState[i] = currentState[i];
+      SuccessorGenerator generator = new SuccessorGenerator(compiledModel, stateTupleEncoder);
+      PartialOrderReducer reducer =
+          partialOrderReduction ? new PartialOrderReducer(compiledModel, stateTupleEncoder) : null;
+      try {
+        // continue while there are unvisited states
+        while (stateTupleSet.containsUnexpanded()) {
+          // published before the next state is popped, so a checkpoint or limit sees every unexpanded state queued
+          if ((expanded & (ExplorationMetrics.PUBLISH_INTERVAL - 1)) == 0) {
+            metrics.update(stateTupleSet.size(), stateTupleSet.size() - expanded, depth);
+            metrics.updateStore(stateTupleSet.getCapacity(), stateTupleSet.getMemoryBytes());
+            if (checkpoints != null && checkpoints.isDue()) {
+              checkpoints.save(new CheckpointStore.Checkpoint(
+                  new HeapStateTupleSet((HeapStateTupleSet) stateTupleSet), expanded, levelEnd, depth));
+            }
           }
-          // check for explicit transition
-          else if ((temp = getTargetFromSourceAndEvent(i, currentState[i], event)) != null) {
-            nextState[i] = temp;
+
+          long currentStateCode = stateTupleSet.popUnexpanded();
+          if (++expanded > levelEnd) {
+            depth++;
+            levelEnd = stateTupleSet.size();
           }
-          // if no transition was found, the event is uncontrollable and the current state being checked is from a spec,
-          // fail and compute counter example
-          else if (event.getKind() == EventKind.UNCONTROLLABLE && automaton.getKind() == ComponentKind.SPEC) {
-            mCounterExample = computeCounterExample(currentState, event);
+
+          int successorCount = generator.expand(currentStateCode);
+          // if an uncontrollable event is disabled by a spec, fail and compute counter example
+          if (successorCount == SuccessorGenerator.VIOLATION) {
+            if (checkpoints != null) checkpoints.delete();
+            visitedStateCount = stateTupleSet.size();
+            mCounterExample = computeCounterExample(stateTupleSet, currentStateCode, generator.getViolatingEvent());
             assert isCounterExample(mCounterExample);
             return false;
           }
-          // the event does not work so stop
-          else {
-            success = false;
-            break;
+
+          if (reducer != null) {
+            int selectedCount = reducer.reduce(currentStateCode, generator, successorCount);
+            // cycle proviso, expand fully if any chosen successor was visited before
+            boolean full = selectedCount == successorCount;
+            for (int k = 0; k < selectedCount && !full; k++) {
+              full = stateTupleSet.contains(generator.getSuccessor(reducer.getSelected(k)));
+            }
+
+            if (!full) {
+              for (int k = 0; k < selectedCount; k++) {
+                int selected = reducer.getSelected(k);
+                stateTupleSet.add(generator.getSuccessor(selected), currentStateCode,
+                    generator.getSuccessorEvent(selected));
+              }
+              continue;
+            }
           }
-        }
 
-        // add new state if event worked
-        if (success) {
-          stateTupleSet.add(stateTupleEncoder.encode(nextState), currentStateCode);
+          for (int k = 0; k < successorCount; k++) {
+            stateTupleSet.add(generator.getSuccessor(k), currentStateCode, generator.getSuccessorEvent(k));
+          }
+        }
+      } catch (ResourceLimitException exception) {
+        // save the exploration so far, so a run with a higher limit can continue it
+        if (checkpoints != null) {
+          try {
+            checkpoints.saveNow(new CheckpointStore.Checkpoint((HeapStateTupleSet) stateTupleSet, expanded, levelEnd,
+                depth));
+          } catch (UncheckedIOException failure) {
+            failure.addSuppressed(exception);
+            throw failure;
+          }
         }
+        throw exception;
       }
+
+      if (checkpoints != null) checkpoints.delete();
+      visitedStateCount = stateTupleSet.size();
+      return true;
     }
+  }
 
-    return true;
+  /**
+   * Opens the store of the checkpoints of the model, if the exploration is checkpointed.
+   *
+   * @return The checkpoint store, or null if the exploration is not checkpointed.
+   */
+  private CheckpointStore openCheckpointStore() {
+    if (checkpointDirectory == null || stateStorage != StateStorage.HEAP) return null;
+
+    String name = getModel().getName();
+    File file = new File(checkpointDirectory, ResultCache.digest(name).substring(0, 32) + ".checkpoint");
+    return new CheckpointStore(file.toPath(), getCheckpointFingerprint(), checkpointInterval);
+  }
+
+  /**
+   * Computes the fingerprint of the model as it is explored. State tuple codes and event indices depend on the order
+   * of the automata and events and on the settings that change the model or the states visited, so unlike the
+   * fingerprint of the {@link ResultCache} this one includes them.
+   *
+   * @return The fingerprint.
+   */
+  private String getCheckpointFingerprint() {
+    List<String> automatonFingerprints = new ArrayList<>();
+    for (int i = 0; i < automata.length; i++) {
+      automatonFingerprints.add(i + ":" + ResultCache.getFingerprint(automata[i]));
+    }
+    List<String> eventNames = new ArrayList<>();
+    for (int k = 0; k < events.length; k++) {
+      eventNames.add(k + ":" + events[k].getName() + ":" + events[k].getKind());
+    }
+    List<String> settings = Arrays.asList("reduction:" + modelReduction, "por:" + partialOrderReduction);
+
+    return ResultCache.digest("checkpoint", automatonFingerprints, eventNames, settings);
+  }
+
+  /**
+   * Explores the state space with several threads with state tuple codes stored in a single long.
+   *
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
+   */
+  private boolean exploreParallel() {
+    ParallelExplorer explorer = new ParallelExplorer(compiledModel, stateTupleEncoder, threadCount);
+    explorer.setMetrics(metrics);
+    boolean result = explorer.explore(stateTupleEncoder.encode(compiledModel.getInitialState()));
+    visitedStateCount = explorer.getStateTupleSet().size();
+    if (result) return true;
+
+    mCounterExample = computeCounterExample(explorer.getStateTupleSet(), explorer.getViolatingState(),
+        explorer.getViolatingEvent());
+    assert isCounterExample(mCounterExample);
+    return false;
+  }
+
+  /**
+   * Explores the state space depth first.
+   *
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
+   */
+  private boolean exploreDepthFirst() {
+    DepthFirstExplorer explorer = new DepthFirstExplorer(compiledModel, stateTupleEncoder);
+    explorer.setMetrics(metrics);
+    long initialStateCode = stateTupleEncoder.encode(compiledModel.getInitialState());
+    boolean result = explorer.explore(initialStateCode, new StateTupleMap(1024));
+    visitedStateCount = explorer.getStateCount();
+    if (result) return true;
+
+    mCounterExample = computeCounterExample(explorer.getTrace(), explorer.getViolatingEvent());
+    assert isCounterExample(mCounterExample);
+    return false;
+  }
+
+  /**
+   * Explores the state space by depth first searches with a depth bound that doubles after each search, until a
+   * violation is found or a search is not cut off by the bound. A counterexample is no longer than the bound of the
+   * search that found it.
+   *
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
+   */
+  private boolean exploreIterativeDeepening() {
+    DepthFirstExplorer explorer = new DepthFirstExplorer(compiledModel, stateTupleEncoder);
+    explorer.setMetrics(metrics);
+    long initialStateCode = stateTupleEncoder.encode(compiledModel.getInitialState());
+
+    for (int bound = 1; ; bound = bound > Integer.MAX_VALUE >> 1 ? Integer.MAX_VALUE : bound << 1) {
+      boolean result = explorer.explore(initialStateCode, new StateTupleMap(1024), bound);
+      visitedStateCount = explorer.getStateCount();
+      if (!result) break;
+      if (!explorer.isCutOff()) return true;
+    }
+
+    mCounterExample = computeCounterExample(explorer.getTrace(), explorer.getViolatingEvent());
+    assert isCounterExample(mCounterExample);
+    return false;
+  }
+
+  /**
+   * Explores the state space depth first, marking visited states in a bit array.
+   *
+   * @return <CODE>true</CODE> if the model is probably controllable, or
+   * <CODE>false</CODE> if it is not.
+   */
+  private boolean exploreBitState() {
+    BitStateSet visited = new BitStateSet(bitStateMemory, bitStateHashCount);
+    DepthFirstExplorer explorer = new DepthFirstExplorer(compiledModel, stateTupleEncoder);
+    explorer.setMetrics(metrics);
+    boolean result = explorer.explore(stateTupleEncoder.encode(compiledModel.getInitialState()), visited);
+    visitedStateCount = explorer.getStateCount();
+    if (result) {
+      resultApproximate = true;
+      omissionProbability = visited.getOmissionProbability();
+      return true;
+    }
+
+    // omitted states can only hide violations, but confirm the trace on the model anyway
+    mCounterExample = computeCounterExample(explorer.getTrace(), explorer.getViolatingEvent());
+    if (!isCounterExample(mCounterExample)) {
+      throw new IllegalStateException("Bitstate search found a trace that is not a counterexample.");
+    }
+    return false;
   }
 
   /**
-   * Given a source state and event, finds the target state if a transition exists for that source and event. Dose not
-   * check for implicit self loops.
+   * Explores the state space symbolically, one breadth first layer at a time.
    *
-   * @param automatonIndex Index of the automaton the source state is in.
-   * @param source         The source state.
-   * @param event          The event event to check for.
-   * @return The target state of the transition containing the source state and event, null if no such transition was found.
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
    */
-  private StateProxy getTargetFromSourceAndEvent(int automatonIndex, StateProxy source, EventProxy event) {
-    // get list of transitions for the source
-    List<TransitionProxy> possibleTransitions = transitionsBySource[automatonIndex].get(source);
+  private boolean exploreSymbolic() {
+    SymbolicExplorer explorer = new SymbolicExplorer(compiledModel, stateTupleEncoder);
+    explorer.setMetrics(metrics);
+    boolean result = explorer.explore();
+    visitedStateCount = explorer.getStateCount();
+    if (result) return true;
+
+    mCounterExample = computeCounterExample(explorer.getTrace(), explorer.getViolatingEvent());
+    assert isCounterExample(mCounterExample);
+    return false;
+  }
 
-    // check if any transitions exist, if not return null
-    if (possibleTransitions == null) return null;
+  /**
+   * Explores the state space one breadth first level at a time with the visited states kept on disk.
+   *
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
+   */
+  private boolean exploreExternalMemory() {
+    try (ExternalMemoryExplorer explorer = new ExternalMemoryExplorer(compiledModel, stateTupleEncoder,
+        scratchDirectory, memoryBudget)) {
+      explorer.setMetrics(metrics);
+      boolean result = explorer.explore(stateTupleEncoder.encode(compiledModel.getInitialState()));
+      visitedStateCount = explorer.getStateCount();
+      if (result) return true;
 
-    // check every transition for the specified event
-    for (TransitionProxy possibleTransition : possibleTransitions) {
-      if (possibleTransition.getEvent() == event) return possibleTransition.getTarget();
+      mCounterExample = computeCounterExample(explorer, explorer.getViolatingState(), explorer.getViolatingEvent());
+      assert isCounterExample(mCounterExample);
+      return false;
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
     }
+  }
+
+  /**
+   * Explores the state space one breadth first level at a time, expanding each level with all threads.
+   *
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
+   */
+  private boolean exploreLevelSynchronous() {
+    LevelSynchronousExplorer explorer = new LevelSynchronousExplorer(compiledModel, stateTupleEncoder, threadCount);
+    explorer.setMetrics(metrics);
+    boolean result = explorer.explore(stateTupleEncoder.encode(compiledModel.getInitialState()));
+    visitedStateCount = explorer.getStateTupleSet().size();
+    if (result) return true;
 
-    // if nothing was found, return null
-    return null;
+    mCounterExample = computeCounterExample(explorer.getStateTupleSet(), explorer.getViolatingState(),
+        explorer.getViolatingEvent());
+    assert isCounterExample(mCounterExample);
+    return false;
   }
 
   /**
-   * Gets the initial state tuple.
+   * Explores the state space breadth first with state tuple codes spread over several longs.
    *
-   * @return The initial state tuple.
+   * @return <CODE>true</CODE> if the model is controllable, or
+   * <CODE>false</CODE> if it is not.
    */
-  private StateProxy[] getInitialState() {
-    StateProxy[] initialState = new StateProxy[automata.length];
+  private boolean exploreMultiWord() {
+    int wordCount = stateTupleEncoder.getWordCount();
+
+    // create state set and add initial state
+    multiWordStateTupleSet = new MultiWordStateTupleSet(wordCount);
+    long[] currentStateCode = new long[wordCount];
+    long[] nextStateCode = new long[wordCount];
+    stateTupleEncoder.encode(compiledModel.getInitialState(), currentStateCode);
+    multiWordStateTupleSet.add(currentStateCode, 0, StateTupleMap.NO_EVENT);
 
-    // for each automaton
+    int[][] transitions = compiledModel.getTransitionTables();
+    boolean[] specs = compiledModel.getSpecs();
+    long[][] enabledEvents = compiledModel.getEnabledEvents();
+    long[] allEvents = compiledModel.getAllEvents();
+    long[] uncontrollableEvents = compiledModel.getUncontrollableEvents();
+    int[][] automataOfEvent = compiledModel.getAutomataOfEvent();
+    int eventWords = compiledModel.getEventWords();
+    long[] plantEnabled = new long[eventWords];
+    long[] specEnabled = new long[eventWords];
+    int[] words = stateTupleEncoder.getPackWords();
+    int[] shifts = stateTupleEncoder.getPackShifts();
+    int[] masks = stateTupleEncoder.getPackMasks();
+    long[] clearMasks = new long[automata.length];
     for (int i = 0; i < automata.length; i++) {
-      AutomatonProxy automaton = automata[i];
+      clearMasks[i] = ~((long) masks[i] << shifts[i]);
+    }
+    // offset of the row for the current state in the transition table of each automaton
+    int[] rows = new int[automata.length];
+    long expanded = 0;
+    long levelEnd = 1;
+    int depth = 0;
+    // continue while there are unvisited states
+    while (multiWordStateTupleSet.containsUnexpanded()) {
+      int currentStateId = multiWordStateTupleSet.popUnexpanded();
+      multiWordStateTupleSet.get(currentStateId, currentStateCode);
+      if (++expanded > levelEnd) {
+        depth++;
+        levelEnd = multiWordStateTupleSet.size();
+      }
+      if ((expanded & (ExplorationMetrics.PUBLISH_INTERVAL - 1)) == 0) {
+        metrics.update(multiWordStateTupleSet.size(), multiWordStateTupleSet.size() - expanded, depth);
+        metrics.updateStore(multiWordStateTupleSet.getCapacity(), multiWordStateTupleSet.getMemoryBytes());
+      }
 
-      // find the initial state
-      for (StateProxy state : automaton.getStates()) {
-        if (state.isInitial()) {
-          initialState[i] = state;
-          break;
+      // intersect the events not disabled by the state of each automaton, separately for plants and specs
+      System.arraycopy(allEvents, 0, plantEnabled, 0, eventWords);
+      System.arraycopy(allEvents, 0, specEnabled, 0, eventWords);
+      for (int i = 0; i < rows.length; i++) {
+        int local = (int) (currentStateCode[words[i]] >>> shifts[i]) & masks[i];
+        rows[i] = local * events.length;
+
+        long[] enabled = specs[i] ? specEnabled : plantEnabled;
+        for (int w = 0; w < eventWords; w++) enabled[w] &= enabledEvents[i][local * eventWords + w];
+      }
+
+      // if an uncontrollable event is enabled by the plants but disabled by a spec, fail and compute counter example
+      for (int w = 0; w < eventWords; w++) {
+        long violations = plantEnabled[w] & ~specEnabled[w] & uncontrollableEvents[w];
+        if (violations != 0) {
+          visitedStateCount = multiWordStateTupleSet.size();
+          mCounterExample = computeCounterExample(currentStateId, (w << 6) + Long.numberOfTrailingZeros(violations));
+          assert isCounterExample(mCounterExample);
+          return false;
+        }
+      }
+
+      // add the successor for every enabled event
+      for (int w = 0; w < eventWords; w++) {
+        long enabled = plantEnabled[w] & specEnabled[w];
+        while (enabled != 0) {
+          int e = (w << 6) + Long.numberOfTrailingZeros(enabled);
+          enabled &= enabled - 1;
+
+          // splice the target of each automaton with the event in its alphabet into its word of the code
+          System.arraycopy(currentStateCode, 0, nextStateCode, 0, wordCount);
+          for (int i : automataOfEvent[e]) {
+            nextStateCode[words[i]] = nextStateCode[words[i]] & clearMasks[i] | (long) transitions[i][rows[i] + e] << shifts[i];
+          }
+          multiWordStateTupleSet.add(nextStateCode, currentStateId, e);
         }
       }
     }
 
-    return initialState;
+    visitedStateCount = multiWordStateTupleSet.size();
+    return true;
   }
 
   /**
@@ -237,9 +1353,22 @@ public class ControllabilityChecker extends ModelChecker {
   private void setup() {
     automata = getAutomata();
     events = getEvents();
-    eventsInAutomata = getEventsInAutomata();
-    transitionsBySource = getTransitionsBySource();
+    if (events.length > StateTupleMap.MAX_EVENTS) {
+      throw new IllegalArgumentException(String.format("Models with more than %d events are not supported.", StateTupleMap.MAX_EVENTS));
+    }
     stateTupleEncoder = new StateTupleEncoder(automata);
+    compiledModel = new CompiledModel(automata, events, stateTupleEncoder);
+  }
+
+  /**
+   * Replaces the compiled model, the automata, the events and the state tuple encoder with their reduced versions.
+   */
+  private void reduce() {
+    modelReducer = new ModelReducer(compiledModel);
+    compiledModel = modelReducer.reduce();
+    automata = compiledModel.getAutomata();
+    events = compiledModel.getEvents();
+    stateTupleEncoder = new StateTupleEncoder(modelReducer.getStateCounts());
   }
 
   /**
@@ -289,61 +1418,6 @@ public class ControllabilityChecker extends ModelChecker {
     return events.toArray(new EventProxy[0]);
   }
 
-  /**
-   * Creates sets of all the events explicitly defined in each automaton.
-   *
-   * @return An array with the sets of events explicitly defined in each automaton.
-   */
-  private Set<EventProxy>[] getEventsInAutomata() {
-    Set<EventProxy>[] eventsInAutomata = new HashSet[automata.length];
-
-    // create a set of events for each automaton
-    for (int i = 0; i < automata.length; i++) {
-      AutomatonProxy automaton = automata[i];
-      eventsInAutomata[i] = new HashSet<>();
-      for (EventProxy event : automaton.getEvents()) {
-        if (event.getKind() == EventKind.PROPOSITION) continue;
-        eventsInAutomata[i].add(event);
-      }
-    }
-
-    return eventsInAutomata;
-  }
-
-  /**
-   * Creates a mapping between states and all the transitions with that state as a source for each automaton.
-   *
-   * @return An array with the mappings between states and transitions with that state as a source.
-   */
-  private Map<StateProxy, List<TransitionProxy>>[] getTransitionsBySource() {
-    Map<StateProxy, List<TransitionProxy>>[] transitionsBySource = new Map[automata.length];
-
-    // create a mapping for each automaton
-    for (int i = 0; i < transitionsBySource.length; i++) {
-      AutomatonProxy automaton = automata[i];
-
-      Map<StateProxy, List<TransitionProxy>> map = new HashMap<>();
-
-      // add each transition to the map
-      for (TransitionProxy transition : automaton.getTransitions()) {
-        // add transition to list if mapping already exists
-        if (map.containsKey(transition.getSource())) {
-          map.get(transition.getSource()).add(transition);
-        }
-        // otherwise create new list and mapping
-        else {
-          List<TransitionProxy> list = new ArrayList<>();
-          list.add(transition);
-          map.put(transition.getSource(), list);
-        }
-      }
-
-      transitionsBySource[i] = map;
-    }
-
-    return transitionsBySource;
-  }
-
   /**
    * Gets a counterexample if the model was found to be not controllable
    * representing a controllability error trace. A controllability error
@@ -375,94 +1449,101 @@ public class ControllabilityChecker extends ModelChecker {
    * the controllability check that may be needed to compute the
    * counterexample are still available.
    *
-   * @param end  The end state for the counter example.
-   * @param last The final uncontrollable event in the counter example.
+   * @param previous The previous state and event of each reached state tuple.
+   * @param end      The code of the end state for the counter example.
+   * @param last     The index of the final uncontrollable event in the counter example.
    * @return The computed counterexample.
    */
-  private SafetyCounterExampleProxy computeCounterExample(StateProxy[] end, EventProxy last) {
+  private SafetyCounterExampleProxy computeCounterExample(PredecessorMap previous, long end, int last) {
+    metrics.beginPhase(ExplorationMetrics.Phase.COUNTEREXAMPLE);
     // the list of events to create a counter example
     LinkedList<EventProxy> eventList = new LinkedList<>();
-    eventList.add(last);
+    eventList.add(events[last]);
 
-    long currentStateCode = stateTupleEncoder.encode(end);
-    long previousStateCode;
-    long initialStateCode = stateTupleEncoder.encode(getInitialState());
-    StateProxy[] currentState = stateTupleEncoder.decode(currentStateCode);
-    StateProxy[] previousState;
+    long currentStateCode = end;
+    long initialStateCode = stateTupleEncoder.encode(compiledModel.getInitialState());
 
-    // trance backwards until initial state is reached
+    // trance backwards until initial state is reached, using the recorded event of each step
     while (currentStateCode != initialStateCode) {
-      previousStateCode = stateTupleSet.getPrevious(currentStateCode);
+      eventList.addFirst(events[previous.getPreviousEvent(currentStateCode)]);
+      currentStateCode = previous.getPrevious(currentStateCode);
+    }
 
-      previousState = stateTupleEncoder.decode(previousStateCode);
+    return createCounterExample(eventList);
+  }
 
-      EventProxy event = getEventFromSourceAndTarget(previousState, currentState);
-      eventList.addFirst(event);
+  /**
+   * Computes a counterexample when the state tuple codes are spread over several longs.
+   *
+   * @param end  The id of the end state for the counter example in {@link #multiWordStateTupleSet}.
+   * @param last The index of the final uncontrollable event in the counter example.
+   * @return The computed counterexample.
+   * @see #computeCounterExample(PredecessorMap, long, int)
+   */
+  private SafetyCounterExampleProxy computeCounterExample(int end, int last) {
+    metrics.beginPhase(ExplorationMetrics.Phase.COUNTEREXAMPLE);
+    // the list of events to create a counter example
+    LinkedList<EventProxy> eventList = new LinkedList<>();
+    eventList.add(events[last]);
 
-      currentState = previousState;
-      currentStateCode = previousStateCode;
+    // trance backwards until initial state, which has id 0, is reached
+    int currentStateId = end;
+    while (currentStateId != 0) {
+      eventList.addFirst(events[multiWordStateTupleSet.getPreviousEvent(currentStateId)]);
+      currentStateId = multiWordStateTupleSet.getPrevious(currentStateId);
     }
 
-    // create counter example
-    ProductDESProxyFactory desFactory = getFactory();
-    String desName = getModel().getName();
-    String traceName = desName + ":uncontrollable";
-    return desFactory.createSafetyCounterExampleProxy(traceName, getModel(), eventList);
+    return createCounterExample(eventList);
   }
 
   /**
-   * Find an event that transitions from the specified source to the specified target.
+   * Computes a counterexample from the path found by a depth first search.
    *
-   * @param source The source state tuple.
-   * @param target The target state tuple.
-   * @return An event that transitions from the source to the target.
+   * @param trace The indices of the events from the initial state to the end state for the counter example.
+   * @param last  The index of the final uncontrollable event in the counter example.
+   * @return The computed counterexample.
    */
-  private EventProxy getEventFromSourceAndTarget(StateProxy[] source, StateProxy[] target) {
-    // iterate over events to find an event that gets from the source to the target
-    for (EventProxy event : events) {
-      boolean success = true;
-      // iterate over each component of the source and target tuples to see if the event works
-      for (int i = 0; i < source.length; i++) {
-        // check if a self loop is possible
-        if (source[i] == target[i] && !eventsInAutomata[i].contains(event)) continue;
+  private SafetyCounterExampleProxy computeCounterExample(int[] trace, int last) {
+    metrics.beginPhase(ExplorationMetrics.Phase.COUNTEREXAMPLE);
+    List<EventProxy> eventList = new ArrayList<>(trace.length + 1);
+    for (int event : trace) eventList.add(events[event]);
+    eventList.add(events[last]);
 
-        // otherwise check if transition exists
-        if (transitionExists(source[i], target[i], event, i)) continue;
+    return createCounterExample(eventList);
+  }
 
-        success = false;
-        break;
-      }
+  /**
+   * Creates a counterexample for the model from the names of its events.
+   *
+   * @param names The names of the events.
+   * @return The counterexample, or null if the model has no event with one of the names.
+   */
+  private SafetyCounterExampleProxy restoreCounterExample(List<String> names) {
+    Map<String, EventProxy> eventsByName = new HashMap<>();
+    for (EventProxy event : getModel().getEvents()) eventsByName.put(event.getName(), event);
 
-      if (success) return event;
+    List<EventProxy> eventList = new ArrayList<>(names.size());
+    for (String name : names) {
+      EventProxy event = eventsByName.get(name);
+      if (event == null) return null;
+      eventList.add(event);
     }
 
-    // this should never happen
-    throw new RuntimeException("No event from source to target found.");
+    return createCounterExample(eventList);
   }
 
   /**
-   * Check if a transition exists for a given source state, target state and event.
+   * Creates a counterexample for the model from a list of events.
    *
-   * @param source         The source state.
-   * @param target         The target state.
-   * @param event          The event.
-   * @param automatonIndex The index of the automaton the source and target state are in.
-   * @return If the transitions exists in the automaton.
+   * @param eventList The events of the counterexample.
+   * @return The counterexample.
    */
-  private boolean transitionExists(StateProxy source, StateProxy target, EventProxy event, int automatonIndex) {
-    // check all the transitions with the specified source
-    List<TransitionProxy> transitions = transitionsBySource[automatonIndex].get(source);
-
-    if (transitions == null) return false;
-
-    for (TransitionProxy transition : transitions) {
-      // see if transition has desired event and target
-      if (transition.getEvent() == event && transition.getTarget() == target) {
-        return true;
-      }
-    }
-
-    return false;
+  private SafetyCounterExampleProxy createCounterExample(List<EventProxy> eventList) {
+    // create counter example
+    ProductDESProxyFactory desFactory = getFactory();
+    String desName = getModel().getName();
+    String traceName = desName + ":uncontrollable";
+    return desFactory.createSafetyCounterExampleProxy(traceName, getModel(), eventList);
   }
 
   /**
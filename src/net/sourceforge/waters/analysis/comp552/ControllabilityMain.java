@@ -33,22 +33,19 @@
 
 package net.sourceforge.waters.analysis.comp552;
 
-import net.sourceforge.waters.model.base.DocumentProxy;
-import net.sourceforge.waters.model.compiler.CompilerOperatorTable;
-import net.sourceforge.waters.model.compiler.ModuleCompiler;
 import net.sourceforge.waters.model.des.ProductDESProxy;
-import net.sourceforge.waters.model.des.ProductDESProxyFactory;
 import net.sourceforge.waters.model.des.SafetyCounterExampleProxy;
-import net.sourceforge.waters.model.expr.OperatorTable;
-import net.sourceforge.waters.model.marshaller.DocumentManager;
-import net.sourceforge.waters.model.marshaller.SAXModuleMarshaller;
-import net.sourceforge.waters.model.marshaller.SAXProductDESMarshaller;
-import net.sourceforge.waters.model.module.ModuleProxy;
-import net.sourceforge.waters.model.module.ModuleProxyFactory;
-import net.sourceforge.waters.plain.des.ProductDESElementFactory;
-import net.sourceforge.waters.plain.module.ModuleElementFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 /**
  * <P>A sample main class for testing the {@link ControllabilityChecker}
@@ -59,9 +56,81 @@ import java.io.File;
  * passes it to a controllability checker, and prints the result.
  * More precisely, this class can be run as follows.</P>
  *
- * <P><CODE>java ControllabilityMain
+ * <P><CODE>java ControllabilityMain [<I>options</I>]
  * &lt;<I>file1</I>&gt; &lt;<I>file2</I>&gt; ...</CODE></P>
  *
+ * <P>The following options are supported. Each option applies to the
+ * files given after it.</P>
+ *
+ * <UL>
+ * <LI><CODE>-threads</CODE> &lt;<I>n</I>&gt; &ndash; explore the state
+ * space with <I>n</I> threads.</LI>
+ * <LI><CODE>-strategy</CODE> &lt;<I>name</I>&gt; &ndash; explore the state
+ * space with the given {@link ExplorationStrategy}.</LI>
+ * <LI><CODE>-reduce</CODE> &ndash; reduce the model before exploring
+ * it, and print how much was removed.</LI>
+ * <LI><CODE>-por</CODE> &ndash; use partial order reduction.</LI>
+ * <LI><CODE>-ordering</CODE> &lt;<I>name</I>&gt; &ndash; intersect the
+ * enabled events of the automata in the given {@link AutomatonOrdering}.</LI>
+ * <LI><CODE>-modular</CODE> &ndash; check each specification against
+ * the plants relevant to it.</LI>
+ * <LI><CODE>-storage</CODE> &lt;<I>name</I>&gt; &ndash; store the visited
+ * states in the given {@link StateStorage}.</LI>
+ * <LI><CODE>-scratch</CODE> &lt;<I>dir</I>&gt; &ndash; store the files of
+ * the <CODE>external_memory</CODE> strategy in the given directory.</LI>
+ * <LI><CODE>-memory</CODE> &lt;<I>mb</I>&gt; &ndash; let the
+ * <CODE>external_memory</CODE> strategy collect up to <I>mb</I> megabytes
+ * of successors in memory before writing them to disk.</LI>
+ * <LI><CODE>-bitmemory</CODE> &lt;<I>mb</I>&gt; &ndash; let the
+ * <CODE>bitstate</CODE> strategy use a bit array of <I>mb</I>
+ * megabytes.</LI>
+ * <LI><CODE>-hashes</CODE> &lt;<I>k</I>&gt; &ndash; let the
+ * <CODE>bitstate</CODE> strategy set <I>k</I> bits per state.</LI>
+ * <LI><CODE>-cache</CODE> &lt;<I>dir</I>&gt; &ndash; reuse the results of
+ * earlier runs kept in the given directory, see {@link ResultCache}.</LI>
+ * <LI><CODE>-maxstates</CODE> &lt;<I>n</I>&gt; &ndash; give up on a
+ * model once more than <I>n</I> states have been visited.</LI>
+ * <LI><CODE>-maxmemory</CODE> &lt;<I>mb</I>&gt; &ndash; give up on a
+ * model once its visited states use more than <I>mb</I> megabytes.</LI>
+ * <LI><CODE>-timeout</CODE> &lt;<I>seconds</I>&gt; &ndash; give up on a
+ * model once it has taken more than the given number of seconds.</LI>
+ * <LI><CODE>-checkpoint</CODE> &lt;<I>dir</I>&gt; &ndash; periodically
+ * save the state of the exploration in the given directory, and resume
+ * from the last saved state of a model, see {@link CheckpointStore}.</LI>
+ * <LI><CODE>-checkpointinterval</CODE> &lt;<I>seconds</I>&gt; &ndash;
+ * save the state of the exploration every <I>seconds</I> seconds. The
+ * default is 60.</LI>
+ * <LI><CODE>-prefetch</CODE> &lt;<I>n</I>&gt; &ndash; load and compile
+ * up to <I>n</I> of the following files in the background while checking,
+ * see {@link ModelPipeline}. The default is 2.</LI>
+ * <LI><CODE>-progress</CODE> &lt;<I>seconds</I>&gt; &ndash; print the
+ * progress of each running check to standard error every <I>seconds</I>
+ * seconds, see {@link ExplorationMetrics}.</LI>
+ * </UL>
+ *
+ * <P>The progress of each running check can also be read over JMX from
+ * the MXBeans registered under the domain
+ * <CODE>net.sourceforge.waters.analysis.comp552</CODE>.</P>
+ *
+ * <P>A model given up on is reported as <CODE>UNKNOWN</CODE> with the
+ * limit it exceeded, see {@link ResourceLimitException}, and checking
+ * continues with the next model.</P>
+ *
+ * <P>The following options check many models in the same process, with
+ * the checker options given before them. The verdicts are printed one line
+ * per model as the checks finish, see {@link BatchChecker}.</P>
+ *
+ * <UL>
+ * <LI><CODE>-workers</CODE> &lt;<I>n</I>&gt; &ndash; check the files
+ * given after it concurrently with <I>n</I> workers.</LI>
+ * <LI><CODE>-list</CODE> &lt;<I>file</I>&gt; &ndash; check the models
+ * whose paths are listed in the given file, one per line, or read from
+ * standard input if the file is <CODE>-</CODE>.</LI>
+ * <LI><CODE>-serve</CODE> &lt;<I>port</I>&gt; &ndash; keep running and
+ * check the models whose paths are sent to the given port of the loopback
+ * address, one per line, answering each connection with its verdicts.</LI>
+ * </UL>
+ *
  * <P>The following file formats and extensions are supported.</P>
  *
  * <UL>
@@ -77,6 +146,15 @@ import java.io.File;
  */
 
 public class ControllabilityMain {
+  //#########################################################################
+  //# Constants
+
+  /**
+   * Number of models loaded ahead of the one being checked when
+   * <CODE>-prefetch</CODE> is not given.
+   */
+  private static final int DEFAULT_PREFETCH = 2;
+
   //#########################################################################
   //# Constructors
 
@@ -98,57 +176,187 @@ public class ControllabilityMain {
    * @param args Array of file names from the command line.
    */
   public static void main(final String[] args) {
+    BatchChecker batchChecker = null;
+    ModelPipeline pipeline = null;
+    final ProgressReporter reporter = new ProgressReporter(System.err);
     try {
       QuietLogConfigurationFactory.install();
 
-      final ModuleProxyFactory moduleFactory =
-          ModuleElementFactory.getInstance();
-      final ProductDESProxyFactory desFactory =
-          ProductDESElementFactory.getInstance();
-      final OperatorTable optable = CompilerOperatorTable.getInstance();
-      final SAXModuleMarshaller moduleMarshaller =
-          new SAXModuleMarshaller(moduleFactory, optable);
-      final SAXProductDESMarshaller desMarshaller =
-          new SAXProductDESMarshaller(desFactory);
-      final DocumentManager docManager = new DocumentManager();
-      docManager.registerUnmarshaller(desMarshaller);
-      docManager.registerUnmarshaller(moduleMarshaller);
-
+      final ModelLoader loader = new ModelLoader();
+      final CheckerSettings settings = new CheckerSettings();
+      final PrintWriter output = new PrintWriter(
+          new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+      pipeline = new ModelPipeline(loader, DEFAULT_PREFETCH);
+      final Queue<CheckerSettings> queued = new ArrayDeque<>();
+      BatchChecker.Batch batch = null;
       for (int i = 0; i < args.length; i++) {
         final String name = args[i];
-        final File filename = new File(name);
-        final DocumentProxy doc = docManager.load(filename);
-        ProductDESProxy des = null;
-        if (doc instanceof ProductDESProxy) {
-          des = (ProductDESProxy) doc;
-        } else {
-          final ModuleProxy module = (ModuleProxy) doc;
-          final ModuleCompiler compiler =
-              new ModuleCompiler(docManager, desFactory, module);
-          des = compiler.compile();
+        final int consumed = settings.parse(args, i);
+        if (consumed > 0) {
+          i += consumed - 1;
+          continue;
+        } else if (name.equals("-prefetch") && i + 1 < args.length) {
+          checkQueued(pipeline, queued, loader, reporter);
+          pipeline.close();
+          pipeline = new ModelPipeline(loader, Integer.parseInt(args[++i]));
+          continue;
+        } else if (name.equals("-progress") && i + 1 < args.length) {
+          reporter.setPeriod(Long.parseLong(args[++i]));
+          continue;
+        } else if (name.equals("-workers") && i + 1 < args.length) {
+          checkQueued(pipeline, queued, loader, reporter);
+          if (batch != null) {
+            batch.await();
+          }
+          if (batchChecker != null) {
+            batchChecker.close();
+          }
+          batchChecker = createBatchChecker(loader,
+              Integer.parseInt(args[++i]), reporter);
+          batch = batchChecker.open(output);
+          continue;
+        } else if (name.equals("-list") && i + 1 < args.length) {
+          checkQueued(pipeline, queued, loader, reporter);
+          if (batchChecker == null) {
+            batchChecker = createBatchChecker(loader, getDefaultWorkerCount(),
+                reporter);
+            batch = batchChecker.open(output);
+          }
+          final String list = args[++i];
+          final InputStream stream = list.equals("-") ?
+              System.in : new FileInputStream(list);
+          final BufferedReader input = new BufferedReader(
+              new InputStreamReader(stream, StandardCharsets.UTF_8));
+          batchChecker.checkAll(input, new CheckerSettings(settings), output);
+          continue;
+        } else if (name.equals("-serve") && i + 1 < args.length) {
+          checkQueued(pipeline, queued, loader, reporter);
+          if (batchChecker == null) {
+            batchChecker = createBatchChecker(loader, getDefaultWorkerCount(),
+                reporter);
+            batch = batchChecker.open(output);
+          }
+          batchChecker.serve(Integer.parseInt(args[++i]),
+              new CheckerSettings(settings));
+          continue;
         }
-        final ControllabilityChecker checker =
-            new ControllabilityChecker(des, desFactory);
-        System.out.print(des.getName() + " ... ");
-        System.out.flush();
-
-        final boolean result = checker.run();
-        if (result) {
-          System.out.println("controllable");
+        final File filename = new File(name);
+        if (batch != null) {
+          batch.submit(filename, new CheckerSettings(settings));
         } else {
-          System.out.println("NOT controllable");
-          System.out.println("Counterexample:");
-          final SafetyCounterExampleProxy counterex =
-              checker.getCounterExample();
-          System.out.println(counterex.toString());
+          // the model is loaded in the background while earlier ones are
+          // checked
+          pipeline.submit(filename);
+          queued.add(new CheckerSettings(settings));
         }
       }
+      checkQueued(pipeline, queued, loader, reporter);
+      if (batch != null) {
+        batch.await();
+      }
 
     } catch (final Throwable exception) {
       System.err.println("FATAL ERROR !!!");
       System.err.println(exception.getClass().getName() +
           " caught in main()!");
       exception.printStackTrace(System.err);
+    } finally {
+      if (pipeline != null) {
+        pipeline.close();
+      }
+      if (batchChecker != null) {
+        batchChecker.close();
+      }
+      reporter.close();
+    }
+  }
+
+  //#########################################################################
+  //# Auxiliary Methods
+
+  /**
+   * Checks the models submitted to a pipeline one after another, in the
+   * order they were given, and prints the results.
+   *
+   * @param pipeline The pipeline loading the models.
+   * @param queued   The options for each model submitted, in the same order.
+   * @param loader   The loader of the models.
+   * @param reporter Watches the progress of each check.
+   * @throws Exception If a model cannot be loaded or checked.
+   */
+  private static void checkQueued(final ModelPipeline pipeline,
+                                  final Queue<CheckerSettings> queued,
+                                  final ModelLoader loader,
+                                  final ProgressReporter reporter)
+      throws Exception {
+    while (pipeline.hasNext()) {
+      final ProductDESProxy des = pipeline.take();
+      final ControllabilityChecker checker =
+          new ControllabilityChecker(des, loader.getFactory());
+      queued.remove().configure(checker);
+      System.out.print(des.getName() + " ... ");
+      System.out.flush();
+
+      reporter.watch(checker.getMetrics());
+      final boolean result;
+      try {
+        result = checker.run();
+      } catch (final ResourceLimitException exception) {
+        System.out.println("UNKNOWN (" + exception.getMessage() + ")");
+        System.out.println(checker.getVisitedStateCount() + " states visited");
+        continue;
+      } finally {
+        reporter.unwatch(checker.getMetrics());
+      }
+      if (result && checker.isResultApproximate()) {
+        System.out.println("probably controllable (omission probability " +
+            checker.getOmissionProbability() + ")");
+      } else if (result) {
+        System.out.println("controllable");
+      } else {
+        System.out.println("NOT controllable");
+        System.out.println("Counterexample:");
+        final SafetyCounterExampleProxy counterex =
+            checker.getCounterExample();
+        System.out.println(counterex.toString());
+      }
+      if (checker.isResultCached()) {
+        System.out.println("Result reused from cache");
+      }
+      if (checker.isResumed()) {
+        System.out.println("Exploration resumed from checkpoint");
+      }
+      if (checker.getModelReducer() != null) {
+        System.out.println("Reduction " + checker.getModelReducer());
+      }
+      System.out.println(checker.getVisitedStateCount() + " states visited");
     }
   }
+
+  /**
+   * Creates a batch checker whose checks are watched by a progress
+   * reporter.
+   *
+   * @param loader      The loader of the models.
+   * @param workerCount Number of models checked at once.
+   * @param reporter    Watches the progress of each check.
+   * @return The batch checker.
+   */
+  private static BatchChecker createBatchChecker(final ModelLoader loader,
+                                                 final int workerCount,
+                                                 final ProgressReporter reporter) {
+    final BatchChecker batchChecker = new BatchChecker(loader, workerCount);
+    batchChecker.setProgressReporter(reporter);
+    return batchChecker;
+  }
+
+  /**
+   * Gets the number of workers used by the batch options when
+   * <CODE>-workers</CODE> is not given, which is one per processor.
+   *
+   * @return The number of workers.
+   */
+  private static int getDefaultWorkerCount() {
+    return Runtime.getRuntime().availableProcessors();
+  }
 }
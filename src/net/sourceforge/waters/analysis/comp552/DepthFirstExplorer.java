@@ -0,0 +1,238 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.util.Arrays;
+
+/**
+ * Explores the state space of a model depth first with explicit stacks, for state tuple codes that fit in a single
+ * long.
+ *
+ * <P>The search stack holds the event that reached each level of the current path. The successors of all states on
+ * the path that are still to be explored are kept on a second stack, with each level remembering where its successors
+ * start. When a violation is found the path on the search stack is the counterexample, so no previous states need to
+ * be recorded and any {@link VisitedStateSet} can be used.</P>
+ *
+ * <P>A search can also be bounded to paths of a given length, for iterative deepening. States beyond the bound are
+ * left unvisited, so a later search with a larger bound and a new visited set explores them.</P>
+ */
+public class DepthFirstExplorer {
+  /**
+   * Initial capacity of the stacks.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * The successor generator for the model.
+   */
+  private final SuccessorGenerator generator;
+
+  /**
+   * The set of visited states of the current search.
+   */
+  private VisitedStateSet visited;
+
+  /**
+   * Largest number of events on a path explored by the current search.
+   */
+  private int depthBound;
+
+  /**
+   * Whether the last search left out any state because it was beyond the depth bound.
+   */
+  private boolean cutOff;
+
+  /**
+   * The index of the event reaching the state at each level of the search stack.
+   */
+  private int[] pathEvents = new int[INITIAL_CAPACITY];
+
+  /**
+   * The index in the successor stack of the first successor of the state at each level of the search stack.
+   */
+  private int[] pathStarts = new int[INITIAL_CAPACITY];
+
+  /**
+   * Number of levels in the search stack.
+   */
+  private int depth;
+
+  /**
+   * The successor states still to be explored.
+   */
+  private long[] successorStates = new long[INITIAL_CAPACITY];
+
+  /**
+   * The index of the event leading to each successor state still to be explored.
+   */
+  private int[] successorEvents = new int[INITIAL_CAPACITY];
+
+  /**
+   * Number of successors on the successor stack.
+   */
+  private int successorCount;
+
+  /**
+   * Number of states visited by the last exploration.
+   */
+  private long stateCount;
+
+  /**
+   * The uncontrollable event disabled by a specification in the state at the top of the search stack.
+   */
+  private int violatingEvent;
+
+  /**
+   * The metrics the progress of explorations is published to.
+   */
+  private ExplorationMetrics metrics = new ExplorationMetrics();
+
+  /**
+   * Create a depth first explorer.
+   *
+   * @param model   The compiled model to explore.
+   * @param encoder The state tuple encoder for the model, which must use a single long per state tuple code.
+   */
+  public DepthFirstExplorer(CompiledModel model, StateTupleEncoder encoder) {
+    generator = new SuccessorGenerator(model, encoder);
+  }
+
+  /**
+   * Sets the metrics to publish the progress of explorations to.
+   *
+   * @param metrics The metrics.
+   */
+  public void setMetrics(ExplorationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Explores all states reachable from an initial state.
+   *
+   * @param initialState The code of the initial state tuple.
+   * @param visited      The set of visited states to use, which must be empty.
+   * @return True if no violation was found, false otherwise.
+   * @throws ResourceLimitException If the exploration exceeds a resource limit of its metrics.
+   */
+  public boolean explore(long initialState, VisitedStateSet visited) {
+    return explore(initialState, visited, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Explores all states reachable from an initial state on paths of at most a given number of events.
+   *
+   * @param initialState The code of the initial state tuple.
+   * @param visited      The set of visited states to use, which must be empty.
+   * @param bound        The largest number of events on an explored path.
+   * @return True if no violation was found, false otherwise.
+   * @throws ResourceLimitException If the exploration exceeds a resource limit of its metrics.
+   * @see #isCutOff()
+   */
+  public boolean explore(long initialState, VisitedStateSet visited, int bound) {
+    this.visited = visited;
+    depthBound = bound;
+    cutOff = false;
+    depth = 0;
+    successorCount = 0;
+    stateCount = 0;
+
+    visited.add(initialState);
+    if (!push(initialState, StateTupleMap.NO_EVENT)) return false;
+
+    while (depth > 0) {
+      // leave a level once all its successors are explored
+      if (successorCount == pathStarts[depth - 1]) {
+        depth--;
+        continue;
+      }
+
+      successorCount--;
+      // the successor would be reached by the event on the next level of the search stack
+      if (depth > depthBound) {
+        cutOff = true;
+        continue;
+      }
+
+      long state = successorStates[successorCount];
+      if (visited.add(state) && !push(state, successorEvents[successorCount])) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns whether the last search left out any state because it was beyond the depth bound, in which case a search
+   * with a larger bound may still find a violation.
+   *
+   * @return True if the search was cut off.
+   */
+  public boolean isCutOff() {
+    return cutOff;
+  }
+
+  /**
+   * Gets the number of states visited by the last exploration.
+   *
+   * @return The number of states.
+   */
+  public long getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * Gets the events of the path from the initial state to the state in which the last exploration found a violation.
+   *
+   * @return The indices of the events.
+   */
+  public int[] getTrace() {
+    return Arrays.copyOfRange(pathEvents, 1, depth);
+  }
+
+  /**
+   * Gets the uncontrollable event disabled by a specification found by the last exploration.
+   *
+   * @return The index of the event.
+   */
+  public int getViolatingEvent() {
+    return violatingEvent;
+  }
+
+  /**
+   * Pushes a state onto the search stack and its successors onto the successor stack.
+   *
+   * @param state The state.
+   * @param event The index of the event reaching the state.
+   * @return False if an uncontrollable event is disabled by a specification in the state, true otherwise.
+   */
+  private boolean push(long state, int event) {
+    stateCount++;
+    if ((stateCount & (ExplorationMetrics.PUBLISH_INTERVAL - 1)) == 0) {
+      metrics.update(stateCount, successorCount, depth);
+      metrics.updateStore(visited.getCapacity(), visited.getMemoryBytes());
+    }
+    if (depth == pathEvents.length) {
+      pathEvents = Arrays.copyOf(pathEvents, depth << 1);
+      pathStarts = Arrays.copyOf(pathStarts, depth << 1);
+    }
+    pathEvents[depth] = event;
+    pathStarts[depth] = successorCount;
+    depth++;
+
+    int count = generator.expand(state);
+    if (count == SuccessorGenerator.VIOLATION) {
+      violatingEvent = generator.getViolatingEvent();
+      return false;
+    }
+
+    if (successorCount + count > successorStates.length) {
+      int capacity = Math.max(successorStates.length << 1, successorCount + count);
+      successorStates = Arrays.copyOf(successorStates, capacity);
+      successorEvents = Arrays.copyOf(successorEvents, capacity);
+    }
+    for (int k = 0; k < count; k++) {
+      successorStates[successorCount] = generator.getSuccessor(k);
+      successorEvents[successorCount] = generator.getSuccessorEvent(k);
+      successorCount++;
+    }
+
+    return true;
+  }
+}
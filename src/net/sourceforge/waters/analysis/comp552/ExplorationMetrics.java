@@ -0,0 +1,428 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The progress of a {@link ControllabilityChecker}, which can be read by other threads while the check runs and
+ * registered as an MXBean to be read over JMX.
+ *
+ * <P>The explorers count in local variables and only publish their counts every {@link #PUBLISH_INTERVAL} states,
+ * so the metrics cost the exploration next to nothing. A single threaded explorer publishes its counts with
+ * {@link #update(long, long, int)}. The threads of a parallel explorer each publish to their own {@link Counter}
+ * instead, which are only summed when the metrics are read.</P>
+ *
+ * <P>Since every explorer publishes at regular intervals, publishing is also where the resource limits of a check are
+ * enforced. Publishing throws a {@link ResourceLimitException} once the states visited, the bytes of the visited
+ * state set or the time since the check started exceed their limits. A limit can thus be overshot by the work done
+ * between two publications, but checking it costs no more than publishing.</P>
+ */
+public class ExplorationMetrics implements ExplorationMetricsMXBean {
+  /**
+   * Number of states an explorer expands between publishing its counts, a power of two.
+   */
+  public static final int PUBLISH_INTERVAL = 1 << 12;
+
+  /**
+   * Domain of the names the metrics are registered under.
+   */
+  private static final String DOMAIN = "net.sourceforge.waters.analysis.comp552";
+
+  /**
+   * Source of distinct ids for registered metrics, so that checks of models with the same name can run at once.
+   */
+  private static final AtomicLong nextId = new AtomicLong();
+
+  /**
+   * The phases of a check.
+   */
+  public enum Phase {
+    /**
+     * The check has not started.
+     */
+    IDLE,
+
+    /**
+     * The model is being compiled and reduced.
+     */
+    SETUP,
+
+    /**
+     * The state space is being explored.
+     */
+    EXPLORE,
+
+    /**
+     * The counterexample is being computed.
+     */
+    COUNTEREXAMPLE,
+
+    /**
+     * The check has finished.
+     */
+    DONE
+  }
+
+  /**
+   * Name of the model being checked.
+   */
+  private volatile String modelName;
+
+  /**
+   * The current phase.
+   */
+  private volatile Phase phase = Phase.IDLE;
+
+  /**
+   * Time the current phase started, from {@link System#nanoTime()}.
+   */
+  private volatile long phaseStart;
+
+  /**
+   * Time spent in each phase before the current one, in nanoseconds.
+   */
+  private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+  /**
+   * Number of states visited as published by a single threaded explorer.
+   */
+  private volatile long visited;
+
+  /**
+   * Number of states reached but not expanded as published by a single threaded explorer.
+   */
+  private volatile long frontier;
+
+  /**
+   * The current depth of the exploration.
+   */
+  private volatile int depth;
+
+  /**
+   * Number of slots of the visited state set.
+   */
+  private volatile long capacity;
+
+  /**
+   * Number of bytes used by the visited state set.
+   */
+  private volatile long memoryBytes;
+
+  /**
+   * The counters of the threads of a parallel explorer.
+   */
+  private final List<Counter> counters = new CopyOnWriteArrayList<>();
+
+  /**
+   * Time the current check started, from {@link System#nanoTime()}.
+   */
+  private volatile long runStart;
+
+  /**
+   * Largest number of states a check may visit.
+   */
+  private long maxStates = Long.MAX_VALUE;
+
+  /**
+   * Largest number of bytes the visited state set of a check may use.
+   */
+  private long maxMemoryBytes = Long.MAX_VALUE;
+
+  /**
+   * Longest time a check may take, in nanoseconds.
+   */
+  private long maxNanos = Long.MAX_VALUE;
+
+  /**
+   * Create metrics for checks of a model.
+   *
+   * @param modelName Name of the model.
+   */
+  public ExplorationMetrics(String modelName) {
+    this.modelName = modelName;
+  }
+
+  /**
+   * Create metrics that are only published to, for an explorer used without a checker.
+   */
+  public ExplorationMetrics() {
+    this("");
+  }
+
+  /**
+   * Clears the metrics for a new check, which starts in the {@link Phase#SETUP} phase.
+   *
+   * @param modelName Name of the model to check.
+   */
+  public void reset(String modelName) {
+    this.modelName = modelName;
+    for (int i = 0; i < phaseNanos.length(); i++) phaseNanos.set(i, 0);
+    counters.clear();
+    visited = 0;
+    frontier = 0;
+    depth = 0;
+    capacity = 0;
+    memoryBytes = 0;
+    phaseStart = System.nanoTime();
+    runStart = phaseStart;
+    phase = Phase.SETUP;
+  }
+
+  /**
+   * Sets the resource limits enforced when the counts are published.
+   *
+   * @param maxStates      Largest number of states a check may visit, or 0 for no limit.
+   * @param maxMemoryBytes Largest number of bytes the visited state set may use, or 0 for no limit.
+   * @param maxMillis      Longest time a check may take in milliseconds, or 0 for no limit.
+   */
+  public void setLimits(long maxStates, long maxMemoryBytes, long maxMillis) {
+    this.maxStates = maxStates > 0 ? maxStates : Long.MAX_VALUE;
+    this.maxMemoryBytes = maxMemoryBytes > 0 ? maxMemoryBytes : Long.MAX_VALUE;
+    this.maxNanos = maxMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(maxMillis) : Long.MAX_VALUE;
+  }
+
+  /**
+   * Ends the current phase and starts another.
+   *
+   * @param next The phase to start.
+   */
+  public void beginPhase(Phase next) {
+    long now = System.nanoTime();
+    phaseNanos.addAndGet(phase.ordinal(), now - phaseStart);
+    phaseStart = now;
+    phase = next;
+  }
+
+  /**
+   * Ends the check, replacing the published counts by the final number of states.
+   *
+   * @param stateCount Number of states visited by the check.
+   */
+  public void finish(long stateCount) {
+    counters.clear();
+    visited = stateCount;
+    frontier = 0;
+    beginPhase(Phase.DONE);
+  }
+
+  /**
+   * Publishes the counts of a single threaded explorer.
+   *
+   * @param visited  Number of states visited.
+   * @param frontier Number of states reached but not expanded.
+   * @param depth    The current depth.
+   */
+  public void update(long visited, long frontier, int depth) {
+    this.visited = visited;
+    this.frontier = frontier;
+    this.depth = depth;
+    checkLimits();
+  }
+
+  /**
+   * Publishes the current depth.
+   *
+   * @param depth The depth.
+   */
+  public void updateDepth(int depth) {
+    this.depth = depth;
+    checkLimits();
+  }
+
+  /**
+   * Publishes the size of the visited state set.
+   *
+   * @param capacity    Number of slots, or 0 if the set is not a hash table.
+   * @param memoryBytes Number of bytes used.
+   */
+  public void updateStore(long capacity, long memoryBytes) {
+    this.capacity = capacity;
+    this.memoryBytes = memoryBytes;
+    checkLimits();
+  }
+
+  /**
+   * Throws an exception if the published counts or the time since the check started exceed a limit.
+   *
+   * @throws ResourceLimitException If a limit is exceeded.
+   */
+  private void checkLimits() {
+    long states = getStatesVisited();
+    long elapsed = System.nanoTime() - runStart;
+    ResourceLimitException.Limit exceeded = null;
+    if (states > maxStates) exceeded = ResourceLimitException.Limit.STATES;
+    else if (memoryBytes > maxMemoryBytes) exceeded = ResourceLimitException.Limit.MEMORY;
+    else if (elapsed > maxNanos) exceeded = ResourceLimitException.Limit.TIME;
+    if (exceeded != null) {
+      throw new ResourceLimitException(exceeded, states, memoryBytes, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+  }
+
+  /**
+   * Gets the time since the current check started.
+   *
+   * @return The time in milliseconds.
+   */
+  public long getElapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStart);
+  }
+
+  /**
+   * Creates a counter for a thread of a parallel explorer, whose counts are added to those published with
+   * {@link #update(long, long, int)}.
+   *
+   * @return The counter.
+   */
+  public Counter newCounter() {
+    Counter counter = new Counter();
+    counters.add(counter);
+    return counter;
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server, under a name with the model name and a distinct id.
+   *
+   * @return The name the metrics are registered under.
+   * @throws JMException If the metrics cannot be registered.
+   */
+  public ObjectName register() throws JMException {
+    ObjectName name = new ObjectName(DOMAIN + ":type=ExplorationMetrics,model=" + ObjectName.quote(modelName) +
+        ",id=" + nextId.getAndIncrement());
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    return name;
+  }
+
+  /**
+   * Removes metrics from the platform MBean server.
+   *
+   * @param name The name the metrics are registered under.
+   * @throws JMException If the metrics are not registered.
+   */
+  public static void unregister(ObjectName name) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.unregisterMBean(name);
+  }
+
+  @Override
+  public String getModelName() {
+    return modelName;
+  }
+
+  @Override
+  public String getPhase() {
+    return phase.name();
+  }
+
+  @Override
+  public long getStatesVisited() {
+    long sum = visited;
+    for (Counter counter : counters) sum += counter.visited;
+    return sum;
+  }
+
+  @Override
+  public long getFrontierSize() {
+    long sum = frontier;
+    for (Counter counter : counters) sum += counter.visited - counter.expanded;
+    return sum;
+  }
+
+  @Override
+  public double getStatesPerSecond() {
+    long nanos = getPhaseNanos(Phase.EXPLORE);
+    return nanos == 0 ? 0 : getStatesVisited() * 1e9 / nanos;
+  }
+
+  @Override
+  public double getLoadFactor() {
+    long slots = capacity;
+    return slots == 0 ? 0 : (double) getStatesVisited() / slots;
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  @Override
+  public int getDepth() {
+    return depth;
+  }
+
+  @Override
+  public long getSetupMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.SETUP));
+  }
+
+  @Override
+  public long getExploreMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.EXPLORE));
+  }
+
+  @Override
+  public long getCounterExampleMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.COUNTEREXAMPLE));
+  }
+
+  /**
+   * Gets the time spent in a phase, including the time so far if it is the current phase.
+   *
+   * @param of The phase.
+   * @return The time in nanoseconds.
+   */
+  private long getPhaseNanos(Phase of) {
+    long nanos = phaseNanos.get(of.ordinal());
+    if (phase == of) nanos += System.nanoTime() - phaseStart;
+    return nanos;
+  }
+
+  /**
+   * Describes the metrics on one line, for progress output.
+   *
+   * @return The description.
+   */
+  @Override
+  public String toString() {
+    return String.format("%s: %s, %d states, frontier %d, depth %d, %.0f states/s, load %.2f, %d MB",
+        modelName, phase.name().toLowerCase(), getStatesVisited(), getFrontierSize(), getDepth(),
+        getStatesPerSecond(), getLoadFactor(), getMemoryBytes() >> 20);
+  }
+
+  /**
+   * The counts of one thread of a parallel explorer. Only the thread owning a counter may add to it.
+   */
+  public static class Counter {
+    /**
+     * Number of states added to the visited state set.
+     */
+    private volatile long visited;
+
+    /**
+     * Number of states expanded.
+     */
+    private volatile long expanded;
+
+    /**
+     * Adds to the counts.
+     *
+     * @param visited  Number of states added to the visited state set since the last call.
+     * @param expanded Number of states expanded since the last call.
+     * @return True if the number of states expanded passed a multiple of {@link #PUBLISH_INTERVAL}, so the owning
+     * thread should publish anything else it publishes periodically.
+     */
+    public boolean add(long visited, long expanded) {
+      // only the owning thread writes, so the increments cannot be lost
+      long before = this.expanded;
+      this.visited = this.visited + visited;
+      this.expanded = before + expanded;
+      return before / PUBLISH_INTERVAL != (before + expanded) / PUBLISH_INTERVAL;
+    }
+  }
+}
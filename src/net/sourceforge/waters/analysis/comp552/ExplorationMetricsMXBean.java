@@ -0,0 +1,83 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * The management interface of {@link ExplorationMetrics}, giving the progress of a check over JMX.
+ */
+public interface ExplorationMetricsMXBean {
+  /**
+   * Gets the name of the model being checked.
+   *
+   * @return The model name.
+   */
+  String getModelName();
+
+  /**
+   * Gets the name of the current phase of the check.
+   *
+   * @return The phase name.
+   */
+  String getPhase();
+
+  /**
+   * Gets the number of states visited so far.
+   *
+   * @return The number of states.
+   */
+  long getStatesVisited();
+
+  /**
+   * Gets the number of states reached but not yet expanded.
+   *
+   * @return The number of states.
+   */
+  long getFrontierSize();
+
+  /**
+   * Gets the average number of states visited per second since the exploration started.
+   *
+   * @return The number of states per second.
+   */
+  double getStatesPerSecond();
+
+  /**
+   * Gets the number of states visited per slot of the visited state set.
+   *
+   * @return The load factor, or 0 if the exploration does not use a hash table.
+   */
+  double getLoadFactor();
+
+  /**
+   * Gets the number of bytes used by the visited state set.
+   *
+   * @return The number of bytes.
+   */
+  long getMemoryBytes();
+
+  /**
+   * Gets the current depth of the exploration, the breadth first level or the length of the depth first path.
+   *
+   * @return The depth, or 0 if the exploration has no levels, as with several threads not synchronised by level.
+   */
+  int getDepth();
+
+  /**
+   * Gets the time spent compiling the model.
+   *
+   * @return The time in milliseconds.
+   */
+  long getSetupMillis();
+
+  /**
+   * Gets the time spent exploring the state space.
+   *
+   * @return The time in milliseconds.
+   */
+  long getExploreMillis();
+
+  /**
+   * Gets the time spent computing the counterexample.
+   *
+   * @return The time in milliseconds.
+   */
+  long getCounterExampleMillis();
+}
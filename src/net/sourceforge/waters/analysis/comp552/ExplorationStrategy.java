@@ -0,0 +1,50 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * The ways a {@link ControllabilityChecker} can explore the state space of a model.
+ */
+public enum ExplorationStrategy {
+  /**
+   * Breadth first search from a single queue, or with several threads stealing chunks of newly reached states from
+   * each other. Counterexamples are the shortest possible with one thread.
+   */
+  BREADTH_FIRST,
+
+  /**
+   * Breadth first search one level at a time, with each level expanded by all threads. Counterexamples are the
+   * shortest possible for any number of threads.
+   */
+  LEVEL_SYNCHRONOUS,
+
+  /**
+   * Breadth first search one level at a time with the visited states kept in sorted files on disk, for state spaces
+   * that do not fit in memory. Counterexamples are the shortest possible.
+   */
+  EXTERNAL_MEMORY,
+
+  /**
+   * Depth first search with explicit stacks, which often finds deep violations after visiting only part of the state
+   * space. Counterexamples can be long.
+   */
+  DEPTH_FIRST,
+
+  /**
+   * Depth first searches with a depth bound that doubles until a violation is found or the whole state space is
+   * explored, which keeps counterexamples shorter than a single depth first search.
+   */
+  ITERATIVE_DEEPENING,
+
+  /**
+   * Depth first search that marks visited states in a fixed size bit array, for finding counterexamples quickly in
+   * bounded memory. States may be omitted, so a controllable result is only probable, see
+   * {@link ControllabilityChecker#isResultApproximate()}.
+   */
+  BITSTATE,
+
+  /**
+   * Breadth first search over sets of states represented as binary decision diagrams, see {@link SymbolicExplorer},
+   * which can explore state spaces far too large to enumerate when the diagrams stay small. It is used for any number
+   * of words per state tuple code. Counterexamples are the shortest possible.
+   */
+  SYMBOLIC
+}
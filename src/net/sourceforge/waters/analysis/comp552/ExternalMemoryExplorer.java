@@ -0,0 +1,706 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Explores the state space of a model breadth first with the visited states kept on disk, for state tuple codes that
+ * fit in a single long.
+ *
+ * <P>Each breadth first level is stored in its own file as records of state, previous state and event, sorted by
+ * state, and all visited states are kept in one sorted file. While a level is expanded, its successors are collected
+ * in memory up to the memory budget, then sorted and written out as a run. Once the level is done the runs are
+ * merged with the visited file in a sequential pass, which removes the duplicates and the states visited before,
+ * writes the next level and writes the new visited file. Every file being merged needs an open file and a buffer, so
+ * when there are more runs than can be merged at once, groups of them are first merged into longer runs. Duplicate
+ * detection is thus delayed to the end of each level, and all file access apart from counterexample reconstruction is
+ * sequential.</P>
+ *
+ * <P>The level files are kept until the explorer is closed, so that the previous state of any reached state can be
+ * found by binary search.</P>
+ */
+public class ExternalMemoryExplorer implements PredecessorMap, Closeable {
+  /**
+   * Number of bytes in a record of state, previous state and event.
+   */
+  private static final int RECORD_BYTES = 20;
+
+  /**
+   * Number of bytes in a record of the visited file, which only contains states.
+   */
+  private static final int KEY_BYTES = 8;
+
+  /**
+   * Size of the buffer used for each file that is read or written sequentially.
+   */
+  private static final int BUFFER_BYTES = 1 << 16;
+
+  /**
+   * Largest number of runs merged in one pass.
+   */
+  private static final int MAX_MERGE_RUNS = 64;
+
+  /**
+   * Smallest number of records collected in memory before a run is written.
+   */
+  private static final int MIN_RUN_RECORDS = 1024;
+
+  /**
+   * The compiled model to explore.
+   */
+  private final CompiledModel model;
+
+  /**
+   * The state tuple encoder for the model.
+   */
+  private final StateTupleEncoder encoder;
+
+  /**
+   * Directory in which the directory of the files of an exploration is created.
+   */
+  private final File scratchDirectory;
+
+  /**
+   * Number of records collected in memory before a run is written.
+   */
+  private final int runCapacity;
+
+  /**
+   * Directory containing the files of the current exploration.
+   */
+  private Path directory;
+
+  /**
+   * Files of each breadth first level.
+   */
+  private final List<Path> levels = new ArrayList<>();
+
+  /**
+   * Files of the sorted runs of the level being expanded.
+   */
+  private final List<Path> runs = new ArrayList<>();
+
+  /**
+   * Number of runs written by the current exploration, which numbers the files of the runs.
+   */
+  private int runCount;
+
+  /**
+   * States of the records collected in memory.
+   */
+  private long[] runStates;
+
+  /**
+   * Previous states of the records collected in memory.
+   */
+  private long[] runPrevious;
+
+  /**
+   * Events of the records collected in memory.
+   */
+  private int[] runEvents;
+
+  /**
+   * Number of records collected in memory.
+   */
+  private int runSize;
+
+  /**
+   * Number of states visited by the last exploration.
+   */
+  private long stateCount;
+
+  /**
+   * The state in which a violation was found.
+   */
+  private long violatingState;
+
+  /**
+   * The uncontrollable event disabled by a specification in the violating state.
+   */
+  private int violatingEvent;
+
+  /**
+   * True if a record has been found by {@link #find(long)} since the last exploration.
+   */
+  private boolean found;
+
+  /**
+   * The state of the last record found by {@link #find(long)}.
+   */
+  private long foundState;
+
+  /**
+   * The previous state of the last record found by {@link #find(long)}.
+   */
+  private long foundPrevious;
+
+  /**
+   * The event of the last record found by {@link #find(long)}.
+   */
+  private int foundEvent;
+
+  /**
+   * The metrics the progress of explorations is published to.
+   */
+  private ExplorationMetrics metrics = new ExplorationMetrics();
+
+  /**
+   * Create an external memory explorer.
+   *
+   * @param model            The compiled model to explore.
+   * @param encoder          The state tuple encoder for the model, which must use a single long per state tuple code.
+   * @param scratchDirectory Directory for the files of the exploration, or null for the default temporary directory.
+   * @param memoryBudget     Number of bytes that may be used to collect successors in memory.
+   */
+  public ExternalMemoryExplorer(CompiledModel model, StateTupleEncoder encoder, File scratchDirectory,
+                                long memoryBudget) {
+    this.model = model;
+    this.encoder = encoder;
+    this.scratchDirectory = scratchDirectory;
+    runCapacity = (int) Math.max(MIN_RUN_RECORDS, Math.min(memoryBudget / RECORD_BYTES, Integer.MAX_VALUE - 8));
+  }
+
+  /**
+   * Sets the metrics to publish the progress of explorations to.
+   *
+   * @param metrics The metrics.
+   */
+  public void setMetrics(ExplorationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Explores all states reachable from an initial state.
+   *
+   * @param initialState The code of the initial state tuple.
+   * @return True if no violation was found, false otherwise.
+   * @throws IOException If the files of the exploration cannot be read or written.
+   * @throws ResourceLimitException If the exploration exceeds a resource limit of its metrics.
+   */
+  public boolean explore(long initialState) throws IOException {
+    close();
+    directory = scratchDirectory == null ? Files.createTempDirectory("controllability")
+        : Files.createTempDirectory(scratchDirectory.toPath(), "controllability");
+
+    // the first level and the visited file only contain the initial state
+    Path visited = directory.resolve("visited.bin");
+    try (RecordWriter writer = new RecordWriter(visited, false)) {
+      writer.write(initialState, 0, 0);
+    }
+    Path level = directory.resolve("level0.bin");
+    try (RecordWriter writer = new RecordWriter(level, true)) {
+      writer.write(initialState, initialState, StateTupleMap.NO_EVENT);
+    }
+    levels.add(level);
+    stateCount = 1;
+    runCount = 0;
+
+    runStates = new long[runCapacity];
+    runPrevious = new long[runCapacity];
+    runEvents = new int[runCapacity];
+    SuccessorGenerator generator = new SuccessorGenerator(model, encoder);
+    long levelSize = 1;
+    try {
+      while (true) {
+        // the visited states are on disk, so only the buffers of the runs count towards the memory
+        metrics.update(stateCount, levelSize, levels.size() - 1);
+        metrics.updateStore(0, (long) runCapacity * RECORD_BYTES);
+
+        // expand the last level, writing its successors as sorted runs
+        long expanded = 0;
+        try (RecordReader reader = new RecordReader(level, true)) {
+          while (reader.next()) {
+            if ((++expanded & (ExplorationMetrics.PUBLISH_INTERVAL - 1)) == 0) {
+              metrics.update(stateCount, levelSize - expanded, levels.size() - 1);
+            }
+            long state = reader.state;
+            int count = generator.expand(state);
+            if (count == SuccessorGenerator.VIOLATION) {
+              violatingState = state;
+              violatingEvent = generator.getViolatingEvent();
+              return false;
+            }
+
+            for (int k = 0; k < count; k++) {
+              if (runSize == runCapacity) writeRun();
+              runStates[runSize] = generator.getSuccessor(k);
+              runPrevious[runSize] = state;
+              runEvents[runSize] = generator.getSuccessorEvent(k);
+              runSize++;
+            }
+          }
+        }
+        writeRun();
+
+        // merge the runs into the next level and the visited file
+        Path nextLevel = directory.resolve("level" + levels.size() + ".bin");
+        Path nextVisited = directory.resolve("visited" + levels.size() + ".bin");
+        long added = mergeRuns(visited, nextLevel, nextVisited);
+        Files.delete(visited);
+        visited = nextVisited;
+        if (added == 0) {
+          Files.delete(nextLevel);
+          return true;
+        }
+
+        stateCount += added;
+        levelSize = added;
+        levels.add(nextLevel);
+        level = nextLevel;
+      }
+    } finally {
+      runStates = null;
+      runPrevious = null;
+      runEvents = null;
+      runSize = 0;
+      for (Path run : runs) Files.deleteIfExists(run);
+      runs.clear();
+    }
+  }
+
+  /**
+   * Gets the number of states visited by the last exploration.
+   *
+   * @return The number of states.
+   */
+  public long getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * Gets the state in which a violation was found by the last exploration.
+   *
+   * @return The code of the violating state tuple.
+   */
+  public long getViolatingState() {
+    return violatingState;
+  }
+
+  /**
+   * Gets the uncontrollable event disabled by a specification found by the last exploration.
+   *
+   * @return The index of the event.
+   */
+  public int getViolatingEvent() {
+    return violatingEvent;
+  }
+
+  @Override
+  public long getPrevious(long state) {
+    find(state);
+    return foundPrevious;
+  }
+
+  @Override
+  public int getPreviousEvent(long state) {
+    find(state);
+    return foundEvent;
+  }
+
+  /**
+   * Deletes all files of the last exploration.
+   *
+   * @throws IOException If the files cannot be deleted.
+   */
+  @Override
+  public void close() throws IOException {
+    levels.clear();
+    found = false;
+    if (directory == null) return;
+
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+    }
+    Files.delete(directory);
+    directory = null;
+  }
+
+  /**
+   * Sorts the records collected in memory by state and writes them to a new run, leaving out duplicate states.
+   *
+   * @throws IOException If the run cannot be written.
+   */
+  private void writeRun() throws IOException {
+    if (runSize == 0) return;
+
+    sort(0, runSize - 1);
+    Path run = directory.resolve("run" + runCount++ + ".bin");
+    try (RecordWriter writer = new RecordWriter(run, true)) {
+      for (int k = 0; k < runSize; k++) {
+        if (k > 0 && runStates[k] == runStates[k - 1]) continue;
+        writer.write(runStates[k], runPrevious[k], runEvents[k]);
+      }
+    }
+    runs.add(run);
+    runSize = 0;
+  }
+
+  /**
+   * Merges the runs of the level just expanded with the visited file. Each state in the runs that is not in the
+   * visited file is written once to the next level, and the new visited file contains the states of both.
+   *
+   * @param visited     The visited file.
+   * @param nextLevel   The file to write the next level to.
+   * @param nextVisited The file to write the new visited file to.
+   * @return The number of states in the next level.
+   * @throws IOException If the files cannot be read or written.
+   */
+  private long mergeRuns(Path visited, Path nextLevel, Path nextVisited) throws IOException {
+    // the oldest runs are merged first, so each record is merged about as often as any other
+    while (runs.size() > MAX_MERGE_RUNS) mergeRunGroup(MAX_MERGE_RUNS);
+
+    PriorityQueue<RecordReader> heap = new PriorityQueue<>((a, b) -> Long.compare(a.state, b.state));
+    long added = 0;
+
+    try (RecordReader visitedReader = new RecordReader(visited, false);
+         RecordWriter levelWriter = new RecordWriter(nextLevel, true);
+         RecordWriter visitedWriter = new RecordWriter(nextVisited, false)) {
+      openRuns(runs, heap);
+
+      boolean hasVisited = visitedReader.next();
+      boolean hasLast = false;
+      long last = 0;
+      while (!heap.isEmpty()) {
+        RecordReader reader = heap.poll();
+        long state = reader.state;
+
+        // the runs may contain the same state several times, only the first one is used
+        if (!hasLast || state != last) {
+          while (hasVisited && visitedReader.state < state) {
+            visitedWriter.write(visitedReader.state, 0, 0);
+            hasVisited = visitedReader.next();
+          }
+
+          if (!hasVisited || visitedReader.state != state) {
+            levelWriter.write(state, reader.previous, reader.event);
+            visitedWriter.write(state, 0, 0);
+            added++;
+          }
+
+          last = state;
+          hasLast = true;
+        }
+
+        if (reader.next()) heap.add(reader);
+        else reader.close();
+      }
+
+      while (hasVisited) {
+        visitedWriter.write(visitedReader.state, 0, 0);
+        hasVisited = visitedReader.next();
+      }
+    } finally {
+      for (RecordReader reader : heap) reader.close();
+      for (Path run : runs) Files.deleteIfExists(run);
+      runs.clear();
+    }
+
+    return added;
+  }
+
+  /**
+   * Merges the first runs into a new run at the end of the list of runs, keeping the first record of each state.
+   *
+   * @param count The number of runs to merge.
+   * @throws IOException If the runs cannot be read or written.
+   */
+  private void mergeRunGroup(int count) throws IOException {
+    List<Path> group = new ArrayList<>(runs.subList(0, count));
+    Path merged = directory.resolve("run" + runCount++ + ".bin");
+    runs.add(merged);
+    PriorityQueue<RecordReader> heap = new PriorityQueue<>((a, b) -> Long.compare(a.state, b.state));
+
+    try (RecordWriter writer = new RecordWriter(merged, true)) {
+      openRuns(group, heap);
+      boolean hasLast = false;
+      long last = 0;
+      while (!heap.isEmpty()) {
+        RecordReader reader = heap.poll();
+        if (!hasLast || reader.state != last) {
+          writer.write(reader.state, reader.previous, reader.event);
+          last = reader.state;
+          hasLast = true;
+        }
+
+        if (reader.next()) heap.add(reader);
+        else reader.close();
+      }
+    } finally {
+      for (RecordReader reader : heap) reader.close();
+    }
+
+    for (Path run : group) Files.delete(run);
+    runs.subList(0, count).clear();
+  }
+
+  /**
+   * Opens runs and adds a reader positioned at the first record of each non-empty run to a heap.
+   *
+   * @param files The runs.
+   * @param heap  The heap of readers ordered by state.
+   * @throws IOException If the runs cannot be read.
+   */
+  private static void openRuns(List<Path> files, PriorityQueue<RecordReader> heap) throws IOException {
+    for (Path run : files) {
+      RecordReader reader = new RecordReader(run, true);
+      if (reader.next()) heap.add(reader);
+      else reader.close();
+    }
+  }
+
+  /**
+   * Finds the record of a reached state by binary search in the level files, starting with the last level since
+   * counterexamples are traced back from there.
+   *
+   * @param state The state to find.
+   */
+  private void find(long state) {
+    if (found && foundState == state) return;
+
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+    try {
+      for (int l = levels.size() - 1; l >= 0; l--) {
+        try (FileChannel channel = FileChannel.open(levels.get(l), StandardOpenOption.READ)) {
+          long low = 0;
+          long high = channel.size() / RECORD_BYTES - 1;
+          while (low <= high) {
+            long middle = (low + high) >>> 1;
+            buffer.clear();
+            channel.read(buffer, middle * RECORD_BYTES);
+            long key = buffer.getLong(0);
+
+            if (key < state) {
+              low = middle + 1;
+            } else if (key > state) {
+              high = middle - 1;
+            } else {
+              found = true;
+              foundState = state;
+              foundPrevious = buffer.getLong(8);
+              foundEvent = buffer.getInt(16);
+              return;
+            }
+          }
+        }
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+
+    throw new IllegalArgumentException("State was not reached by the last exploration.");
+  }
+
+  /**
+   * Sorts a range of the records collected in memory by state.
+   *
+   * @param low  Index of the first record.
+   * @param high Index of the last record.
+   */
+  private void sort(int low, int high) {
+    while (high - low > 16) {
+      long pivot = runStates[(low + high) >>> 1];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (runStates[i] < pivot) i++;
+        while (runStates[j] > pivot) j--;
+        if (i <= j) swap(i++, j--);
+      }
+
+      // recurse into the smaller part so the stack stays logarithmic
+      if (j - low < high - i) {
+        sort(low, j);
+        low = i;
+      } else {
+        sort(i, high);
+        high = j;
+      }
+    }
+
+    for (int i = low + 1; i <= high; i++) {
+      for (int j = i; j > low && runStates[j - 1] > runStates[j]; j--) swap(j - 1, j);
+    }
+  }
+
+  /**
+   * Swaps two of the records collected in memory.
+   *
+   * @param i Index of the first record.
+   * @param j Index of the second record.
+   */
+  private void swap(int i, int j) {
+    long state = runStates[i];
+    runStates[i] = runStates[j];
+    runStates[j] = state;
+    long previous = runPrevious[i];
+    runPrevious[i] = runPrevious[j];
+    runPrevious[j] = previous;
+    int event = runEvents[i];
+    runEvents[i] = runEvents[j];
+    runEvents[j] = event;
+  }
+
+  /**
+   * Reads a file of records sequentially.
+   */
+  private static class RecordReader implements Closeable {
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Buffer of records read from the file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * True if the records contain previous states and events, false if they only contain states.
+     */
+    private final boolean full;
+
+    /**
+     * The state of the current record.
+     */
+    long state;
+
+    /**
+     * The previous state of the current record.
+     */
+    long previous;
+
+    /**
+     * The event of the current record.
+     */
+    int event;
+
+    /**
+     * Open a file of records.
+     *
+     * @param file The file.
+     * @param full True if the records contain previous states and events, false if they only contain states.
+     * @throws IOException If the file cannot be opened.
+     */
+    RecordReader(Path file, boolean full) throws IOException {
+      this.full = full;
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+      buffer = ByteBuffer.allocateDirect(BUFFER_BYTES - BUFFER_BYTES % RECORD_BYTES);
+      buffer.flip();
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return True if a record was read, false at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    boolean next() throws IOException {
+      int bytes = full ? RECORD_BYTES : KEY_BYTES;
+      if (buffer.remaining() < bytes) {
+        buffer.compact();
+        while (buffer.position() < bytes) {
+          if (channel.read(buffer) < 0) {
+            buffer.flip();
+            return false;
+          }
+        }
+        buffer.flip();
+      }
+
+      state = buffer.getLong();
+      if (full) {
+        previous = buffer.getLong();
+        event = buffer.getInt();
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes a file of records sequentially.
+   */
+  private static class RecordWriter implements Closeable {
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Buffer of records to be written to the file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * True if the records contain previous states and events, false if they only contain states.
+     */
+    private final boolean full;
+
+    /**
+     * Create a file of records.
+     *
+     * @param file The file.
+     * @param full True if the records contain previous states and events, false if they only contain states.
+     * @throws IOException If the file cannot be created.
+     */
+    RecordWriter(Path file, boolean full) throws IOException {
+      this.full = full;
+      channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param state    The state.
+     * @param previous The previous state, ignored if the records only contain states.
+     * @param event    The event, ignored if the records only contain states.
+     * @throws IOException If the file cannot be written.
+     */
+    void write(long state, long previous, int event) throws IOException {
+      if (buffer.remaining() < RECORD_BYTES) flush();
+
+      buffer.putLong(state);
+      if (full) {
+        buffer.putLong(previous);
+        buffer.putInt(event);
+      }
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) channel.write(buffer);
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+}
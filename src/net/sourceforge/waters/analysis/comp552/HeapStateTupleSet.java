@@ -0,0 +1,166 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A set of state tuples, the previous state and event for all those states and a queue of unexpanded states, all
+ * stored in primitive arrays on the Java heap.
+ */
+public class HeapStateTupleSet implements StateTupleSet {
+  /**
+   * Initial capacity of the map of state tuples.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * Open addressing map between all state tuples in the set and the previous state tuples and events for that state
+   * tuples.
+   */
+  private final StateTupleMap states;
+
+  /**
+   * Queue of unexpanded state tuples.
+   */
+  private final LongRingBuffer unexpandedStates;
+
+  /**
+   * Create an empty set of state tuples.
+   */
+  public HeapStateTupleSet() {
+    states = new StateTupleMap(INITIAL_CAPACITY);
+    unexpandedStates = new LongRingBuffer();
+  }
+
+  /**
+   * Create a copy of a set of state tuples, which can be written while the original is still being explored.
+   *
+   * @param other The set to copy.
+   */
+  public HeapStateTupleSet(HeapStateTupleSet other) {
+    states = new StateTupleMap(other.states);
+    unexpandedStates = new LongRingBuffer(other.unexpandedStates);
+  }
+
+  /**
+   * Create a set of state tuples from its parts.
+   *
+   * @param states           Map between all state tuples in the set and their previous state tuples and events.
+   * @param unexpandedStates Queue of unexpanded state tuples.
+   */
+  private HeapStateTupleSet(StateTupleMap states, LongRingBuffer unexpandedStates) {
+    this.states = states;
+    this.unexpandedStates = unexpandedStates;
+  }
+
+  /**
+   * Reads a set of state tuples written by {@link #write(WritableByteChannel, ByteBuffer)}.
+   *
+   * @param channel The channel to read from.
+   * @param buffer  The buffer holding the bytes read from the channel but not consumed yet.
+   * @return The set of state tuples.
+   * @throws IOException If the set cannot be read.
+   */
+  public static HeapStateTupleSet read(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+    StateTupleMap states = StateTupleMap.read(channel, buffer);
+    return new HeapStateTupleSet(states, LongRingBuffer.read(channel, buffer));
+  }
+
+  /**
+   * Writes the state tuples with their previous state tuples and events, followed by the queue of unexpanded state
+   * tuples.
+   *
+   * @param channel The channel to write to.
+   * @param buffer  The buffer holding the bytes not written to the channel yet.
+   * @throws IOException If the set cannot be written.
+   */
+  public void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    states.write(channel, buffer);
+    unexpandedStates.write(channel, buffer);
+  }
+
+  /**
+   * Adds a state tuple to the sets and adds it to the queue of unexpanded state tuples.
+   *
+   * @param state         The state to add.
+   * @param previousState The previous state of the state to add.
+   * @param event         The index of the event from the previous state, or {@link StateTupleMap#NO_EVENT}.
+   */
+  @Override
+  public void add(long state, long previousState, int event) {
+    // a single probe both checks for and inserts the state
+    if (states.add(state, previousState, event)) {
+      unexpandedStates.add(state);
+    }
+  }
+
+  /**
+   * Returns true if there are unexpanded state tuples.
+   *
+   * @return True if there are unexpanded state tuples.
+   */
+  @Override
+  public boolean containsUnexpanded() {
+    return !unexpandedStates.isEmpty();
+  }
+
+  /**
+   * Returns the first unexpanded state tuple in the queue and removes it from the queue.
+   *
+   * @return The first unexpanded state tuple in the queue.
+   */
+  @Override
+  public long popUnexpanded() {
+    return unexpandedStates.remove();
+  }
+
+  /**
+   * Returns true if a specific state tuple is in the set.
+   *
+   * @param state State tuple to check for.
+   * @return True if state tuple is in the set.
+   */
+  @Override
+  public boolean contains(long state) {
+    return states.contains(state);
+  }
+
+  @Override
+  public long size() {
+    return states.size();
+  }
+
+  @Override
+  public long getCapacity() {
+    return states.getCapacity();
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    return states.getMemoryBytes() + unexpandedStates.getMemoryBytes();
+  }
+
+  /**
+   * Gets the previous state tuple for a specified state tuple.
+   *
+   * @param currentStateCode The state tuple to get the previous state tuple of.
+   * @return The previous state tuple.
+   */
+  @Override
+  public long getPrevious(long currentStateCode) {
+    return states.getPrevious(currentStateCode);
+  }
+
+  /**
+   * Gets the index of the event leading from the previous state tuple to a specified state tuple.
+   *
+   * @param currentStateCode The state tuple to get the previous event of.
+   * @return The index of the event.
+   */
+  @Override
+  public int getPreviousEvent(long currentStateCode) {
+    return states.getPreviousEvent(currentStateCode);
+  }
+}
@@ -0,0 +1,314 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Explores the state space of a model breadth first one level at a time, expanding each level with several threads,
+ * for state tuple codes that fit in a single long.
+ *
+ * <P>The current and next levels are kept as long arrays. The current level is split into chunks that are expanded in
+ * parallel, each collecting the new states it reaches in its own buffer, and the buffers are concatenated to form the
+ * next level. Every state in a level is recorded with a previous state from the level before, and the exploration
+ * stops at the first level in which a violation is found, so the counterexample built from the previous states is as
+ * short as possible regardless of how the threads are scheduled.</P>
+ */
+public class LevelSynchronousExplorer {
+  /**
+   * Number of states of a level expanded by one task.
+   */
+  private static final int CHUNK_SIZE = 1024;
+
+  /**
+   * The compiled model to explore.
+   */
+  private final CompiledModel model;
+
+  /**
+   * The state tuple encoder for the model.
+   */
+  private final StateTupleEncoder encoder;
+
+  /**
+   * Number of threads to explore with.
+   */
+  private final int threadCount;
+
+  /**
+   * Successor generator of each thread.
+   */
+  private final ThreadLocal<SuccessorGenerator> generators;
+
+  /**
+   * Set to contain all encountered states.
+   */
+  private ConcurrentStateTupleSet stateTupleSet;
+
+  /**
+   * Set by the first thread to find a violation or exceed a resource limit, after which all threads stop.
+   */
+  private final AtomicBoolean violationFound = new AtomicBoolean();
+
+  /**
+   * The resource limit exceeded by the last exploration, or null if it stayed within its limits.
+   */
+  private volatile ResourceLimitException limitExceeded;
+
+  /**
+   * The state in which the violation was found.
+   */
+  private long violatingState;
+
+  /**
+   * The uncontrollable event disabled by a specification in the violating state.
+   */
+  private int violatingEvent;
+
+  /**
+   * The states of the level being expanded.
+   */
+  private long[] currentLevel;
+
+  /**
+   * The new states reached from each chunk of the current level.
+   */
+  private long[][] chunkSuccessors;
+
+  /**
+   * The number of new states reached from each chunk of the current level.
+   */
+  private int[] chunkSuccessorCounts;
+
+  /**
+   * Number of levels fully expanded by the last exploration.
+   */
+  private int depth;
+
+  /**
+   * The metrics the progress of explorations is published to.
+   */
+  private ExplorationMetrics metrics = new ExplorationMetrics();
+
+  /**
+   * Counter of each thread of the current exploration.
+   */
+  private ThreadLocal<ExplorationMetrics.Counter> counters;
+
+  /**
+   * Create a level synchronous explorer.
+   *
+   * @param model       The compiled model to explore.
+   * @param encoder     The state tuple encoder for the model, which must use a single long per state tuple code.
+   * @param threadCount Number of threads to explore with.
+   */
+  public LevelSynchronousExplorer(CompiledModel model, StateTupleEncoder encoder, int threadCount) {
+    this.model = model;
+    this.encoder = encoder;
+    this.threadCount = threadCount;
+    generators = ThreadLocal.withInitial(() -> new SuccessorGenerator(this.model, this.encoder));
+  }
+
+  /**
+   * Sets the metrics to publish the progress of explorations to.
+   *
+   * @param metrics The metrics.
+   */
+  public void setMetrics(ExplorationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Explores all states reachable from an initial state.
+   *
+   * @param initialState The code of the initial state tuple.
+   * @return True if no violation was found, false otherwise.
+   * @throws ResourceLimitException If the exploration exceeds a resource limit of its metrics.
+   */
+  public boolean explore(long initialState) {
+    violationFound.set(false);
+    limitExceeded = null;
+    stateTupleSet = new ConcurrentStateTupleSet(threadCount);
+    stateTupleSet.add(initialState, initialState, StateTupleMap.NO_EVENT);
+    currentLevel = new long[]{initialState};
+    int currentCount = 1;
+    depth = 0;
+    metrics.update(1, 1, 0);
+    counters = ThreadLocal.withInitial(metrics::newCounter);
+
+    ForkJoinPool pool = new ForkJoinPool(threadCount);
+    try {
+      while (currentCount > 0) {
+        metrics.updateDepth(depth);
+        int chunkCount = (currentCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunkSuccessors = new long[chunkCount][];
+        chunkSuccessorCounts = new int[chunkCount];
+
+        pool.invoke(new ExpandTask(0, chunkCount, currentCount));
+        if (limitExceeded != null) throw limitExceeded;
+        if (violationFound.get()) return false;
+
+        // concatenate the new states of all chunks to form the next level
+        int nextCount = 0;
+        for (int count : chunkSuccessorCounts) nextCount += count;
+        long[] nextLevel = new long[nextCount];
+        int offset = 0;
+        for (int c = 0; c < chunkCount; c++) {
+          System.arraycopy(chunkSuccessors[c], 0, nextLevel, offset, chunkSuccessorCounts[c]);
+          offset += chunkSuccessorCounts[c];
+        }
+
+        chunkSuccessors = null;
+        currentLevel = nextLevel;
+        currentCount = nextCount;
+        depth++;
+      }
+    } finally {
+      pool.shutdown();
+      currentLevel = null;
+      chunkSuccessors = null;
+    }
+
+    return true;
+  }
+
+  /**
+   * Gets the set of all states encountered by the last exploration.
+   *
+   * @return The set of encountered states.
+   */
+  public ConcurrentStateTupleSet getStateTupleSet() {
+    return stateTupleSet;
+  }
+
+  /**
+   * Gets the state in which a violation was found by the last exploration.
+   *
+   * @return The code of the violating state tuple.
+   */
+  public long getViolatingState() {
+    return violatingState;
+  }
+
+  /**
+   * Gets the uncontrollable event disabled by a specification found by the last exploration.
+   *
+   * @return The index of the event.
+   */
+  public int getViolatingEvent() {
+    return violatingEvent;
+  }
+
+  /**
+   * Gets the number of levels fully expanded by the last exploration, which is the length of the shortest path to
+   * the violating state if a violation was found.
+   *
+   * @return The number of levels.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Records an exceeded resource limit if no other thread has found a violation or exceeded a limit yet.
+   *
+   * @param exception The exception for the exceeded limit.
+   */
+  private void reportLimitExceeded(ResourceLimitException exception) {
+    if (violationFound.compareAndSet(false, true)) limitExceeded = exception;
+  }
+
+  /**
+   * Records a violation if no other thread has done so yet.
+   *
+   * @param state The violating state.
+   * @param event The uncontrollable event disabled by a specification.
+   */
+  private void reportViolation(long state, int event) {
+    if (violationFound.compareAndSet(false, true)) {
+      violatingState = state;
+      violatingEvent = event;
+    }
+  }
+
+  /**
+   * A task expanding a range of chunks of the current level, splitting the range in half until it is a single chunk.
+   */
+  @SuppressWarnings("serial")
+  private class ExpandTask extends RecursiveAction {
+    /**
+     * Index of the first chunk to expand.
+     */
+    private final int firstChunk;
+
+    /**
+     * Index after the last chunk to expand.
+     */
+    private final int lastChunk;
+
+    /**
+     * Number of states in the current level.
+     */
+    private final int levelSize;
+
+    /**
+     * Create a task.
+     *
+     * @param firstChunk Index of the first chunk to expand.
+     * @param lastChunk  Index after the last chunk to expand.
+     * @param levelSize  Number of states in the current level.
+     */
+    ExpandTask(int firstChunk, int lastChunk, int levelSize) {
+      this.firstChunk = firstChunk;
+      this.lastChunk = lastChunk;
+      this.levelSize = levelSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (lastChunk - firstChunk > 1) {
+        int middle = (firstChunk + lastChunk) >>> 1;
+        invokeAll(new ExpandTask(firstChunk, middle, levelSize), new ExpandTask(middle, lastChunk, levelSize));
+        return;
+      }
+
+      SuccessorGenerator generator = generators.get();
+      int start = firstChunk * CHUNK_SIZE;
+      int end = Math.min(start + CHUNK_SIZE, levelSize);
+      long[] successors = new long[CHUNK_SIZE];
+      int successorCount = 0;
+
+      for (int k = start; k < end; k++) {
+        if (violationFound.get()) return;
+
+        long state = currentLevel[k];
+        int count = generator.expand(state);
+        if (count == SuccessorGenerator.VIOLATION) {
+          reportViolation(state, generator.getViolatingEvent());
+          return;
+        }
+
+        for (int j = 0; j < count; j++) {
+          long successor = generator.getSuccessor(j);
+          if (!stateTupleSet.add(successor, state, generator.getSuccessorEvent(j))) continue;
+
+          if (successorCount == successors.length) {
+            successors = Arrays.copyOf(successors, successors.length << 1);
+          }
+          successors[successorCount++] = successor;
+        }
+      }
+
+      chunkSuccessors[firstChunk] = successors;
+      chunkSuccessorCounts[firstChunk] = successorCount;
+      if (counters.get().add(successorCount, end - start)) {
+        try {
+          metrics.updateStore(stateTupleSet.getCapacity(), stateTupleSet.getMemoryBytes());
+        } catch (ResourceLimitException exception) {
+          reportLimitExceeded(exception);
+        }
+      }
+    }
+  }
+}
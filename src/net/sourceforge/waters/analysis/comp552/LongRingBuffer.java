@@ -0,0 +1,165 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * A first in first out queue of primitive longs backed by a circular array that doubles in size when full.
+ */
+public class LongRingBuffer {
+  /**
+   * Default number of elements the buffer can hold before it needs to grow.
+   */
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * Array containing the elements of the queue, its length is always a power of two.
+   */
+  private long[] elements;
+
+  /**
+   * Index of the first element in the queue.
+   */
+  private int head;
+
+  /**
+   * Number of elements in the queue.
+   */
+  private int size;
+
+  /**
+   * Create an empty ring buffer with the default capacity.
+   */
+  public LongRingBuffer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create an empty ring buffer.
+   *
+   * @param initialCapacity The number of elements the buffer can hold before it needs to grow.
+   */
+  public LongRingBuffer(int initialCapacity) {
+    int capacity = Integer.highestOneBit(Math.max(initialCapacity - 1, 1)) << 1;
+    elements = new long[capacity];
+  }
+
+  /**
+   * Create a copy of a ring buffer.
+   *
+   * @param other The ring buffer to copy.
+   */
+  public LongRingBuffer(LongRingBuffer other) {
+    elements = other.elements.clone();
+    head = other.head;
+    size = other.size;
+  }
+
+  /**
+   * Reads a queue written by {@link #write(WritableByteChannel, ByteBuffer)}.
+   *
+   * @param channel The channel to read from.
+   * @param buffer  The buffer holding the bytes read from the channel but not consumed yet.
+   * @return The ring buffer.
+   * @throws IOException If the queue cannot be read.
+   */
+  public static LongRingBuffer read(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+    CheckpointStore.require(channel, buffer, 4);
+    int count = buffer.getInt();
+    LongRingBuffer ringBuffer = new LongRingBuffer(count);
+    for (int k = 0; k < count; k++) {
+      CheckpointStore.require(channel, buffer, 8);
+      ringBuffer.add(buffer.getLong());
+    }
+
+    return ringBuffer;
+  }
+
+  /**
+   * Adds an element to the end of the queue.
+   *
+   * @param value The element to add.
+   */
+  public void add(long value) {
+    if (size == elements.length) grow();
+
+    elements[(head + size) & (elements.length - 1)] = value;
+    size++;
+  }
+
+  /**
+   * Removes and returns the element at the start of the queue.
+   *
+   * @return The element at the start of the queue.
+   */
+  public long remove() {
+    if (size == 0) throw new NoSuchElementException();
+
+    long value = elements[head];
+    head = (head + 1) & (elements.length - 1);
+    size--;
+
+    return value;
+  }
+
+  /**
+   * Returns true if the queue contains no elements.
+   *
+   * @return True if the queue contains no elements.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Gets the number of elements in the queue.
+   *
+   * @return The number of elements in the queue.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of bytes used by the array of the buffer.
+   *
+   * @return The number of bytes.
+   */
+  public long getMemoryBytes() {
+    return 8L * elements.length;
+  }
+
+  /**
+   * Writes the elements of the queue from start to end, preceded by their count.
+   *
+   * @param channel The channel to write to.
+   * @param buffer  The buffer holding the bytes not written to the channel yet.
+   * @throws IOException If the queue cannot be written.
+   */
+  public void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    CheckpointStore.reserve(channel, buffer, 4);
+    buffer.putInt(size);
+    for (int k = 0; k < size; k++) {
+      CheckpointStore.reserve(channel, buffer, 8);
+      buffer.putLong(elements[(head + k) & (elements.length - 1)]);
+    }
+  }
+
+  /**
+   * Doubles the capacity of the buffer, moving the elements so the head is at the start of the new array.
+   */
+  private void grow() {
+    if (elements.length == 1 << 30) throw new IllegalStateException("Ring buffer cannot grow any further.");
+
+    long[] newElements = new long[elements.length << 1];
+    int firstPart = elements.length - head;
+    System.arraycopy(elements, head, newElements, 0, firstPart);
+    System.arraycopy(elements, 0, newElements, firstPart, head);
+
+    elements = newElements;
+    head = 0;
+  }
+}
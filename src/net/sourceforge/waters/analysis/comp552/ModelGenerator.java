@@ -0,0 +1,302 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.base.ComponentKind;
+import net.sourceforge.waters.model.base.EventKind;
+import net.sourceforge.waters.model.des.AutomatonProxy;
+import net.sourceforge.waters.model.des.EventProxy;
+import net.sourceforge.waters.model.des.ProductDESProxy;
+import net.sourceforge.waters.model.des.ProductDESProxyFactory;
+import net.sourceforge.waters.model.des.StateProxy;
+import net.sourceforge.waters.model.des.TransitionProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates models of a chosen size and shape, so that performance can be measured without example files. The same
+ * parameters and seed always give the same model.
+ *
+ * <P>Each plant is a ring of states advanced by its own step event, and also has some of the shared events, which
+ * move it to a random state. Every event of a plant is enabled in every state, so the plants alone reach all
+ * <CODE>states<SUP>plants</SUP></CODE> state tuples. Each specification has some of the events of the plants, moving
+ * it to random states. A specification never disables an uncontrollable event, but may disable a controllable one,
+ * which removes the state tuples only reachable through it. With specifications of one state that disable nothing
+ * the model has exactly <CODE>states<SUP>plants</SUP></CODE> state tuples.</P>
+ *
+ * <P>The model is controllable unless a violation is planted. A planted violation adds an uncontrollable fault event
+ * to the first plant, enabled in all of its states, and a specification counting the steps of the first plant, whose
+ * step event is then uncontrollable. The specification disables the fault once the first plant has taken a given
+ * number of steps, so the shortest counterexample is that many steps followed by the fault.</P>
+ */
+public class ModelGenerator {
+  /**
+   * The factory for the generated models.
+   */
+  private final ProductDESProxyFactory factory;
+
+  /**
+   * Number of plants.
+   */
+  private int plantCount = 4;
+
+  /**
+   * Number of specifications, not counting the one of a planted violation.
+   */
+  private int specCount = 2;
+
+  /**
+   * Number of states of each plant.
+   */
+  private int stateCount = 8;
+
+  /**
+   * Number of states of each specification.
+   */
+  private int specStateCount = 8;
+
+  /**
+   * Number of events shared between automata.
+   */
+  private int sharedEventCount = 4;
+
+  /**
+   * Probability that an automaton has a shared event, or that a specification has an event of the plants.
+   */
+  private double alphabetOverlap = 0.5;
+
+  /**
+   * Probability that an event is uncontrollable.
+   */
+  private double uncontrollableRatio = 0.3;
+
+  /**
+   * Probability that a specification disables a controllable event in a state.
+   */
+  private double specRestriction = 0.2;
+
+  /**
+   * Number of steps before the planted violation, or -1 if no violation is planted.
+   */
+  private int violationDepth = -1;
+
+  /**
+   * Seed of the random choices.
+   */
+  private long seed = 0;
+
+  /**
+   * Create a model generator with the default parameters.
+   *
+   * @param factory The factory for the generated models.
+   */
+  public ModelGenerator(ProductDESProxyFactory factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Sets the number of plants.
+   *
+   * @param plantCount Number of plants, at least 1.
+   */
+  public void setPlantCount(int plantCount) {
+    this.plantCount = plantCount;
+  }
+
+  /**
+   * Sets the number of specifications, not counting the one of a planted violation.
+   *
+   * @param specCount Number of specifications.
+   */
+  public void setSpecCount(int specCount) {
+    this.specCount = specCount;
+  }
+
+  /**
+   * Sets the number of states of each plant.
+   *
+   * @param stateCount Number of states, at least 1.
+   */
+  public void setStateCount(int stateCount) {
+    this.stateCount = stateCount;
+  }
+
+  /**
+   * Sets the number of states of each specification.
+   *
+   * @param specStateCount Number of states, at least 1.
+   */
+  public void setSpecStateCount(int specStateCount) {
+    this.specStateCount = specStateCount;
+  }
+
+  /**
+   * Sets the number of events shared between automata.
+   *
+   * @param sharedEventCount Number of shared events.
+   */
+  public void setSharedEventCount(int sharedEventCount) {
+    this.sharedEventCount = sharedEventCount;
+  }
+
+  /**
+   * Sets the probability that an automaton has a shared event, or that a specification has an event of the plants.
+   *
+   * @param alphabetOverlap The probability.
+   */
+  public void setAlphabetOverlap(double alphabetOverlap) {
+    this.alphabetOverlap = alphabetOverlap;
+  }
+
+  /**
+   * Sets the probability that an event is uncontrollable.
+   *
+   * @param uncontrollableRatio The probability.
+   */
+  public void setUncontrollableRatio(double uncontrollableRatio) {
+    this.uncontrollableRatio = uncontrollableRatio;
+  }
+
+  /**
+   * Sets the probability that a specification disables a controllable event in a state.
+   *
+   * @param specRestriction The probability.
+   */
+  public void setSpecRestriction(double specRestriction) {
+    this.specRestriction = specRestriction;
+  }
+
+  /**
+   * Sets the number of steps of the first plant before a planted violation.
+   *
+   * @param violationDepth Number of steps, or -1 to plant no violation.
+   */
+  public void setViolationDepth(int violationDepth) {
+    this.violationDepth = violationDepth;
+  }
+
+  /**
+   * Sets the seed of the random choices.
+   *
+   * @param seed The seed.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Generates a model with the current parameters. The name of the model includes all of the parameters, so models
+   * generated with different parameters have different names.
+   *
+   * @return The model.
+   * @throws IllegalArgumentException If there are no plants or an automaton would have no states.
+   */
+  public ProductDESProxy generate() {
+    if (plantCount < 1 || stateCount < 1 || specStateCount < 1)
+      throw new IllegalArgumentException("There must be at least one plant and one state per automaton.");
+
+    Random random = new Random(seed);
+    boolean planted = violationDepth >= 0;
+    List<EventProxy> events = new ArrayList<>();
+
+    EventProxy[] steps = new EventProxy[plantCount];
+    for (int p = 0; p < plantCount; p++) {
+      // the planted violation must not be avoidable by disabling steps
+      boolean uncontrollable = planted && p == 0 || random.nextDouble() < uncontrollableRatio;
+      steps[p] = createEvent("step" + p, uncontrollable);
+      events.add(steps[p]);
+    }
+    EventProxy[] shared = new EventProxy[sharedEventCount];
+    for (int k = 0; k < sharedEventCount; k++) {
+      shared[k] = createEvent("shared" + k, random.nextDouble() < uncontrollableRatio);
+      events.add(shared[k]);
+    }
+    List<EventProxy> plantEvents = new ArrayList<>(events);
+    EventProxy fault = planted ? createEvent("fault", true) : null;
+    if (planted) events.add(fault);
+
+    List<AutomatonProxy> automata = new ArrayList<>();
+    for (int p = 0; p < plantCount; p++) {
+      List<StateProxy> states = createStates(stateCount);
+      List<EventProxy> alphabet = new ArrayList<>();
+      List<TransitionProxy> transitions = new ArrayList<>();
+      alphabet.add(steps[p]);
+      for (int s = 0; s < stateCount; s++) {
+        transitions.add(factory.createTransitionProxy(states.get(s), steps[p], states.get((s + 1) % stateCount)));
+      }
+      for (EventProxy event : shared) {
+        if (random.nextDouble() >= alphabetOverlap) continue;
+        alphabet.add(event);
+        for (StateProxy state : states) {
+          transitions.add(factory.createTransitionProxy(state, event, states.get(random.nextInt(stateCount))));
+        }
+      }
+      if (planted && p == 0) {
+        alphabet.add(fault);
+        for (StateProxy state : states) transitions.add(factory.createTransitionProxy(state, fault, state));
+      }
+      automata.add(factory.createAutomatonProxy("plant" + p, ComponentKind.PLANT, alphabet, states, transitions));
+    }
+
+    for (int j = 0; j < specCount; j++) {
+      List<StateProxy> states = createStates(specStateCount);
+      List<EventProxy> alphabet = new ArrayList<>();
+      for (EventProxy event : plantEvents) {
+        if (random.nextDouble() < alphabetOverlap) alphabet.add(event);
+      }
+      if (alphabet.isEmpty()) alphabet.add(plantEvents.get(random.nextInt(plantEvents.size())));
+      List<TransitionProxy> transitions = new ArrayList<>();
+      for (StateProxy state : states) {
+        for (EventProxy event : alphabet) {
+          boolean controllable = event.getKind() == EventKind.CONTROLLABLE;
+          if (controllable && random.nextDouble() < specRestriction) continue;
+          transitions.add(factory.createTransitionProxy(state, event, states.get(random.nextInt(specStateCount))));
+        }
+      }
+      automata.add(factory.createAutomatonProxy("spec" + j, ComponentKind.SPEC, alphabet, states, transitions));
+    }
+
+    if (planted) {
+      List<StateProxy> states = createStates(violationDepth + 1);
+      List<TransitionProxy> transitions = new ArrayList<>();
+      for (int s = 0; s < violationDepth; s++) {
+        transitions.add(factory.createTransitionProxy(states.get(s), steps[0], states.get(s + 1)));
+        transitions.add(factory.createTransitionProxy(states.get(s), fault, states.get(s)));
+      }
+      StateProxy last = states.get(violationDepth);
+      transitions.add(factory.createTransitionProxy(last, steps[0], last));
+      automata.add(factory.createAutomatonProxy("violation", ComponentKind.SPEC, List.of(steps[0], fault), states,
+          transitions));
+    }
+
+    // every parameter is in the name, as caches and checkpoints are kept by model name
+    String name = "synthetic_" + plantCount + "x" + stateCount + "_specs" + specCount + "x" + specStateCount +
+        "_shared" + sharedEventCount + "_overlap" + alphabetOverlap + "_uncontrollable" + uncontrollableRatio +
+        "_restriction" + specRestriction + "_seed" + seed;
+    if (planted) name += "_violation" + violationDepth;
+    return factory.createProductDESProxy(name, events, automata);
+  }
+
+  /**
+   * Creates an event.
+   *
+   * @param name           The name of the event.
+   * @param uncontrollable Whether the event is uncontrollable.
+   * @return The event.
+   */
+  private EventProxy createEvent(String name, boolean uncontrollable) {
+    return factory.createEventProxy(name, uncontrollable ? EventKind.UNCONTROLLABLE : EventKind.CONTROLLABLE);
+  }
+
+  /**
+   * Creates the states of an automaton, the first of which is initial.
+   *
+   * @param count Number of states.
+   * @return The states.
+   */
+  private List<StateProxy> createStates(int count) {
+    List<StateProxy> states = new ArrayList<>(count);
+    for (int s = 0; s < count; s++) states.add(factory.createStateProxy("s" + s, s == 0, null));
+    return states;
+  }
+}
@@ -0,0 +1,137 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.base.DocumentProxy;
+import net.sourceforge.waters.model.compiler.CompilerOperatorTable;
+import net.sourceforge.waters.model.compiler.ModuleCompiler;
+import net.sourceforge.waters.model.des.ProductDESProxy;
+import net.sourceforge.waters.model.des.ProductDESProxyFactory;
+import net.sourceforge.waters.model.expr.OperatorTable;
+import net.sourceforge.waters.model.marshaller.DocumentManager;
+import net.sourceforge.waters.model.marshaller.SAXModuleMarshaller;
+import net.sourceforge.waters.model.marshaller.SAXProductDESMarshaller;
+import net.sourceforge.waters.model.module.ModuleProxy;
+import net.sourceforge.waters.model.module.ModuleProxyFactory;
+import net.sourceforge.waters.plain.des.ProductDESElementFactory;
+import net.sourceforge.waters.plain.module.ModuleElementFactory;
+
+import java.io.File;
+
+/**
+ * Loads models from Waters Modules (<CODE>.wmod</CODE>) and Waters Automata Models (<CODE>.wdes</CODE>), compiling
+ * modules into product DES. The marshallers are created once for each thread and reused for every model it loads, so
+ * a long running process does not pay for setting them up again.
+ *
+ * <P>Each model is loaded with a new document manager, which is cheap to create. A document manager keeps every
+ * document it has loaded, so reusing one would keep every model a long running process has ever loaded in
+ * memory.</P>
+ *
+ * <P>Several threads can load models at once, each with its own marshallers, as the marshallers are not safe to use
+ * from several threads at once.</P>
+ */
+public class ModelLoader {
+  /**
+   * The factory for the modules.
+   */
+  private final ModuleProxyFactory moduleFactory;
+
+  /**
+   * The factory for the loaded product DES.
+   */
+  private final ProductDESProxyFactory desFactory;
+
+  /**
+   * The operator table for the expressions of the modules.
+   */
+  private final OperatorTable optable;
+
+  /**
+   * The marshallers of each thread.
+   */
+  private final ThreadLocal<Marshallers> marshallers;
+
+  /**
+   * Create a model loader.
+   *
+   * @throws Exception If the marshallers cannot be created.
+   */
+  public ModelLoader() throws Exception {
+    moduleFactory = ModuleElementFactory.getInstance();
+    desFactory = ProductDESElementFactory.getInstance();
+    optable = CompilerOperatorTable.getInstance();
+    final Marshallers first = new Marshallers();
+    marshallers = ThreadLocal.withInitial(() -> {
+      try {
+        return new Marshallers();
+      } catch (Exception exception) {
+        throw new IllegalStateException("The marshallers cannot be created.", exception);
+      }
+    });
+    // the thread creating the loader usually loads with it too
+    marshallers.set(first);
+  }
+
+  /**
+   * Gets the factory for the loaded product DES, which checkers of them should also use.
+   *
+   * @return The product DES factory.
+   */
+  public ProductDESProxyFactory getFactory() {
+    return desFactory;
+  }
+
+  /**
+   * Loads a model from a file, compiling it if it is a module.
+   *
+   * @param file The file.
+   * @return The product DES of the model.
+   * @throws Exception If the file cannot be read or compiled.
+   */
+  public ProductDESProxy load(File file) throws Exception {
+    final DocumentManager docManager = marshallers.get().createDocManager();
+    final DocumentProxy doc = docManager.load(file);
+    if (doc instanceof ProductDESProxy) {
+      return (ProductDESProxy) doc;
+    } else {
+      final ModuleProxy module = (ModuleProxy) doc;
+      final ModuleCompiler compiler = new ModuleCompiler(docManager, desFactory, module);
+      return compiler.compile();
+    }
+  }
+
+  /**
+   * The module and product DES marshallers of a thread.
+   */
+  private class Marshallers {
+    /**
+     * The marshaller for modules.
+     */
+    private final SAXModuleMarshaller moduleMarshaller;
+
+    /**
+     * The marshaller for product DES.
+     */
+    private final SAXProductDESMarshaller desMarshaller;
+
+    /**
+     * Create the marshallers.
+     *
+     * @throws Exception If the marshallers cannot be created.
+     */
+    Marshallers() throws Exception {
+      moduleMarshaller = new SAXModuleMarshaller(moduleFactory, optable);
+      desMarshaller = new SAXProductDESMarshaller(desFactory);
+    }
+
+    /**
+     * Creates an empty document manager with the marshallers registered.
+     *
+     * @return The document manager.
+     */
+    DocumentManager createDocManager() {
+      final DocumentManager docManager = new DocumentManager();
+      docManager.registerUnmarshaller(desMarshaller);
+      docManager.registerUnmarshaller(moduleMarshaller);
+      return docManager;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.des.ProductDESProxy;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads and compiles models on background threads ahead of their use, so that the next models are ready when the
+ * current one has been checked. Models are handed out in the order they were submitted.
+ *
+ * <P>At most a given number of models are being loaded or held loaded without having been taken. The loads of the
+ * other submitted models only start when models are taken to make room for them, so submitting a long list of files
+ * does not read all of them into memory. The {@link ModelLoader} keeps no reference to the models it has loaded, so
+ * once the models taken are no longer used, only the models in the pipeline stay in memory.</P>
+ *
+ * <P>A pipeline is meant to be fed and drained by a single thread.</P>
+ */
+public class ModelPipeline implements AutoCloseable {
+  /**
+   * Loads the models.
+   */
+  private final ModelLoader loader;
+
+  /**
+   * Number of models loaded ahead.
+   */
+  private final int capacity;
+
+  /**
+   * The threads loading the models.
+   */
+  private final ExecutorService loaders;
+
+  /**
+   * The submitted models whose loads have not started, in the order they were submitted.
+   */
+  private final Queue<File> waiting = new ArrayDeque<>();
+
+  /**
+   * The loads started and not taken yet, in the order they were submitted.
+   */
+  private final Queue<Future<ProductDESProxy>> started = new ArrayDeque<>();
+
+  /**
+   * Create a pipeline.
+   *
+   * @param loader   Loads the models.
+   * @param capacity Number of models loaded ahead of the one taken last, which is also the number of threads loading
+   *                 them.
+   * @throws IllegalArgumentException If the capacity is not positive.
+   */
+  public ModelPipeline(ModelLoader loader, int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("The capacity must be positive.");
+
+    this.loader = loader;
+    this.capacity = capacity;
+    loaders = Executors.newFixedThreadPool(capacity, runnable -> {
+      Thread thread = new Thread(runnable, "model-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Submits a model to be loaded once there is room for it.
+   *
+   * @param file The file of the model.
+   */
+  public void submit(File file) {
+    waiting.add(file);
+    startLoads();
+  }
+
+  /**
+   * Returns whether there are submitted models not taken yet.
+   *
+   * @return True if there is a model to take.
+   */
+  public boolean hasNext() {
+    return !started.isEmpty() || !waiting.isEmpty();
+  }
+
+  /**
+   * Takes the next submitted model, waiting until it is loaded, and starts loading the next waiting model.
+   *
+   * @return The product DES of the model.
+   * @throws Exception              If the model cannot be loaded or the thread is interrupted while waiting.
+   * @throws NoSuchElementException If there are no models to take.
+   */
+  public ProductDESProxy take() throws Exception {
+    Future<ProductDESProxy> future = started.remove();
+    startLoads();
+    try {
+      return future.get();
+    } catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof Exception) throw (Exception) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw exception;
+    }
+  }
+
+  /**
+   * Starts the loads of waiting models while there is room for them.
+   */
+  private void startLoads() {
+    while (started.size() < capacity && !waiting.isEmpty()) {
+      File file = waiting.remove();
+      started.add(loaders.submit(() -> loader.load(file)));
+    }
+  }
+
+  /**
+   * Stops loading models, discarding the models not taken yet.
+   */
+  @Override
+  public void close() {
+    loaders.shutdownNow();
+    waiting.clear();
+    started.clear();
+  }
+}
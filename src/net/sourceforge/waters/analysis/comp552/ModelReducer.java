@@ -0,0 +1,335 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.des.AutomatonProxy;
+import net.sourceforge.waters.model.des.EventProxy;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reduces a compiled model before its state space is explored, without changing which event sequences it accepts, so
+ * that it is controllable exactly when the original model is and its counterexamples are counterexamples of the
+ * original model.
+ *
+ * <P>The reduction is done in four steps.</P>
+ *
+ * <UL>
+ * <LI>Events that are self loops in every state of an automaton are removed from its alphabet.</LI>
+ * <LI>States of an automaton that cannot be reached from its initial state are removed, and states with the same
+ * future behaviour are merged by partition refinement.</LI>
+ * <LI>Automata that can never disable any event are removed.</LI>
+ * <LI>Events in the alphabet of no remaining automaton are removed, as they only ever lead back to the same state
+ * tuple.</LI>
+ * </UL>
+ *
+ * <P>The states of the reduced automata are only known by index, so the reduced model needs a
+ * {@link StateTupleEncoder} created from {@link #getStateCounts()}.</P>
+ */
+public class ModelReducer {
+  /**
+   * The model to reduce.
+   */
+  private final CompiledModel model;
+
+  /**
+   * The number of states of each automaton of the reduced model.
+   */
+  private int[] stateCounts;
+
+  /**
+   * Number of automata removed.
+   */
+  private int removedAutomata;
+
+  /**
+   * Number of events removed from the model.
+   */
+  private int removedEvents;
+
+  /**
+   * Number of states removed from all automata.
+   */
+  private long removedStates;
+
+  /**
+   * Number of bits removed from a state tuple code.
+   */
+  private int removedBits;
+
+  /**
+   * Number of explicit transitions removed from all automata.
+   */
+  private long removedTransitions;
+
+  /**
+   * Create a reducer.
+   *
+   * @param model The model to reduce, whose automata must all have an initial state.
+   */
+  public ModelReducer(CompiledModel model) {
+    this.model = model;
+  }
+
+  /**
+   * Reduces the model.
+   *
+   * @return The reduced model.
+   */
+  public CompiledModel reduce() {
+    AutomatonProxy[] automata = model.getAutomata();
+    EventProxy[] events = model.getEvents();
+    int eventCount = events.length;
+
+    List<Integer> kept = new ArrayList<>();
+    List<int[]> keptTables = new ArrayList<>();
+    List<Integer> keptInitialStates = new ArrayList<>();
+    removedAutomata = 0;
+    removedStates = 0;
+    removedBits = 0;
+    removedTransitions = 0;
+
+    for (int i = 0; i < automata.length; i++) {
+      int stateCount = automata[i].getStates().size();
+      int[] table = model.getTransitionTables()[i].clone();
+      long transitionCount = countTransitions(table);
+
+      removeSelfLoopEvents(table, stateCount, eventCount);
+      int[] initialState = {model.getInitialState()[i]};
+      table = mergeStates(table, stateCount, eventCount, initialState);
+      int reducedCount = eventCount == 0 ? 1 : table.length / eventCount;
+
+      if (canDisable(table)) {
+        kept.add(i);
+        keptTables.add(table);
+        keptInitialStates.add(initialState[0]);
+        removedStates += stateCount - reducedCount;
+        removedBits += StateTupleEncoder.getBitPackSize(stateCount) - StateTupleEncoder.getBitPackSize(reducedCount);
+        removedTransitions += transitionCount - countTransitions(table);
+      } else {
+        removedAutomata++;
+        removedStates += stateCount;
+        removedBits += StateTupleEncoder.getBitPackSize(stateCount);
+        removedTransitions += transitionCount;
+      }
+    }
+
+    // keep the events in the alphabet of a remaining automaton, in their original order
+    List<Integer> keptEvents = new ArrayList<>();
+    for (int e = 0; e < eventCount; e++) {
+      for (int[] table : keptTables) {
+        if (table[e] != CompiledModel.NOT_IN_ALPHABET) {
+          keptEvents.add(e);
+          break;
+        }
+      }
+    }
+    removedEvents = eventCount - keptEvents.size();
+
+    AutomatonProxy[] reducedAutomata = new AutomatonProxy[kept.size()];
+    EventProxy[] reducedEvents = new EventProxy[keptEvents.size()];
+    int[][] reducedTables = new int[kept.size()][];
+    int[] reducedInitialState = new int[kept.size()];
+    stateCounts = new int[kept.size()];
+    for (int k = 0; k < keptEvents.size(); k++) reducedEvents[k] = events[keptEvents.get(k)];
+
+    for (int j = 0; j < kept.size(); j++) {
+      int[] table = keptTables.get(j);
+      int stateCount = eventCount == 0 ? 1 : table.length / eventCount;
+      int[] reducedTable = new int[stateCount * reducedEvents.length];
+      for (int s = 0; s < stateCount; s++) {
+        for (int k = 0; k < reducedEvents.length; k++) {
+          reducedTable[s * reducedEvents.length + k] = table[s * eventCount + keptEvents.get(k)];
+        }
+      }
+
+      reducedAutomata[j] = automata[kept.get(j)];
+      reducedTables[j] = reducedTable;
+      reducedInitialState[j] = keptInitialStates.get(j);
+      stateCounts[j] = stateCount;
+    }
+
+    return new CompiledModel(reducedAutomata, reducedEvents, reducedTables, reducedInitialState);
+  }
+
+  /**
+   * Gets the number of states of each automaton of the reduced model, to create its {@link StateTupleEncoder}.
+   *
+   * @return The number of states of each automaton.
+   */
+  public int[] getStateCounts() {
+    return stateCounts;
+  }
+
+  /**
+   * Gets the number of automata removed by the last reduction.
+   *
+   * @return The number of automata.
+   */
+  public int getRemovedAutomata() {
+    return removedAutomata;
+  }
+
+  /**
+   * Gets the number of events removed from the model by the last reduction.
+   *
+   * @return The number of events.
+   */
+  public int getRemovedEvents() {
+    return removedEvents;
+  }
+
+  /**
+   * Gets the number of states removed from all automata by the last reduction, including those of removed automata.
+   *
+   * @return The number of states.
+   */
+  public long getRemovedStates() {
+    return removedStates;
+  }
+
+  /**
+   * Gets the number of bits the last reduction removed from a state tuple code.
+   *
+   * @return The number of bits.
+   */
+  public int getRemovedBits() {
+    return removedBits;
+  }
+
+  /**
+   * Gets the number of explicit transitions removed from all automata by the last reduction, including those of
+   * removed automata and self loops of events removed from alphabets.
+   *
+   * @return The number of transitions.
+   */
+  public long getRemovedTransitions() {
+    return removedTransitions;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("removed %d automata, %d events, %d states, %d bits and %d transitions", removedAutomata,
+        removedEvents, removedStates, removedBits, removedTransitions);
+  }
+
+  /**
+   * Removes the events that are self loops in every state from the alphabet of an automaton.
+   *
+   * @param table      The transition table of the automaton, which is changed.
+   * @param stateCount The number of states of the automaton.
+   * @param eventCount The number of events.
+   */
+  private static void removeSelfLoopEvents(int[] table, int stateCount, int eventCount) {
+    for (int e = 0; e < eventCount; e++) {
+      boolean selfLoop = true;
+      for (int s = 0; s < stateCount && selfLoop; s++) {
+        selfLoop = table[s * eventCount + e] == s;
+      }
+
+      if (selfLoop) {
+        for (int s = 0; s < stateCount; s++) table[s * eventCount + e] = CompiledModel.NOT_IN_ALPHABET;
+      }
+    }
+  }
+
+  /**
+   * Removes the states of an automaton that cannot be reached from its initial state and merges the states with the
+   * same future behaviour, that is the coarsest partition where states in the same class enable the same events and
+   * go to the same class with each of them.
+   *
+   * @param table        The transition table of the automaton.
+   * @param stateCount   The number of states of the automaton.
+   * @param eventCount   The number of events.
+   * @param initialState Array containing the initial state, which is replaced by the initial state after merging.
+   * @return The transition table of the merged automaton.
+   */
+  private static int[] mergeStates(int[] table, int stateCount, int eventCount, int[] initialState) {
+    // find the states reachable from the initial state
+    int[] reachable = new int[stateCount];
+    int[] indices = new int[stateCount];
+    Arrays.fill(indices, -1);
+    int reachableCount = 0;
+    reachable[reachableCount] = initialState[0];
+    indices[initialState[0]] = reachableCount++;
+    for (int k = 0; k < reachableCount; k++) {
+      for (int e = 0; e < eventCount; e++) {
+        int target = table[reachable[k] * eventCount + e];
+        if (target >= 0 && indices[target] < 0) {
+          reachable[reachableCount] = target;
+          indices[target] = reachableCount++;
+        }
+      }
+    }
+
+    // split classes by their enabled events and target classes until no class is split
+    int[] classes = new int[reachableCount];
+    int classCount = 1;
+    while (true) {
+      Map<IntBuffer, Integer> signatures = new HashMap<>();
+      int[] refined = new int[reachableCount];
+      for (int k = 0; k < reachableCount; k++) {
+        int[] signature = new int[eventCount + 1];
+        signature[0] = classes[k];
+        for (int e = 0; e < eventCount; e++) {
+          int target = table[reachable[k] * eventCount + e];
+          signature[e + 1] = target < 0 ? target : classes[indices[target]];
+        }
+        refined[k] = signatures.computeIfAbsent(IntBuffer.wrap(signature), key -> signatures.size());
+      }
+
+      classes = refined;
+      if (signatures.size() == classCount) break;
+      classCount = signatures.size();
+    }
+
+    // build the table of the classes from the first state in each
+    int[] merged = new int[classCount * eventCount];
+    boolean[] done = new boolean[classCount];
+    for (int k = 0; k < reachableCount; k++) {
+      int c = classes[k];
+      if (done[c]) continue;
+      done[c] = true;
+
+      for (int e = 0; e < eventCount; e++) {
+        int target = table[reachable[k] * eventCount + e];
+        merged[c * eventCount + e] = target < 0 ? target : classes[indices[target]];
+      }
+    }
+
+    initialState[0] = classes[0];
+    return merged;
+  }
+
+  /**
+   * Returns true if an automaton disables any event in any state.
+   *
+   * @param table The transition table of the automaton.
+   * @return True if the automaton can disable an event.
+   */
+  private static boolean canDisable(int[] table) {
+    for (int entry : table) {
+      if (entry == CompiledModel.DISABLED) return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Counts the explicit transitions in a transition table.
+   *
+   * @param table The transition table.
+   * @return The number of entries that are target states.
+   */
+  private static long countTransitions(int[] table) {
+    long count = 0;
+    for (int entry : table) {
+      if (entry >= 0) count++;
+    }
+
+    return count;
+  }
+}
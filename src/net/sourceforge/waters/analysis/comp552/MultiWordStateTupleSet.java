@@ -0,0 +1,235 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.util.Arrays;
+
+/**
+ * A set of state tuples whose codes are spread over several longs, the previous state and event for all those states
+ * and a queue of unexpanded states.
+ *
+ * <P>Each state tuple gets an integer id in the order it is added. The codes are stored one after another in a single
+ * long array, and an open addressing hash table of ids is used to find them. Since states are expanded in the order
+ * they are added, the queue of unexpanded states is simply the range of ids after the last expanded one.</P>
+ */
+public class MultiWordStateTupleSet {
+  /**
+   * Initial number of state tuples the set can hold before it needs to grow.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * Maximum fraction of the hash table that may be used before it is grown.
+   */
+  private static final double LOAD_FACTOR = 0.75;
+
+  /**
+   * Number of longs in each state tuple code.
+   */
+  private final int wordCount;
+
+  /**
+   * The codes of all state tuples in the set, ordered by id.
+   */
+  private long[] tuples;
+
+  /**
+   * The id of the previous state tuple of each state tuple.
+   */
+  private int[] previous;
+
+  /**
+   * The index of the event from the previous state tuple of each state tuple, as an unsigned short.
+   */
+  private short[] events;
+
+  /**
+   * Open addressing hash table with linear probing, containing one more than the id of each state tuple or zero for an
+   * empty slot. Its length is always a power of two.
+   */
+  private int[] table;
+
+  /**
+   * Number of state tuples in the set.
+   */
+  private int size;
+
+  /**
+   * Id of the next state tuple to be expanded.
+   */
+  private int nextUnexpanded;
+
+  /**
+   * Create an empty set of state tuples.
+   *
+   * @param wordCount The number of longs in each state tuple code.
+   */
+  public MultiWordStateTupleSet(int wordCount) {
+    this.wordCount = wordCount;
+    tuples = new long[INITIAL_CAPACITY * wordCount];
+    previous = new int[INITIAL_CAPACITY];
+    events = new short[INITIAL_CAPACITY];
+    table = new int[Integer.highestOneBit((int) (INITIAL_CAPACITY / LOAD_FACTOR)) << 1];
+  }
+
+  /**
+   * Adds a state tuple to the sets and adds it to the queue of unexpanded state tuples.
+   *
+   * @param state         The code of the state to add, only the first {@link #wordCount} longs are used.
+   * @param previousState The id of the previous state of the state to add.
+   * @param event         The index of the event from the previous state, or {@link StateTupleMap#NO_EVENT}.
+   */
+  public void add(long[] state, int previousState, int event) {
+    int mask = table.length - 1;
+    int slot = hash(state, 0) & mask;
+
+    // probe until the state or an empty slot is found
+    while (table[slot] != 0) {
+      if (equals(table[slot] - 1, state)) return;
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == previous.length) growStorage();
+    System.arraycopy(state, 0, tuples, size * wordCount, wordCount);
+    previous[size] = previousState;
+    events[size] = (short) event;
+    table[slot] = size + 1;
+    size++;
+
+    if (size > table.length * LOAD_FACTOR) growTable();
+  }
+
+  /**
+   * Returns true if there are unexpanded state tuples.
+   *
+   * @return True if there are unexpanded state tuples.
+   */
+  public boolean containsUnexpanded() {
+    return nextUnexpanded < size;
+  }
+
+  /**
+   * Returns the id of the first unexpanded state tuple in the queue and removes it from the queue.
+   *
+   * @return The id of the first unexpanded state tuple in the queue.
+   */
+  public int popUnexpanded() {
+    return nextUnexpanded++;
+  }
+
+  /**
+   * Copies the code of a state tuple in the set.
+   *
+   * @param id     The id of the state tuple.
+   * @param output Array of at least {@link #wordCount} longs to copy the code to.
+   */
+  public void get(int id, long[] output) {
+    System.arraycopy(tuples, id * wordCount, output, 0, wordCount);
+  }
+
+  /**
+   * Gets the id of the previous state tuple for a specified state tuple.
+   *
+   * @param id The id of the state tuple to get the previous state tuple of.
+   * @return The id of the previous state tuple.
+   */
+  public int getPrevious(int id) {
+    return previous[id];
+  }
+
+  /**
+   * Gets the index of the event leading from the previous state tuple to a specified state tuple.
+   *
+   * @param id The id of the state tuple to get the previous event of.
+   * @return The index of the event.
+   */
+  public int getPreviousEvent(int id) {
+    return events[id] & 0xFFFF;
+  }
+
+  /**
+   * Gets the number of state tuples in the set.
+   *
+   * @return The number of state tuples in the set.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of slots of the hash table.
+   *
+   * @return The number of slots.
+   */
+  public long getCapacity() {
+    return table.length;
+  }
+
+  /**
+   * Gets the number of bytes used by the arrays of the set.
+   *
+   * @return The number of bytes.
+   */
+  public long getMemoryBytes() {
+    return 8L * tuples.length + 4L * previous.length + 2L * events.length + 4L * table.length;
+  }
+
+  /**
+   * Checks if the state tuple with an id has a given code.
+   *
+   * @param id    The id of the state tuple in the set.
+   * @param state The code to compare with.
+   * @return True if the codes are equal.
+   */
+  private boolean equals(int id, long[] state) {
+    int offset = id * wordCount;
+    for (int w = 0; w < wordCount; w++) {
+      if (tuples[offset + w] != state[w]) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Calculates the hash of a state tuple code.
+   *
+   * @param array  Array containing the code.
+   * @param offset Index of the first long of the code in the array.
+   * @return The hash of the code.
+   */
+  private int hash(long[] array, int offset) {
+    long hash = 0;
+    for (int w = 0; w < wordCount; w++) {
+      hash = (hash ^ array[offset + w]) * 0x9E3779B97F4A7C15L;
+      hash ^= hash >>> 32;
+    }
+
+    return (int) hash;
+  }
+
+  /**
+   * Grows the arrays storing the state tuple codes and previous state tuples.
+   */
+  private void growStorage() {
+    int capacity = previous.length << 1;
+    if (capacity < 0 || (long) capacity * wordCount > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("State tuple set cannot grow any further.");
+    }
+
+    tuples = Arrays.copyOf(tuples, capacity * wordCount);
+    previous = Arrays.copyOf(previous, capacity);
+    events = Arrays.copyOf(events, capacity);
+  }
+
+  /**
+   * Doubles the size of the hash table and reinserts all state tuples.
+   */
+  private void growTable() {
+    table = new int[table.length << 1];
+    int mask = table.length - 1;
+
+    for (int id = 0; id < size; id++) {
+      int slot = hash(tuples, id * wordCount) & mask;
+      while (table[slot] != 0) slot = (slot + 1) & mask;
+      table[slot] = id + 1;
+    }
+  }
+}
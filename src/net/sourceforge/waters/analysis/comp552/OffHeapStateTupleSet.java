@@ -0,0 +1,279 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of state tuples, the previous state and event for all those states and a queue of unexpanded states, all
+ * stored in direct buffers outside the Java heap.
+ *
+ * <P>The set is an open addressing hash table with linear probing whose slots are spread over segments of direct
+ * buffers, so it can hold more slots than a single buffer. Each slot holds the state tuple code, the previous state
+ * tuple code and one more than the event index, zero marking an empty slot. The queue is a list of fixed size direct
+ * buffers that are appended to at the end and dropped from the front once expanded.</P>
+ *
+ * <P>The heap only holds the references to the buffers, so however many states are reached the garbage collector has
+ * nothing to scan or copy.</P>
+ */
+public class OffHeapStateTupleSet implements StateTupleSet {
+  /**
+   * Number of bytes in each slot of the hash table.
+   */
+  private static final int SLOT_BYTES = 20;
+
+  /**
+   * Base two logarithm of the largest number of slots in each segment of the hash table.
+   */
+  private static final int SEGMENT_BITS = 24;
+
+  /**
+   * Base two logarithm of the initial number of slots in the hash table.
+   */
+  private static final int INITIAL_TABLE_BITS = 12;
+
+  /**
+   * Number of state tuples in each buffer of the queue.
+   */
+  private static final int QUEUE_BLOCK_SIZE = 1 << 16;
+
+  /**
+   * Maximum fraction of the slots that may be used before the hash table is grown.
+   */
+  private static final double LOAD_FACTOR = 0.75;
+
+  /**
+   * The segments of the hash table.
+   */
+  private ByteBuffer[] segments;
+
+  /**
+   * Base two logarithm of the number of slots in the hash table.
+   */
+  private int tableBits;
+
+  /**
+   * Base two logarithm of the number of slots in each segment.
+   */
+  private int segmentBits;
+
+  /**
+   * Number of state tuples in the set.
+   */
+  private long size;
+
+  /**
+   * Number of state tuples the hash table can hold before it is grown.
+   */
+  private long threshold;
+
+  /**
+   * Buffers of the queue of unexpanded state tuples, the first of which contains the head of the queue.
+   */
+  private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+
+  /**
+   * Index of the head of the queue in the first buffer.
+   */
+  private int queueHead;
+
+  /**
+   * Index after the tail of the queue in the last buffer.
+   */
+  private int queueTail = QUEUE_BLOCK_SIZE;
+
+  /**
+   * Number of state tuples in the queue.
+   */
+  private long queueSize;
+
+  /**
+   * Create an empty set of state tuples.
+   */
+  public OffHeapStateTupleSet() {
+    allocate(INITIAL_TABLE_BITS);
+  }
+
+  @Override
+  public void add(long state, long previousState, int event) {
+    long mask = (1L << tableBits) - 1;
+    long slot = hash(state) & mask;
+
+    // probe until the state or an empty slot is found
+    while (true) {
+      ByteBuffer segment = segments[(int) (slot >>> segmentBits)];
+      int offset = getOffset(slot);
+      if (segment.getInt(offset + 16) == 0) {
+        segment.putLong(offset, state);
+        segment.putLong(offset + 8, previousState);
+        segment.putInt(offset + 16, event + 1);
+        break;
+      }
+
+      if (segment.getLong(offset) == state) return;
+      slot = (slot + 1) & mask;
+    }
+
+    if (++size > threshold) grow();
+    enqueue(state);
+  }
+
+  @Override
+  public boolean containsUnexpanded() {
+    return queueSize > 0;
+  }
+
+  @Override
+  public long popUnexpanded() {
+    if (queueSize == 0) throw new NoSuchElementException();
+
+    ByteBuffer block = queue.peekFirst();
+    long state = block.getLong(queueHead << 3);
+    queueSize--;
+    if (++queueHead == QUEUE_BLOCK_SIZE) {
+      // the whole buffer is expanded, so it can be released
+      queue.removeFirst();
+      queueHead = 0;
+    }
+
+    return state;
+  }
+
+  @Override
+  public boolean contains(long state) {
+    return find(state) >= 0;
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public long getCapacity() {
+    return 1L << tableBits;
+  }
+
+  @Override
+  public long getMemoryBytes() {
+    return ((long) SLOT_BYTES << tableBits) + 8L * QUEUE_BLOCK_SIZE * queue.size();
+  }
+
+  @Override
+  public long getPrevious(long state) {
+    long slot = find(state);
+    return segments[(int) (slot >>> segmentBits)].getLong(getOffset(slot) + 8);
+  }
+
+  @Override
+  public int getPreviousEvent(long state) {
+    long slot = find(state);
+    return segments[(int) (slot >>> segmentBits)].getInt(getOffset(slot) + 16) - 1;
+  }
+
+  /**
+   * Finds the slot of a state tuple.
+   *
+   * @param state The state tuple code.
+   * @return The slot containing the state tuple, or -1 if it is not in the set.
+   */
+  private long find(long state) {
+    long mask = (1L << tableBits) - 1;
+    long slot = hash(state) & mask;
+
+    while (true) {
+      ByteBuffer segment = segments[(int) (slot >>> segmentBits)];
+      int offset = getOffset(slot);
+      if (segment.getInt(offset + 16) == 0) return -1;
+      if (segment.getLong(offset) == state) return slot;
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * Gets the byte offset of a slot within its segment.
+   *
+   * @param slot The slot.
+   * @return The offset.
+   */
+  private int getOffset(long slot) {
+    return (int) (slot & ((1L << segmentBits) - 1)) * SLOT_BYTES;
+  }
+
+  /**
+   * Calculates the hash of a state tuple code, mixing all bits so that codes differing only in a few bits are spread
+   * over the table.
+   *
+   * @param state The state tuple code.
+   * @return The hash.
+   */
+  private static long hash(long state) {
+    long hash = state * 0x9E3779B97F4A7C15L;
+    return hash ^ hash >>> 32;
+  }
+
+  /**
+   * Appends a state tuple to the queue of unexpanded state tuples.
+   *
+   * @param state The state tuple code.
+   */
+  private void enqueue(long state) {
+    if (queueTail == QUEUE_BLOCK_SIZE) {
+      queue.addLast(ByteBuffer.allocateDirect(QUEUE_BLOCK_SIZE << 3).order(ByteOrder.nativeOrder()));
+      queueTail = 0;
+    }
+
+    queue.peekLast().putLong(queueTail++ << 3, state);
+    queueSize++;
+  }
+
+  /**
+   * Allocates empty segments for a number of slots.
+   *
+   * @param bits Base two logarithm of the number of slots.
+   */
+  private void allocate(int bits) {
+    tableBits = bits;
+    segmentBits = Math.min(bits, SEGMENT_BITS);
+    segments = new ByteBuffer[1 << (bits - segmentBits)];
+    for (int i = 0; i < segments.length; i++) {
+      // direct buffers are zeroed, so all slots start empty
+      segments[i] = ByteBuffer.allocateDirect(SLOT_BYTES << segmentBits).order(ByteOrder.nativeOrder());
+    }
+    threshold = (long) ((1L << bits) * LOAD_FACTOR);
+  }
+
+  /**
+   * Doubles the number of slots and reinserts all state tuples.
+   */
+  private void grow() {
+    if (tableBits == 40) throw new IllegalStateException("State tuple set cannot grow any further.");
+
+    ByteBuffer[] oldSegments = segments;
+    int oldSegmentBits = segmentBits;
+    allocate(tableBits + 1);
+
+    long mask = (1L << tableBits) - 1;
+    for (ByteBuffer oldSegment : oldSegments) {
+      for (int oldOffset = 0; oldOffset < SLOT_BYTES << oldSegmentBits; oldOffset += SLOT_BYTES) {
+        int event = oldSegment.getInt(oldOffset + 16);
+        if (event == 0) continue;
+
+        long state = oldSegment.getLong(oldOffset);
+        long slot = hash(state) & mask;
+        while (true) {
+          ByteBuffer segment = segments[(int) (slot >>> segmentBits)];
+          int offset = getOffset(slot);
+          if (segment.getInt(offset + 16) == 0) {
+            segment.putLong(offset, state);
+            segment.putLong(offset + 8, oldSegment.getLong(oldOffset + 8));
+            segment.putInt(offset + 16, event);
+            break;
+          }
+          slot = (slot + 1) & mask;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Explores the state space of a model with several threads, for state tuple codes that fit in a single long.
+ *
+ * <P>Newly reached states are collected in chunks, and each full chunk is forked as a task on a fork/join pool so idle
+ * threads can steal it. All threads share one {@link ConcurrentStateTupleSet}. As soon as any thread finds an
+ * uncontrollable event disabled by a specification, all threads stop.</P>
+ *
+ * <P>The order in which states are expanded depends on scheduling, so a counterexample built from the recorded
+ * previous states is valid but not necessarily the shortest one.</P>
+ */
+public class ParallelExplorer {
+  /**
+   * Number of newly reached states collected before they are handed out as a separate task.
+   */
+  private static final int CHUNK_SIZE = 256;
+
+  /**
+   * The compiled model to explore.
+   */
+  private final CompiledModel model;
+
+  /**
+   * The state tuple encoder for the model.
+   */
+  private final StateTupleEncoder encoder;
+
+  /**
+   * Number of threads to explore with.
+   */
+  private final int threadCount;
+
+  /**
+   * Successor generator of each thread.
+   */
+  private final ThreadLocal<SuccessorGenerator> generators;
+
+  /**
+   * Set to contain all encountered states.
+   */
+  private ConcurrentStateTupleSet stateTupleSet;
+
+  /**
+   * Set by the first thread to find a violation or exceed a resource limit, after which all threads stop.
+   */
+  private final AtomicBoolean violationFound = new AtomicBoolean();
+
+  /**
+   * The resource limit exceeded by the last exploration, or null if it stayed within its limits.
+   */
+  private volatile ResourceLimitException limitExceeded;
+
+  /**
+   * The state in which the violation was found.
+   */
+  private long violatingState;
+
+  /**
+   * The uncontrollable event disabled by a specification in the violating state.
+   */
+  private int violatingEvent;
+
+  /**
+   * The metrics the progress of explorations is published to.
+   */
+  private ExplorationMetrics metrics = new ExplorationMetrics();
+
+  /**
+   * Counter of each thread of the current exploration.
+   */
+  private ThreadLocal<ExplorationMetrics.Counter> counters;
+
+  /**
+   * Create a parallel explorer.
+   *
+   * @param model       The compiled model to explore.
+   * @param encoder     The state tuple encoder for the model, which must use a single long per state tuple code.
+   * @param threadCount Number of threads to explore with.
+   */
+  public ParallelExplorer(CompiledModel model, StateTupleEncoder encoder, int threadCount) {
+    this.model = model;
+    this.encoder = encoder;
+    this.threadCount = threadCount;
+    generators = ThreadLocal.withInitial(() -> new SuccessorGenerator(this.model, this.encoder));
+  }
+
+  /**
+   * Sets the metrics to publish the progress of explorations to.
+   *
+   * @param metrics The metrics.
+   */
+  public void setMetrics(ExplorationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Explores all states reachable from an initial state.
+   *
+   * @param initialState The code of the initial state tuple.
+   * @return True if no violation was found, false otherwise.
+   * @throws ResourceLimitException If the exploration exceeds a resource limit of its metrics.
+   */
+  public boolean explore(long initialState) {
+    violationFound.set(false);
+    limitExceeded = null;
+    stateTupleSet = new ConcurrentStateTupleSet(threadCount);
+    stateTupleSet.add(initialState, initialState, StateTupleMap.NO_EVENT);
+    metrics.update(1, 1, 0);
+    counters = ThreadLocal.withInitial(metrics::newCounter);
+
+    ForkJoinPool pool = new ForkJoinPool(threadCount);
+    try {
+      pool.invoke(new ExpandTask(null, new long[]{initialState}, 1));
+    } finally {
+      pool.shutdown();
+    }
+    if (limitExceeded != null) throw limitExceeded;
+
+    return !violationFound.get();
+  }
+
+  /**
+   * Gets the set of all states encountered by the last exploration.
+   *
+   * @return The set of encountered states.
+   */
+  public ConcurrentStateTupleSet getStateTupleSet() {
+    return stateTupleSet;
+  }
+
+  /**
+   * Gets the state in which a violation was found by the last exploration.
+   *
+   * @return The code of the violating state tuple.
+   */
+  public long getViolatingState() {
+    return violatingState;
+  }
+
+  /**
+   * Gets the uncontrollable event disabled by a specification found by the last exploration.
+   *
+   * @return The index of the event.
+   */
+  public int getViolatingEvent() {
+    return violatingEvent;
+  }
+
+  /**
+   * Records an exceeded resource limit if no other thread has found a violation or exceeded a limit yet.
+   *
+   * @param exception The exception for the exceeded limit.
+   */
+  private void reportLimitExceeded(ResourceLimitException exception) {
+    if (violationFound.compareAndSet(false, true)) limitExceeded = exception;
+  }
+
+  /**
+   * Records a violation if no other thread has done so yet.
+   *
+   * @param state The violating state.
+   * @param event The uncontrollable event disabled by a specification.
+   */
+  private void reportViolation(long state, int event) {
+    if (violationFound.compareAndSet(false, true)) {
+      violatingState = state;
+      violatingEvent = event;
+    }
+  }
+
+  /**
+   * A task expanding a chunk of states, which keeps expanding the states it reaches itself apart from the full chunks
+   * it forks off.
+   */
+  @SuppressWarnings("serial")
+  private class ExpandTask extends CountedCompleter<Void> {
+    /**
+     * The states to expand.
+     */
+    private final long[] states;
+
+    /**
+     * The number of states to expand.
+     */
+    private final int count;
+
+    /**
+     * Create a task.
+     *
+     * @param parent The task that forked this one, or null for the root task.
+     * @param states The states to expand.
+     * @param count  The number of states to expand.
+     */
+    ExpandTask(CountedCompleter<?> parent, long[] states, int count) {
+      super(parent);
+      this.states = states;
+      this.count = count;
+    }
+
+    @Override
+    public void compute() {
+      SuccessorGenerator generator = generators.get();
+      ExplorationMetrics.Counter counter = counters.get();
+      long[] current = states;
+      int currentCount = count;
+      long[] next = new long[CHUNK_SIZE];
+      int nextCount = 0;
+
+      while (currentCount > 0) {
+        int added = 0;
+        for (int k = 0; k < currentCount; k++) {
+          if (violationFound.get()) {
+            tryComplete();
+            return;
+          }
+
+          long state = current[k];
+          int successorCount = generator.expand(state);
+          if (successorCount == SuccessorGenerator.VIOLATION) {
+            reportViolation(state, generator.getViolatingEvent());
+            tryComplete();
+            return;
+          }
+
+          for (int j = 0; j < successorCount; j++) {
+            long successor = generator.getSuccessor(j);
+            if (!stateTupleSet.add(successor, state, generator.getSuccessorEvent(j))) continue;
+
+            // hand out full chunks so idle threads can steal them
+            next[nextCount++] = successor;
+            if (nextCount == CHUNK_SIZE) {
+              added += CHUNK_SIZE;
+              addToPendingCount(1);
+              new ExpandTask(this, next, nextCount).fork();
+              next = new long[CHUNK_SIZE];
+              nextCount = 0;
+            }
+          }
+        }
+
+        if (counter.add(added + nextCount, currentCount)) {
+          try {
+            metrics.updateStore(stateTupleSet.getCapacity(), stateTupleSet.getMemoryBytes());
+          } catch (ResourceLimitException exception) {
+            reportLimitExceeded(exception);
+            tryComplete();
+            return;
+          }
+        }
+
+        // continue with the partial chunk, reusing the array just expanded
+        long[] temp = current;
+        current = next;
+        currentCount = nextCount;
+        next = temp.length == CHUNK_SIZE ? temp : new long[CHUNK_SIZE];
+        nextCount = 0;
+      }
+
+      tryComplete();
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * Chooses a subset of the successors of a state that is sufficient to find every reachable controllability
+ * violation, using stubborn sets computed from the alphabets of the automata, for state tuple codes that fit in a
+ * single long.
+ *
+ * <P>Whether a state violates controllability only depends on the states of the automata with an uncontrollable event
+ * in their alphabet that is also in the alphabet of a specification. The events of these automata are visible, all
+ * others are invisible. Two events are dependent if an automaton has both in its alphabet.</P>
+ *
+ * <P>A stubborn set is started from an enabled invisible event and closed as follows. For an enabled event all
+ * events dependent on it are added. For a disabled event one automaton disabling it is chosen, and all events that
+ * move that automaton out of its current state are added, as one of them has to occur before the event can be
+ * enabled. If an enabled visible event is added the stubborn set is rejected. The events of the stubborn set that are
+ * enabled are the chosen subset, and the smallest one over all starting events is used.</P>
+ *
+ * <P>The caller must also apply a cycle proviso, expanding a state fully if any of the chosen successors was already
+ * visited, so that no event is postponed forever.</P>
+ */
+public class PartialOrderReducer {
+  /**
+   * Transition tables of each automaton, see {@link CompiledModel#getTransitionTables()}.
+   */
+  private final int[][] transitions;
+
+  /**
+   * The state tuple encoder for the model.
+   */
+  private final StateTupleEncoder encoder;
+
+  /**
+   * Number of events in the model.
+   */
+  private final int eventCount;
+
+  /**
+   * The indices of the automata with each event in their alphabet.
+   */
+  private final int[][] automataOfEvent;
+
+  /**
+   * The indices of the events in the alphabet of each automaton.
+   */
+  private final int[][] eventsOfAutomaton;
+
+  /**
+   * Array of whether each event is visible.
+   */
+  private final boolean[] visible;
+
+  /**
+   * Array of whether each event is enabled in the current state.
+   */
+  private final boolean[] enabled;
+
+  /**
+   * The state of each automaton in the current state.
+   */
+  private final int[] localStates;
+
+  /**
+   * The stamp of the stubborn set each event was last added to, so the sets need not be cleared.
+   */
+  private final int[] marks;
+
+  /**
+   * The stamp of the current stubborn set.
+   */
+  private int stamp;
+
+  /**
+   * Events of the current stubborn set whose dependencies are still to be added.
+   */
+  private final int[] worklist;
+
+  /**
+   * The indices of the chosen successors.
+   */
+  private final int[] selected;
+
+  /**
+   * Create a partial order reducer.
+   *
+   * @param model   The compiled model to explore.
+   * @param encoder The state tuple encoder for the model, which must use a single long per state tuple code.
+   */
+  public PartialOrderReducer(CompiledModel model, StateTupleEncoder encoder) {
+    this.encoder = encoder;
+    transitions = model.getTransitionTables();
+    eventCount = model.getEvents().length;
+    boolean[] specs = model.getSpecs();
+    boolean[] uncontrollable = model.getUncontrollable();
+    int automatonCount = transitions.length;
+
+    // events outside the alphabet of an automaton are not in its table for any state, so the first row is enough
+    boolean[][] alphabets = new boolean[automatonCount][eventCount];
+    eventsOfAutomaton = new int[automatonCount][];
+    for (int i = 0; i < automatonCount; i++) {
+      int count = 0;
+      for (int e = 0; e < eventCount; e++) {
+        alphabets[i][e] = transitions[i][e] != CompiledModel.NOT_IN_ALPHABET;
+        if (alphabets[i][e]) count++;
+      }
+
+      eventsOfAutomaton[i] = new int[count];
+      count = 0;
+      for (int e = 0; e < eventCount; e++) {
+        if (alphabets[i][e]) eventsOfAutomaton[i][count++] = e;
+      }
+    }
+
+    automataOfEvent = new int[eventCount][];
+    for (int e = 0; e < eventCount; e++) {
+      int count = 0;
+      for (int i = 0; i < automatonCount; i++) {
+        if (alphabets[i][e]) count++;
+      }
+
+      automataOfEvent[e] = new int[count];
+      count = 0;
+      for (int i = 0; i < automatonCount; i++) {
+        if (alphabets[i][e]) automataOfEvent[e][count++] = i;
+      }
+    }
+
+    // uncontrollable events that a specification could disable
+    boolean[] critical = new boolean[eventCount];
+    for (int i = 0; i < automatonCount; i++) {
+      if (!specs[i]) continue;
+      for (int e : eventsOfAutomaton[i]) {
+        if (uncontrollable[e]) critical[e] = true;
+      }
+    }
+
+    // the events of automata that take part in deciding a violation are visible
+    visible = new boolean[eventCount];
+    for (int i = 0; i < automatonCount; i++) {
+      boolean relevant = false;
+      for (int e : eventsOfAutomaton[i]) relevant |= critical[e];
+      if (!relevant) continue;
+
+      for (int e : eventsOfAutomaton[i]) visible[e] = true;
+    }
+
+    enabled = new boolean[eventCount];
+    localStates = new int[automatonCount];
+    marks = new int[eventCount];
+    worklist = new int[eventCount];
+    selected = new int[eventCount];
+  }
+
+  /**
+   * Chooses the successors of a state to explore.
+   *
+   * @param state          The code of the state tuple.
+   * @param generator      The successor generator that last expanded the state.
+   * @param successorCount The number of successors returned by the generator.
+   * @return The number of chosen successors, whose indices can be read with {@link #getSelected(int)}.
+   */
+  public int reduce(long state, SuccessorGenerator generator, int successorCount) {
+    for (int k = 0; k < successorCount; k++) {
+      int event = generator.getSuccessorEvent(k);
+      enabled[event] = true;
+    }
+    for (int i = 0; i < localStates.length; i++) {
+      localStates[i] = encoder.getStateIndex(state, i);
+    }
+
+    // try a stubborn set from each enabled invisible event and keep the one with the fewest enabled events
+    int bestSeed = -1;
+    int bestCount = successorCount;
+    for (int k = 0; k < successorCount && bestCount > 1; k++) {
+      int seed = generator.getSuccessorEvent(k);
+      if (visible[seed]) continue;
+
+      int count = closeStubbornSet(seed);
+      if (count >= 0 && count < bestCount) {
+        bestSeed = seed;
+        bestCount = count;
+      }
+    }
+
+    int count = 0;
+    if (bestSeed < 0) {
+      for (int k = 0; k < successorCount; k++) selected[count++] = k;
+    } else {
+      closeStubbornSet(bestSeed);
+      for (int k = 0; k < successorCount; k++) {
+        if (marks[generator.getSuccessorEvent(k)] == stamp) selected[count++] = k;
+      }
+    }
+
+    for (int k = 0; k < successorCount; k++) enabled[generator.getSuccessorEvent(k)] = false;
+    return count;
+  }
+
+  /**
+   * Gets the index of a chosen successor.
+   *
+   * @param index Index of the chosen successor, less than the value returned by {@link #reduce}.
+   * @return The index of the successor for {@link SuccessorGenerator#getSuccessor(int)}.
+   */
+  public int getSelected(int index) {
+    return selected[index];
+  }
+
+  /**
+   * Computes the stubborn set started from an event, marking its events with a new stamp.
+   *
+   * @param seed The enabled invisible event to start from.
+   * @return The number of enabled events in the stubborn set, or -1 if it contains an enabled visible event.
+   */
+  private int closeStubbornSet(int seed) {
+    stamp++;
+    int size = 0;
+    int enabledCount = 0;
+    marks[seed] = stamp;
+    worklist[size++] = seed;
+
+    while (size > 0) {
+      int event = worklist[--size];
+
+      if (enabled[event]) {
+        if (visible[event]) return -1;
+        enabledCount++;
+
+        // add all events sharing an automaton with the event
+        for (int i : automataOfEvent[event]) {
+          for (int other : eventsOfAutomaton[i]) {
+            if (marks[other] != stamp) {
+              marks[other] = stamp;
+              worklist[size++] = other;
+            }
+          }
+        }
+      } else {
+        // add the events moving an automaton that disables the event out of its current state
+        for (int i : automataOfEvent[event]) {
+          int local = localStates[i];
+          if (transitions[i][local * eventCount + event] == CompiledModel.DISABLED) {
+            for (int other : eventsOfAutomaton[i]) {
+              int target = transitions[i][local * eventCount + other];
+              if (target >= 0 && target != local && marks[other] != stamp) {
+                marks[other] = stamp;
+                worklist[size++] = other;
+              }
+            }
+            break;
+          }
+        }
+      }
+    }
+
+    return enabledCount;
+  }
+}
@@ -0,0 +1,23 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * Gives how each reached state tuple was first reached, which is all that is needed to trace a counterexample back to
+ * the initial state tuple.
+ */
+public interface PredecessorMap {
+  /**
+   * Gets the previous state tuple for a specified state tuple.
+   *
+   * @param state The state tuple to get the previous state tuple of.
+   * @return The previous state tuple.
+   */
+  long getPrevious(long state);
+
+  /**
+   * Gets the index of the event leading from the previous state tuple to a specified state tuple.
+   *
+   * @param state The state tuple to get the previous event of.
+   * @return The index of the event.
+   */
+  int getPreviousEvent(long state);
+}
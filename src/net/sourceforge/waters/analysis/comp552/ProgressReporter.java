@@ -0,0 +1,97 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Surfaces the progress of the checks running in a process. The {@link ExplorationMetrics} of every watched check are
+ * registered over JMX for as long as it is watched, and can also be printed periodically, one line per check.
+ */
+public class ProgressReporter implements AutoCloseable {
+  /**
+   * Where the progress lines are printed.
+   */
+  private final PrintStream output;
+
+  /**
+   * The thread printing the progress lines.
+   */
+  private final ScheduledExecutorService timer;
+
+  /**
+   * The metrics of the watched checks, with the names they are registered under.
+   */
+  private final Map<ExplorationMetrics, ObjectName> watched = new ConcurrentHashMap<>();
+
+  /**
+   * The periodic printing of the progress lines, or null if they are not printed.
+   */
+  private ScheduledFuture<?> printing;
+
+  /**
+   * Create a progress reporter which does not print anything until a period is set.
+   *
+   * @param output Where the progress lines are printed.
+   */
+  public ProgressReporter(PrintStream output) {
+    this.output = output;
+    timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "progress-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Sets how often the progress of the watched checks is printed.
+   *
+   * @param seconds Number of seconds between the progress lines of a check, or 0 to not print them.
+   */
+  public synchronized void setPeriod(long seconds) {
+    if (printing != null) printing.cancel(false);
+    printing = seconds > 0 ? timer.scheduleAtFixedRate(this::print, seconds, seconds, TimeUnit.SECONDS) : null;
+  }
+
+  /**
+   * Starts watching a check, registering its metrics over JMX.
+   *
+   * @param metrics The metrics of the check.
+   * @throws JMException If the metrics cannot be registered.
+   */
+  public void watch(ExplorationMetrics metrics) throws JMException {
+    watched.put(metrics, metrics.register());
+  }
+
+  /**
+   * Stops watching a check, removing its metrics from JMX.
+   *
+   * @param metrics The metrics of the check.
+   * @throws JMException If the metrics cannot be removed.
+   */
+  public void unwatch(ExplorationMetrics metrics) throws JMException {
+    ObjectName name = watched.remove(metrics);
+    if (name != null) ExplorationMetrics.unregister(name);
+  }
+
+  /**
+   * Prints a progress line for each watched check.
+   */
+  private void print() {
+    for (ExplorationMetrics metrics : watched.keySet()) output.println(metrics);
+  }
+
+  /**
+   * Stops printing progress lines.
+   */
+  @Override
+  public void close() {
+    timer.shutdownNow();
+  }
+}
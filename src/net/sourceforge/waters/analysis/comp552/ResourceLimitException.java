@@ -0,0 +1,120 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * Thrown by {@link ControllabilityChecker#run()} when a check exceeds one of its resource limits before it finds
+ * whether the model is controllable. The result of the check is unknown, but the statistics of the partial
+ * exploration are kept.
+ */
+public class ResourceLimitException extends RuntimeException {
+  /**
+   * Version of the serialized form of the exception.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The resource limits of a check.
+   */
+  public enum Limit {
+    /**
+     * The number of states visited.
+     */
+    STATES("State"),
+
+    /**
+     * The number of bytes used by the visited state set.
+     */
+    MEMORY("Memory"),
+
+    /**
+     * The time taken by the check.
+     */
+    TIME("Time");
+
+    /**
+     * Name of the limit for messages.
+     */
+    private final String description;
+
+    /**
+     * Create a limit.
+     *
+     * @param description Name of the limit for messages.
+     */
+    Limit(String description) {
+      this.description = description;
+    }
+  }
+
+  /**
+   * The limit that was exceeded.
+   */
+  private final Limit limit;
+
+  /**
+   * Number of states visited before the check stopped.
+   */
+  private final long stateCount;
+
+  /**
+   * Number of bytes used by the visited state set when the check stopped.
+   */
+  private final long memoryBytes;
+
+  /**
+   * Time taken by the check before it stopped, in milliseconds.
+   */
+  private final long elapsedMillis;
+
+  /**
+   * Create an exception for an exceeded limit.
+   *
+   * @param limit         The limit that was exceeded.
+   * @param stateCount    Number of states visited before the check stopped.
+   * @param memoryBytes   Number of bytes used by the visited state set when the check stopped.
+   * @param elapsedMillis Time taken by the check before it stopped, in milliseconds.
+   */
+  public ResourceLimitException(Limit limit, long stateCount, long memoryBytes, long elapsedMillis) {
+    super(String.format("%s limit exceeded after %d states, %d MB and %d ms", limit.description, stateCount,
+        memoryBytes >> 20, elapsedMillis));
+    this.limit = limit;
+    this.stateCount = stateCount;
+    this.memoryBytes = memoryBytes;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * Gets the limit that was exceeded.
+   *
+   * @return The limit.
+   */
+  public Limit getLimit() {
+    return limit;
+  }
+
+  /**
+   * Gets the number of states visited before the check stopped.
+   *
+   * @return The number of states.
+   */
+  public long getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * Gets the number of bytes used by the visited state set when the check stopped.
+   *
+   * @return The number of bytes.
+   */
+  public long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  /**
+   * Gets the time taken by the check before it stopped.
+   *
+   * @return The time in milliseconds.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+}
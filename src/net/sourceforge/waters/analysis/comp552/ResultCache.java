@@ -0,0 +1,292 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.des.AutomatonProxy;
+import net.sourceforge.waters.model.des.EventProxy;
+import net.sourceforge.waters.model.des.StateProxy;
+import net.sourceforge.waters.model.des.TransitionProxy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directory of the results of earlier checks, keeping the latest result for each model name so that a revised model
+ * can reuse what is still known about it.
+ *
+ * <P>Each automaton is identified by a fingerprint of its kind, alphabet, states and transitions, and a model by the
+ * fingerprints of its automata and events. An entry holds the fingerprint of the model it was computed for, the
+ * verdict, the events of the counterexample and a list of proofs. A proof is a set of automata whose composition was
+ * found controllable, which shows that the specifications among them hold in any model containing all of them, as
+ * adding automata only removes behaviour.</P>
+ */
+public class ResultCache {
+  /**
+   * Number written at the start of each cache file, changed whenever the format changes.
+   */
+  private static final int MAGIC = 0x57435231;
+
+  /**
+   * The directory holding the cache files.
+   */
+  private final File directory;
+
+  /**
+   * Create a cache in a directory, which is created when the first result is stored.
+   *
+   * @param directory The directory holding the cache files.
+   */
+  public ResultCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Loads the latest result stored for a model name.
+   *
+   * @param modelName The name of the model.
+   * @return The result, or null if there is none or it cannot be read.
+   */
+  public Entry load(String modelName) {
+    File file = getFile(modelName);
+    if (!file.isFile()) return null;
+
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (input.readInt() != MAGIC) return null;
+
+      String fingerprint = input.readUTF();
+      boolean controllable = input.readBoolean();
+      long stateCount = input.readLong();
+      List<String> trace = new ArrayList<>();
+      for (int k = input.readInt(); k > 0; k--) trace.add(input.readUTF());
+      List<Set<String>> proofs = new ArrayList<>();
+      for (int p = input.readInt(); p > 0; p--) {
+        Set<String> proof = new HashSet<>();
+        for (int k = input.readInt(); k > 0; k--) proof.add(input.readUTF());
+        proofs.add(proof);
+      }
+
+      return new Entry(fingerprint, controllable, stateCount, trace, proofs);
+    } catch (IOException exception) {
+      // a damaged entry is as good as none, it is replaced by the next result
+      return null;
+    }
+  }
+
+  /**
+   * Stores the result for a model name, replacing the previous one.
+   *
+   * @param modelName The name of the model.
+   * @param entry     The result.
+   * @throws UncheckedIOException If the result cannot be written.
+   */
+  public void store(String modelName, Entry entry) {
+    File file = getFile(modelName);
+    try {
+      Files.createDirectories(directory.toPath());
+      File temporary = File.createTempFile("result", ".tmp", directory);
+      try (DataOutputStream output =
+               new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+        output.writeInt(MAGIC);
+        output.writeUTF(entry.getFingerprint());
+        output.writeBoolean(entry.isControllable());
+        output.writeLong(entry.getStateCount());
+        output.writeInt(entry.getTrace().size());
+        for (String event : entry.getTrace()) output.writeUTF(event);
+        output.writeInt(entry.getProofs().size());
+        for (Set<String> proof : entry.getProofs()) {
+          output.writeInt(proof.size());
+          for (String automaton : proof) output.writeUTF(automaton);
+        }
+      }
+
+      // readers see either the old or the new entry
+      Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  /**
+   * Computes the fingerprint of an automaton from its kind, alphabet, states and transitions. Its name is left out,
+   * so renaming an automaton does not invalidate results.
+   *
+   * @param automaton The automaton.
+   * @return The fingerprint.
+   */
+  public static String getFingerprint(AutomatonProxy automaton) {
+    List<String> alphabet = new ArrayList<>();
+    for (EventProxy event : automaton.getEvents()) alphabet.add(event.getName() + ":" + event.getKind());
+    List<String> states = new ArrayList<>();
+    for (StateProxy state : automaton.getStates()) states.add(state.getName() + ":" + state.isInitial());
+    List<String> transitions = new ArrayList<>();
+    for (TransitionProxy transition : automaton.getTransitions()) {
+      transitions.add(transition.getSource().getName() + ">" + transition.getEvent().getName() + ">" +
+          transition.getTarget().getName());
+    }
+
+    return digest(automaton.getKind().toString(), alphabet, states, transitions);
+  }
+
+  /**
+   * Computes the fingerprint of a model from the fingerprints of its automata and its events.
+   *
+   * @param fingerprints The fingerprint of each automaton.
+   * @param events       The events.
+   * @return The fingerprint.
+   */
+  public static String getFingerprint(String[] fingerprints, EventProxy[] events) {
+    List<String> names = new ArrayList<>();
+    for (EventProxy event : events) names.add(event.getName() + ":" + event.getKind());
+    return digest("model", Arrays.asList(fingerprints), names);
+  }
+
+  /**
+   * Gets the file holding the result for a model name, named by a digest of the name so that any name can be used.
+   *
+   * @param modelName The name of the model.
+   * @return The file.
+   */
+  private File getFile(String modelName) {
+    return new File(directory, digest(modelName).substring(0, 32) + ".result");
+  }
+
+  /**
+   * Computes the hexadecimal SHA-256 digest of a string followed by sorted lists of strings.
+   *
+   * @param header The string.
+   * @param parts  The lists, each of which is sorted before it is digested.
+   * @return The digest.
+   */
+  @SafeVarargs
+  static String digest(String header, Collection<String>... parts) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(header.getBytes(StandardCharsets.UTF_8));
+      for (Collection<String> part : parts) {
+        List<String> sorted = new ArrayList<>(part);
+        sorted.sort(null);
+        // lengths keep the boundaries between strings unambiguous
+        digest.update((byte) 0);
+        for (String string : sorted) {
+          digest.update((string.length() + ":" + string).getBytes(StandardCharsets.UTF_8));
+        }
+      }
+
+      StringBuilder builder = new StringBuilder();
+      for (byte b : digest.digest()) builder.append(String.format("%02x", b));
+      return builder.toString();
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IllegalStateException("SHA-256 is not available.", exception);
+    }
+  }
+
+  /**
+   * The result of checking a model.
+   */
+  public static class Entry {
+    /**
+     * The fingerprint of the model.
+     */
+    private final String fingerprint;
+
+    /**
+     * Whether the model is controllable.
+     */
+    private final boolean controllable;
+
+    /**
+     * Number of states visited to find the result.
+     */
+    private final long stateCount;
+
+    /**
+     * The names of the events of the counterexample, empty if the model is controllable.
+     */
+    private final List<String> trace;
+
+    /**
+     * Sets of automaton fingerprints whose composition is controllable.
+     */
+    private final List<Set<String>> proofs;
+
+    /**
+     * Create a result.
+     *
+     * @param fingerprint  The fingerprint of the model.
+     * @param controllable Whether the model is controllable.
+     * @param stateCount   Number of states visited to find the result.
+     * @param trace        The names of the events of the counterexample, empty if the model is controllable.
+     * @param proofs       Sets of automaton fingerprints whose composition is controllable.
+     */
+    public Entry(String fingerprint, boolean controllable, long stateCount, List<String> trace,
+                 List<Set<String>> proofs) {
+      this.fingerprint = fingerprint;
+      this.controllable = controllable;
+      this.stateCount = stateCount;
+      this.trace = trace;
+      this.proofs = proofs;
+    }
+
+    /**
+     * Gets the fingerprint of the model.
+     *
+     * @return The fingerprint.
+     */
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * Returns whether the model is controllable.
+     *
+     * @return True if the model is controllable.
+     */
+    public boolean isControllable() {
+      return controllable;
+    }
+
+    /**
+     * Gets the number of states visited to find the result.
+     *
+     * @return The number of states.
+     */
+    public long getStateCount() {
+      return stateCount;
+    }
+
+    /**
+     * Gets the names of the events of the counterexample.
+     *
+     * @return The event names, empty if the model is controllable.
+     */
+    public List<String> getTrace() {
+      return trace;
+    }
+
+    /**
+     * Gets the sets of automaton fingerprints whose composition is controllable.
+     *
+     * @return The proofs.
+     */
+    public List<Set<String>> getProofs() {
+      return proofs;
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * The places a {@link ControllabilityChecker} can store the states visited by the sequential breadth first search.
+ */
+public enum StateStorage {
+  /**
+   * Primitive arrays on the Java heap, see {@link HeapStateTupleSet}.
+   */
+  HEAP,
+
+  /**
+   * Direct buffers outside the Java heap, so that the garbage collector never scans or copies the visited states, see
+   * {@link OffHeapStateTupleSet}.
+   */
+  OFF_HEAP
+}
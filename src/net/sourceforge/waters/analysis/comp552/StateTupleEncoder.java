@@ -8,11 +8,14 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Used to convert between state tuples and state tuple codes.
+ * Used to convert between state tuples and state tuple codes. If the states of all automata fit in 64 bits a state
+ * tuple code is a single long, otherwise it is spread over several longs (words) with no automaton straddling a word
+ * boundary.
  */
 public class StateTupleEncoder {
   /**
-   * Array containing the hashmaps mapping between states and that states index in indexStateMaps for each automata.
+   * Array containing the hashmaps mapping between states and that states index in indexStateMaps for each automata,
+   * or null if the encoder was created from state counts.
    */
   private final Map<StateProxy, Integer>[] stateIndexMaps;
 
@@ -27,7 +30,22 @@ public class StateTupleEncoder {
   private final int[] packSizes;
 
   /**
-   * Array of arrays of states in each automata.
+   * Array of the position of the lowest bit of the state of each automata within its word of a state tuple code.
+   */
+  private final int[] packShifts;
+
+  /**
+   * Array of the index of the word of a state tuple code containing the state of each automata.
+   */
+  private final int[] packWords;
+
+  /**
+   * Number of longs needed to store a state tuple code.
+   */
+  private final int wordCount;
+
+  /**
+   * Array of arrays of states in each automata, or null if the encoder was created from state counts.
    */
   private final StateProxy[][] indexStateMaps;
 
@@ -38,37 +56,78 @@ public class StateTupleEncoder {
    * @param automata List of automata in the model that this encoder will be for.
    */
   public StateTupleEncoder(AutomatonProxy[] automata) {
-    packMasks = new int[automata.length];
-    packSizes = new int[automata.length];
-    stateIndexMaps = new HashMap[automata.length];
-    indexStateMaps = new StateProxy[automata.length][];
+    this(getStateCounts(automata), automata);
+  }
+
+  /**
+   * Construct an encoder for automata given only by their numbers of states, such as automata whose states were
+   * merged. Such an encoder only converts between state indices and state tuple codes, the methods taking or returning
+   * {@link StateProxy} objects cannot be used.
+   *
+   * @param stateCounts The number of states of each automaton.
+   */
+  public StateTupleEncoder(int[] stateCounts) {
+    this(stateCounts, null);
+  }
+
+  /**
+   * Construct an encoder by calculating the number of bits that are needed to represent a state for each automata.
+   *
+   * @param stateCounts The number of states of each automaton.
+   * @param automata    The automata, or null if states are only referred to by index.
+   */
+  private StateTupleEncoder(int[] stateCounts, AutomatonProxy[] automata) {
+    packMasks = new int[stateCounts.length];
+    packSizes = new int[stateCounts.length];
+    packShifts = new int[stateCounts.length];
+    packWords = new int[stateCounts.length];
+    stateIndexMaps = automata == null ? null : new HashMap[stateCounts.length];
+    indexStateMaps = automata == null ? null : new StateProxy[stateCounts.length][];
 
     // foreach automaton
-    int i = 0;
+    int i;
     int sum = 0;
-    for (AutomatonProxy automaton : automata) {
+    for (i = 0; i < stateCounts.length; i++) {
       // calculate the number of bits needed to uniquely represent all states
-      packSizes[i] = getBitPackSize(automaton.getStates().size());
+      packSizes[i] = getBitPackSize(stateCounts[i]);
       sum += packSizes[i];
       packMasks[i] = createMask(packSizes[i]);
+      if (automata == null) continue;
 
       stateIndexMaps[i] = new HashMap<>();
-      indexStateMaps[i] = new StateProxy[automaton.getStates().size()];
+      indexStateMaps[i] = new StateProxy[stateCounts[i]];
 
       // create a mapping between all states and an index
       int j = 0;
-      for (StateProxy state : automaton.getStates()) {
+      for (StateProxy state : automata[i].getStates()) {
         stateIndexMaps[i].put(state, j);
         indexStateMaps[i][j] = state;
         j++;
       }
-
-      i++;
     }
 
-    // checks sum is under 64
-    if (sum > 64) {
-      throw new StateTupleSizeException(String.format("A tuple of states for these automata cannot be stored in 64 bits, %d bits would be needed.", sum));
+    if (sum <= 64) {
+      // the first automaton occupies the most significant bits of a single word
+      wordCount = 1;
+      int shift = 0;
+      for (i = stateCounts.length - 1; i >= 0; i--) {
+        packShifts[i] = shift;
+        shift += packSizes[i];
+      }
+    } else {
+      // put each automaton in the first word with enough bits left for it
+      int[] used = new int[stateCounts.length];
+      int words = 0;
+      for (i = 0; i < stateCounts.length; i++) {
+        int word = 0;
+        while (word < words && used[word] + packSizes[i] > 64) word++;
+        if (word == words) words++;
+
+        packWords[i] = word;
+        packShifts[i] = used[word];
+        used[word] += packSizes[i];
+      }
+      wordCount = words;
     }
   }
 
@@ -81,17 +140,16 @@ public class StateTupleEncoder {
   public long encode(StateProxy[] stateTuple) {
     if (stateTuple.length != packMasks.length)
       throw new IllegalArgumentException("State tuple does not contain the correct number of states.");
+    checkSingleWord();
+    checkStates();
 
     long output = 0;
 
     for (int i = 0; i < stateTuple.length; i++) {
       StateProxy state = stateTuple[i];
       int stateIndex = stateIndexMaps[i].get(state);
-      int mask = packMasks[i];
-      int packSize = packSizes[i];
 
-      output <<= packSize;
-      output |= stateIndex & mask;
+      output |= (long) (stateIndex & packMasks[i]) << packShifts[i];
     }
 
     assert Arrays.deepEquals(stateTuple, decode(output));
@@ -106,26 +164,202 @@ public class StateTupleEncoder {
    * @return The state tuple the stat tuple code represents.
    */
   public StateProxy[] decode(long stateTupleCode) {
+    checkSingleWord();
+    checkStates();
     StateProxy[] output = new StateProxy[packSizes.length];
 
-    for (int i = output.length - 1; i >= 0; i--) {
-      int stateIndex = (int) (stateTupleCode & packMasks[i]);
-      stateTupleCode >>>= packSizes[i];
+    for (int i = 0; i < output.length; i++) {
+      output[i] = indexStateMaps[i][getStateIndex(stateTupleCode, i)];
+    }
+
+    return output;
+  }
+
+  /**
+   * Convert a tuple of state indices to a state tuple code.
+   *
+   * @param stateIndices The index of the state of each automaton, as given by {@link #getStateIndex(int, StateProxy)}.
+   * @return The state tuple code representing the state tuple.
+   */
+  public long encode(int[] stateIndices) {
+    checkSingleWord();
+    long output = 0;
 
-      output[i] = indexStateMaps[i][stateIndex];
+    for (int i = 0; i < stateIndices.length; i++) {
+      output |= (long) (stateIndices[i] & packMasks[i]) << packShifts[i];
     }
 
     return output;
   }
 
+  /**
+   * Convert a state tuple code to a tuple of state indices.
+   *
+   * @param stateTupleCode The state tuple code to convert.
+   * @param output         Array to store the index of the state of each automaton in.
+   */
+  public void decode(long stateTupleCode, int[] output) {
+    checkSingleWord();
+    for (int i = 0; i < output.length; i++) {
+      output[i] = getStateIndex(stateTupleCode, i);
+    }
+  }
+
+  /**
+   * Convert a tuple of state indices to a multi-word state tuple code.
+   *
+   * @param stateIndices The index of the state of each automaton, as given by {@link #getStateIndex(int, StateProxy)}.
+   * @param output       Array of {@link #getWordCount()} longs to store the state tuple code in.
+   */
+  public void encode(int[] stateIndices, long[] output) {
+    Arrays.fill(output, 0, wordCount, 0);
+
+    for (int i = 0; i < stateIndices.length; i++) {
+      output[packWords[i]] |= (long) (stateIndices[i] & packMasks[i]) << packShifts[i];
+    }
+  }
+
+  /**
+   * Convert a multi-word state tuple code to a tuple of state indices.
+   *
+   * @param stateTupleCode The state tuple code to convert.
+   * @param output         Array to store the index of the state of each automaton in.
+   */
+  public void decode(long[] stateTupleCode, int[] output) {
+    for (int i = 0; i < output.length; i++) {
+      output[i] = (int) (stateTupleCode[packWords[i]] >>> packShifts[i]) & packMasks[i];
+    }
+  }
+
+  /**
+   * Extracts the index of the state of one automaton from a state tuple code without decoding the whole tuple.
+   *
+   * @param stateTupleCode The state tuple code.
+   * @param automatonIndex Index of the automaton.
+   * @return The index of the state of the automaton.
+   */
+  public int getStateIndex(long stateTupleCode, int automatonIndex) {
+    return (int) (stateTupleCode >>> packShifts[automatonIndex]) & packMasks[automatonIndex];
+  }
+
+  /**
+   * Replaces the index of the state of one automaton in a state tuple code.
+   *
+   * @param stateTupleCode The state tuple code.
+   * @param automatonIndex Index of the automaton.
+   * @param stateIndex     The new index of the state of the automaton.
+   * @return The state tuple code with the state of the automaton replaced.
+   */
+  public long setStateIndex(long stateTupleCode, int automatonIndex, int stateIndex) {
+    int shift = packShifts[automatonIndex];
+    return stateTupleCode & ~((long) packMasks[automatonIndex] << shift) | (long) stateIndex << shift;
+  }
+
+  /**
+   * Gets the number of longs needed to store a state tuple code. Methods working on a single long state tuple code
+   * can only be used if this is one.
+   *
+   * @return The number of longs in a state tuple code.
+   */
+  public int getWordCount() {
+    return wordCount;
+  }
+
+  /**
+   * Gets the array of the index of the word of a state tuple code containing the state of each automata.
+   *
+   * @return The array of word indices.
+   */
+  public int[] getPackWords() {
+    return packWords;
+  }
+
+  /**
+   * Gets the array of masks for each automata.
+   *
+   * @return The array of masks.
+   */
+  public int[] getPackMasks() {
+    return packMasks;
+  }
+
+  /**
+   * Gets the array of the position of the lowest bit of the state of each automata within its word of a state tuple
+   * code.
+   *
+   * @return The array of shifts.
+   */
+  public int[] getPackShifts() {
+    return packShifts;
+  }
+
+  /**
+   * Gets the index used to represent a state of an automaton.
+   *
+   * @param automatonIndex Index of the automaton the state is in.
+   * @param state          The state.
+   * @return The index of the state.
+   */
+  public int getStateIndex(int automatonIndex, StateProxy state) {
+    checkStates();
+    return stateIndexMaps[automatonIndex].get(state);
+  }
+
+  /**
+   * Gets the state of an automaton represented by an index.
+   *
+   * @param automatonIndex Index of the automaton the state is in.
+   * @param stateIndex     The index of the state.
+   * @return The state.
+   */
+  public StateProxy getState(int automatonIndex, int stateIndex) {
+    checkStates();
+    return indexStateMaps[automatonIndex][stateIndex];
+  }
+
+  /**
+   * Checks that state tuple codes fit in a single long.
+   *
+   * @throws StateTupleSizeException If more than one long is needed.
+   */
+  private void checkSingleWord() {
+    if (wordCount > 1) {
+      throw new StateTupleSizeException(String.format("A tuple of states for these automata cannot be stored in 64 bits, %d longs would be needed.", wordCount));
+    }
+  }
+
+  /**
+   * Checks that the states of the automata are known.
+   *
+   * @throws IllegalStateException If the encoder was created from state counts.
+   */
+  private void checkStates() {
+    if (indexStateMaps == null) {
+      throw new IllegalStateException("This encoder only knows the states of the automata by index.");
+    }
+  }
+
+  /**
+   * Gets the number of states of each automaton.
+   *
+   * @param automata The automata.
+   * @return The number of states of each automaton.
+   */
+  private static int[] getStateCounts(AutomatonProxy[] automata) {
+    int[] stateCounts = new int[automata.length];
+    for (int i = 0; i < automata.length; i++) stateCounts[i] = automata[i].getStates().size();
+    return stateCounts;
+  }
+
   /**
    * Calculates the number of bits needed to represent a given number of states.
    *
    * @param n The number of states that need to be represented.
    * @return The number of bits needed.
    */
-  private int getBitPackSize(int n) {
-    return (byte) Math.ceil(Math.log(n) / Math.log(2));
+  static int getBitPackSize(int n) {
+    // exact integer version of ceil(log2(n)), which floating point logarithms can get wrong for powers of two
+    return n <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
   }
 
   /**
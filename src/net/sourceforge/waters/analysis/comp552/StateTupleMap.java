@@ -0,0 +1,293 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An open addressing hash map from state tuple codes to the previous state tuple code and the index of the event
+ * that first reached each state tuple. The keys, previous states and events are stored in parallel primitive arrays,
+ * with the events as unsigned shorts, and a bit set marks the used slots so every long value is a valid key.
+ */
+public class StateTupleMap implements PredecessorMap, VisitedStateSet {
+  /**
+   * Largest number of events whose indices can be stored.
+   */
+  public static final int MAX_EVENTS = 0xFFFF;
+
+  /**
+   * Event index stored for state tuples that were not reached by an event, such as the initial state tuple.
+   */
+  public static final int NO_EVENT = MAX_EVENTS;
+
+  /**
+   * Maximum fraction of the slots that may be used before the map is grown.
+   */
+  private static final double LOAD_FACTOR = 0.75;
+
+  /**
+   * Number of bytes of a state tuple, its previous state tuple and its event written by
+   * {@link #write(WritableByteChannel, ByteBuffer)}.
+   */
+  private static final int RECORD_BYTES = 18;
+
+  /**
+   * The state tuple code in each slot.
+   */
+  private long[] keys;
+
+  /**
+   * The previous state tuple code in each slot.
+   */
+  private long[] previous;
+
+  /**
+   * The index of the event from the previous state tuple in each slot, as an unsigned short.
+   */
+  private short[] events;
+
+  /**
+   * Bit set of the slots that are used.
+   */
+  private long[] used;
+
+  /**
+   * Number of state tuples in the map.
+   */
+  private int size;
+
+  /**
+   * Number of state tuples the map can hold before it is grown.
+   */
+  private int threshold;
+
+  /**
+   * Create an empty map.
+   *
+   * @param initialCapacity The number of state tuples the map can hold before it needs to grow.
+   */
+  public StateTupleMap(int initialCapacity) {
+    allocate(Integer.highestOneBit((int) Math.max(initialCapacity / LOAD_FACTOR, 2) - 1) << 1);
+  }
+
+  /**
+   * Create a copy of a map.
+   *
+   * @param other The map to copy.
+   */
+  public StateTupleMap(StateTupleMap other) {
+    keys = other.keys.clone();
+    previous = other.previous.clone();
+    events = other.events.clone();
+    used = other.used.clone();
+    size = other.size;
+    threshold = other.threshold;
+  }
+
+  /**
+   * Reads a map written by {@link #write(WritableByteChannel, ByteBuffer)}.
+   *
+   * @param channel The channel to read from.
+   * @param buffer  The buffer holding the bytes read from the channel but not consumed yet.
+   * @return The map.
+   * @throws IOException If the map cannot be read.
+   */
+  public static StateTupleMap read(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+    CheckpointStore.require(channel, buffer, 4);
+    int count = buffer.getInt();
+    StateTupleMap map = new StateTupleMap(count);
+    for (int k = 0; k < count; k++) {
+      CheckpointStore.require(channel, buffer, RECORD_BYTES);
+      map.add(buffer.getLong(), buffer.getLong(), buffer.getShort() & 0xFFFF);
+    }
+
+    return map;
+  }
+
+  /**
+   * Adds a state tuple to the map if it is not already in it.
+   *
+   * @param state         The state tuple code.
+   * @param previousState The previous state tuple code.
+   * @param event         The index of the event from the previous state tuple, or {@link #NO_EVENT}.
+   * @return True if the state tuple was added, false if it was already in the map.
+   */
+  public boolean add(long state, long previousState, int event) {
+    int mask = keys.length - 1;
+    int slot = hash(state) & mask;
+
+    // probe until the state or an unused slot is found
+    while (isUsed(slot)) {
+      if (keys[slot] == state) return false;
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = state;
+    previous[slot] = previousState;
+    events[slot] = (short) event;
+    used[slot >>> 6] |= 1L << slot;
+    if (++size > threshold) grow();
+
+    return true;
+  }
+
+  /**
+   * Adds a state tuple that was not reached by an event to the map if it is not already in it, so the map can be used
+   * as a plain set of visited states.
+   *
+   * @param state The state tuple code.
+   * @return True if the state tuple was added, false if it was already in the map.
+   */
+  @Override
+  public boolean add(long state) {
+    return add(state, state, NO_EVENT);
+  }
+
+  /**
+   * Returns true if a specific state tuple is in the map.
+   *
+   * @param state State tuple to check for.
+   * @return True if state tuple is in the map.
+   */
+  public boolean contains(long state) {
+    return find(state) >= 0;
+  }
+
+  @Override
+  public long getPrevious(long state) {
+    return previous[find(state)];
+  }
+
+  @Override
+  public int getPreviousEvent(long state) {
+    return events[find(state)] & 0xFFFF;
+  }
+
+  /**
+   * Gets the number of state tuples in the map.
+   *
+   * @return The number of state tuples in the map.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of slots of the map.
+   *
+   * @return The number of slots.
+   */
+  @Override
+  public long getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * Gets the number of bytes used by the arrays of the map.
+   *
+   * @return The number of bytes.
+   */
+  @Override
+  public long getMemoryBytes() {
+    return 18L * keys.length + 8L * used.length;
+  }
+
+  /**
+   * Writes the used slots of the map as a count followed by one record for each state tuple, so the file does not
+   * depend on the capacity of the map.
+   *
+   * @param channel The channel to write to.
+   * @param buffer  The buffer holding the bytes not written to the channel yet.
+   * @throws IOException If the map cannot be written.
+   */
+  public void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    CheckpointStore.reserve(channel, buffer, 4);
+    buffer.putInt(size);
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (!isUsed(slot)) continue;
+
+      CheckpointStore.reserve(channel, buffer, RECORD_BYTES);
+      buffer.putLong(keys[slot]).putLong(previous[slot]).putShort(events[slot]);
+    }
+  }
+
+  /**
+   * Finds the slot of a state tuple.
+   *
+   * @param state The state tuple code.
+   * @return The slot containing the state tuple, or -1 if it is not in the map.
+   */
+  private int find(long state) {
+    int mask = keys.length - 1;
+    int slot = hash(state) & mask;
+
+    while (isUsed(slot)) {
+      if (keys[slot] == state) return slot;
+      slot = (slot + 1) & mask;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns true if a slot is used.
+   *
+   * @param slot The slot.
+   * @return True if the slot is used.
+   */
+  private boolean isUsed(int slot) {
+    return (used[slot >>> 6] & 1L << slot) != 0;
+  }
+
+  /**
+   * Calculates the hash of a state tuple code, mixing all bits so that codes differing only in a few bits are spread
+   * over the table.
+   *
+   * @param state The state tuple code.
+   * @return The hash.
+   */
+  private static int hash(long state) {
+    long hash = state * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ hash >>> 32);
+  }
+
+  /**
+   * Allocates empty arrays for a number of slots.
+   *
+   * @param capacity The number of slots, a power of two.
+   */
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    previous = new long[capacity];
+    events = new short[capacity];
+    used = new long[Math.max(capacity >>> 6, 1)];
+    threshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  /**
+   * Doubles the number of slots and reinserts all state tuples.
+   */
+  private void grow() {
+    if (keys.length == 1 << 30) throw new IllegalStateException("State tuple map cannot grow any further.");
+
+    long[] oldKeys = keys;
+    long[] oldPrevious = previous;
+    short[] oldEvents = events;
+    long[] oldUsed = used;
+    allocate(keys.length << 1);
+
+    int mask = keys.length - 1;
+    for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+      if ((oldUsed[oldSlot >>> 6] & 1L << oldSlot) == 0) continue;
+
+      int slot = hash(oldKeys[oldSlot]) & mask;
+      while (isUsed(slot)) slot = (slot + 1) & mask;
+
+      keys[slot] = oldKeys[oldSlot];
+      previous[slot] = oldPrevious[oldSlot];
+      events[slot] = oldEvents[oldSlot];
+      used[slot >>> 6] |= 1L << slot;
+    }
+  }
+}
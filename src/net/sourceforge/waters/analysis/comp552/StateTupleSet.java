@@ -1,62 +1,35 @@
 package net.sourceforge.waters.analysis.comp552;
 
-import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Queue;
-
 /**
- * A set of state tuples, the previous state for all those states and a queue of unexpanded states.
+ * A set of state tuples whose codes fit in a single long, the previous state and event for all those states and a
+ * queue of unexpanded states, as used by the sequential breadth first search.
+ *
+ * @see StateStorage
  */
-public class StateTupleSet {
-  /**
-   * Map between all state tuples in the set and the previous state tuples for that state tuples.
-   */
-  private final Map<Long, Long> states;
-
-  /**
-   * Queue of unexpanded state tuples.
-   */
-  private final Queue<Long> unexpandedStates;
-
-  /**
-   * Create an empty set of state tuples.
-   */
-  public StateTupleSet() {
-    states = new HashMap();
-    unexpandedStates = new ArrayDeque<>();
-  }
-
+public interface StateTupleSet extends PredecessorMap {
   /**
-   * Adds a state tuple to the sets and adds it to the queue of unexpanded state tuples.
+   * Adds a state tuple to the set and adds it to the queue of unexpanded state tuples, if it is not already in the
+   * set.
    *
    * @param state         The state to add.
    * @param previousState The previous state of the state to add.
+   * @param event         The index of the event from the previous state, or {@link StateTupleMap#NO_EVENT}.
    */
-  public void add(long state, long previousState) {
-    if (contains(state)) return;
-
-    states.put(state, previousState);
-    unexpandedStates.add(state);
-  }
+  void add(long state, long previousState, int event);
 
   /**
    * Returns true if there are unexpanded state tuples.
    *
    * @return True if there are unexpanded state tuples.
    */
-  public boolean containsUnexpanded() {
-    return !unexpandedStates.isEmpty();
-  }
+  boolean containsUnexpanded();
 
   /**
    * Returns the first unexpanded state tuple in the queue and removes it from the queue.
    *
    * @return The first unexpanded state tuple in the queue.
    */
-  public long popUnexpanded() {
-    return unexpandedStates.remove();
-  }
+  long popUnexpanded();
 
   /**
    * Returns true if a specific state tuple is in the set.
@@ -64,17 +37,26 @@ public class StateTupleSet {
    * @param state State tuple to check for.
    * @return True if state tuple is in the set.
    */
-  public boolean contains(long state) {
-    return states.containsKey(state);
-  }
+  boolean contains(long state);
+
+  /**
+   * Gets the number of state tuples in the set.
+   *
+   * @return The number of state tuples in the set.
+   */
+  long size();
+
+  /**
+   * Gets the number of slots of the set, for its load factor.
+   *
+   * @return The number of slots.
+   */
+  long getCapacity();
 
   /**
-   * Gets the previous state tuple for a specified state tuple.
+   * Gets the number of bytes used by the set.
    *
-   * @param currentStateCode The state tuple to get the previous state tuple of.
-   * @return The previous state tuple.
+   * @return The number of bytes.
    */
-  public long getPrevious(long currentStateCode) {
-    return states.get(currentStateCode);
-  }
+  long getMemoryBytes();
 }
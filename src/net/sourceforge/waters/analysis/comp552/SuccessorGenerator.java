@@ -0,0 +1,332 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.util.Arrays;
+
+/**
+ * Computes the successors of state tuple codes that fit in a single long, working directly on the packed codes with
+ * the transition tables of a compiled model.
+ *
+ * <P>The events enabled in a state tuple are found by intersecting the sets of events each automaton does not disable
+ * in its state, separately for the plants and the specifications, so the cost of a state depends on the number of
+ * automata and enabled transitions rather than on the number of events times the number of automata. Only the
+ * automata with an enabled event in their alphabet are visited to compute its successor.</P>
+ *
+ * <P>The automata are intersected in the order given by the {@link AutomatonOrdering} of the model, and the
+ * intersection stops once no event is left that could be enabled or violate controllability.</P>
+ *
+ * <P>A generator keeps the successors of the last expanded state in internal buffers, so each thread needs its own
+ * generator.</P>
+ */
+public class SuccessorGenerator {
+  /**
+   * Value returned by {@link #expand(long)} if an uncontrollable event is disabled by a specification.
+   */
+  public static final int VIOLATION = -1;
+
+  /**
+   * Number of expansions over which a generator using {@link AutomatonOrdering#DYNAMIC} counts the disabled events.
+   */
+  public static final int SAMPLE_SIZE = 4096;
+
+  /**
+   * Transition tables of each automaton, see {@link CompiledModel#getTransitionTables()}.
+   */
+  private final int[][] transitions;
+
+  /**
+   * Array of whether each automaton is a specification.
+   */
+  private final boolean[] specs;
+
+  /**
+   * Sets of events not disabled in each state of each automaton, see {@link CompiledModel#getEnabledEvents()}.
+   */
+  private final long[][] enabledEvents;
+
+  /**
+   * The set of all events.
+   */
+  private final long[] allEvents;
+
+  /**
+   * The set of uncontrollable events.
+   */
+  private final long[] uncontrollableEvents;
+
+  /**
+   * The indices of the automata with each event in their alphabet.
+   */
+  private final int[][] automataOfEvent;
+
+  /**
+   * Number of longs in a set of events.
+   */
+  private final int eventWords;
+
+  /**
+   * The events not disabled by any plant in the last expanded state.
+   */
+  private final long[] plantEnabled;
+
+  /**
+   * The events not disabled by any specification in the last expanded state.
+   */
+  private final long[] specEnabled;
+
+  /**
+   * Array of the position of the state of each automaton in a state tuple code.
+   */
+  private final int[] shifts;
+
+  /**
+   * Array of masks for the state of each automaton.
+   */
+  private final int[] masks;
+
+  /**
+   * Array of masks that clear the state of each automaton from a state tuple code.
+   */
+  private final long[] clearMasks;
+
+  /**
+   * Number of events in the model.
+   */
+  private final int eventCount;
+
+  /**
+   * Offset of the row for the current state in the transition table of each automaton.
+   */
+  private final int[] rows;
+
+  /**
+   * The indices of the automata in the order their enabled events are intersected.
+   */
+  private final int[] order;
+
+  /**
+   * Number of events each automaton disabled in the expanded states, while sampling for a dynamic order.
+   */
+  private final long[] disabledCounts;
+
+  /**
+   * Number of expansions left before the dynamic order is fixed.
+   */
+  private int samplesLeft;
+
+  /**
+   * Successors of the last expanded state.
+   */
+  private final long[] successors;
+
+  /**
+   * Index of the event leading to each successor of the last expanded state.
+   */
+  private final int[] successorEvents;
+
+  /**
+   * Index of the uncontrollable event disabled by a specification in the last expanded state.
+   */
+  private int violatingEvent;
+
+  /**
+   * Create a successor generator.
+   *
+   * @param model   The compiled model.
+   * @param encoder The state tuple encoder for the model, which must use a single long per state tuple code.
+   */
+  public SuccessorGenerator(CompiledModel model, StateTupleEncoder encoder) {
+    int automatonCount = model.getAutomata().length;
+    transitions = model.getTransitionTables();
+    specs = model.getSpecs();
+    enabledEvents = model.getEnabledEvents();
+    allEvents = model.getAllEvents();
+    uncontrollableEvents = model.getUncontrollableEvents();
+    automataOfEvent = model.getAutomataOfEvent();
+    eventWords = model.getEventWords();
+    plantEnabled = new long[eventWords];
+    specEnabled = new long[eventWords];
+    shifts = encoder.getPackShifts();
+    masks = encoder.getPackMasks();
+    eventCount = model.getEvents().length;
+
+    clearMasks = new long[automatonCount];
+    for (int i = 0; i < automatonCount; i++) {
+      clearMasks[i] = ~((long) masks[i] << shifts[i]);
+    }
+
+    rows = new int[automatonCount];
+    successors = new long[eventCount];
+    successorEvents = new int[eventCount];
+
+    order = new int[automatonCount];
+    for (int i = 0; i < automatonCount; i++) order[i] = i;
+    disabledCounts = new long[automatonCount];
+    AutomatonOrdering ordering = model.getAutomatonOrdering();
+    if (ordering != AutomatonOrdering.FIXED) sortOrder(model.getDisablingDensities());
+    if (ordering == AutomatonOrdering.DYNAMIC) samplesLeft = SAMPLE_SIZE;
+  }
+
+  /**
+   * Computes the successors of a state tuple, stopping early if an uncontrollable event is enabled in all plants but
+   * disabled by a specification.
+   *
+   * @param state The code of the state tuple to expand.
+   * @return The number of successors, which can be read with {@link #getSuccessor(int)}, or {@link #VIOLATION}.
+   */
+  public int expand(long state) {
+    if (samplesLeft > 0) sample(state);
+    if (eventWords == 1) return expandSingleWord(state);
+
+    System.arraycopy(allEvents, 0, plantEnabled, 0, eventWords);
+    System.arraycopy(allEvents, 0, specEnabled, 0, eventWords);
+    for (int i : order) {
+      int local = (int) (state >>> shifts[i]) & masks[i];
+      rows[i] = local * eventCount;
+
+      long[] enabled = specs[i] ? specEnabled : plantEnabled;
+      long[] localEnabled = enabledEvents[i];
+      int offset = local * eventWords;
+      // nothing is left to find once no event enabled by the plants is uncontrollable or enabled by the specs
+      long remaining = 0;
+      for (int w = 0; w < eventWords; w++) {
+        enabled[w] &= localEnabled[offset + w];
+        remaining |= plantEnabled[w] & (specEnabled[w] | uncontrollableEvents[w]);
+      }
+      if (remaining == 0) return 0;
+    }
+
+    // the model is not controllable if an uncontrollable event is enabled by the plants but disabled by a spec
+    for (int w = 0; w < eventWords; w++) {
+      long violations = plantEnabled[w] & ~specEnabled[w] & uncontrollableEvents[w];
+      if (violations != 0) {
+        violatingEvent = (w << 6) + Long.numberOfTrailingZeros(violations);
+        return VIOLATION;
+      }
+    }
+
+    int count = 0;
+    for (int w = 0; w < eventWords; w++) {
+      long enabled = plantEnabled[w] & specEnabled[w];
+      while (enabled != 0) {
+        int e = (w << 6) + Long.numberOfTrailingZeros(enabled);
+        enabled &= enabled - 1;
+
+        // splice the target of each automaton with the event in its alphabet into the code
+        long next = state;
+        for (int i : automataOfEvent[e]) {
+          next = next & clearMasks[i] | (long) transitions[i][rows[i] + e] << shifts[i];
+        }
+
+        successors[count] = next;
+        successorEvents[count] = e;
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Computes the successors of a state tuple like {@link #expand(long)}, for models whose sets of events fit in a
+   * single long, keeping the sets in local variables.
+   *
+   * @param state The code of the state tuple to expand.
+   * @return The number of successors, or {@link #VIOLATION}.
+   */
+  private int expandSingleWord(long state) {
+    long plants = allEvents[0];
+    long specs = plants;
+    long uncontrollable = uncontrollableEvents[0];
+    for (int i : order) {
+      int local = (int) (state >>> shifts[i]) & masks[i];
+      rows[i] = local * eventCount;
+      if (this.specs[i]) specs &= enabledEvents[i][local];
+      else plants &= enabledEvents[i][local];
+      if ((plants & (specs | uncontrollable)) == 0) return 0;
+    }
+
+    long violations = plants & ~specs & uncontrollable;
+    if (violations != 0) {
+      violatingEvent = Long.numberOfTrailingZeros(violations);
+      return VIOLATION;
+    }
+
+    int count = 0;
+    for (long enabled = plants & specs; enabled != 0; enabled &= enabled - 1) {
+      int e = Long.numberOfTrailingZeros(enabled);
+      long next = state;
+      for (int i : automataOfEvent[e]) {
+        next = next & clearMasks[i] | (long) transitions[i][rows[i] + e] << shifts[i];
+      }
+
+      successors[count] = next;
+      successorEvents[count] = e;
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets a successor of the last expanded state.
+   *
+   * @param index Index of the successor, less than the value returned by {@link #expand(long)}.
+   * @return The code of the successor.
+   */
+  public long getSuccessor(int index) {
+    return successors[index];
+  }
+
+  /**
+   * Gets the event leading to a successor of the last expanded state.
+   *
+   * @param index Index of the successor, less than the value returned by {@link #expand(long)}.
+   * @return The index of the event.
+   */
+  public int getSuccessorEvent(int index) {
+    return successorEvents[index];
+  }
+
+  /**
+   * Gets the uncontrollable event disabled by a specification if the last call to {@link #expand(long)} returned
+   * {@link #VIOLATION}.
+   *
+   * @return The index of the event.
+   */
+  public int getViolatingEvent() {
+    return violatingEvent;
+  }
+
+  /**
+   * Counts the events each automaton disables in a state, and sorts the automata by the counts once enough states
+   * were sampled.
+   *
+   * @param state The code of the state tuple being expanded.
+   */
+  private void sample(long state) {
+    for (int i = 0; i < rows.length; i++) {
+      int offset = ((int) (state >>> shifts[i]) & masks[i]) * eventWords;
+      for (int w = 0; w < eventWords; w++) {
+        disabledCounts[i] += Long.bitCount(allEvents[w] & ~enabledEvents[i][offset + w]);
+      }
+    }
+
+    if (--samplesLeft == 0) {
+      double[] weights = new double[disabledCounts.length];
+      for (int i = 0; i < weights.length; i++) weights[i] = disabledCounts[i];
+      sortOrder(weights);
+    }
+  }
+
+  /**
+   * Sorts the automata by decreasing weight, keeping the order of the model for equal weights.
+   *
+   * @param weights The weight of each automaton.
+   */
+  private void sortOrder(double[] weights) {
+    Integer[] sorted = new Integer[order.length];
+    for (int k = 0; k < sorted.length; k++) sorted[k] = k;
+    Arrays.sort(sorted, (a, b) -> Double.compare(weights[b], weights[a]));
+    for (int k = 0; k < sorted.length; k++) order[k] = sorted[k];
+  }
+}
@@ -0,0 +1,457 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Explores the state space of a model symbolically, representing sets of state tuples as binary decision diagrams
+ * instead of enumerating them, for any number of words per state tuple code.
+ *
+ * <P>Each bit of a state tuple code is a current state variable followed directly by its next state variable. The bits
+ * are ordered as they appear in the state tuple codes of the {@link StateTupleEncoder}, from the most significant bit
+ * of the first word, so automata close to each other in the code are close to each other in the diagrams.</P>
+ *
+ * <P>Each event has a transition relation that is the conjunction of the transition relations of the automata with
+ * the event in their alphabet. The image of a set of states under an event is found by the relational product with
+ * the current state variables of these automata, after which their next state variables are renamed to current ones,
+ * while the other automata keep their state. The reachable states are found one breadth first layer at a time, and each
+ * layer is checked against the states where a plant enables an uncontrollable event that a specification disables.</P>
+ *
+ * <P>When a violation is found a single state is chosen from the bad states of the last layer, and walked back
+ * through the layers by choosing a predecessor in each earlier layer, so the counterexample is the shortest
+ * possible.</P>
+ */
+public class SymbolicExplorer {
+  /**
+   * Number of nodes the diagram table can hold at first.
+   */
+  private static final int INITIAL_CAPACITY = 1 << 16;
+
+  /**
+   * Transition tables of each automaton, see {@link CompiledModel#getTransitionTables()}.
+   */
+  private final int[][] transitions;
+
+  /**
+   * The index of the initial state of each automaton.
+   */
+  private final int[] initialState;
+
+  /**
+   * Number of events in the model.
+   */
+  private final int eventCount;
+
+  /**
+   * Number of states of each automaton that the transition tables cover.
+   */
+  private final int[] stateCounts;
+
+  /**
+   * The position of each bit of the state of each automaton in the variable order, from its most significant bit.
+   */
+  private final int[][] positions;
+
+  /**
+   * The diagrams.
+   */
+  private final BddManager bdd;
+
+  /**
+   * The transition relation of each event, which is {@link BddManager#FALSE} if the event can never occur and
+   * {@link BddManager#TRUE} if it never changes the state.
+   */
+  private final int[] relations;
+
+  /**
+   * The conjunction of the current state variables of the automata with each event in their alphabet.
+   */
+  private final int[] cubes;
+
+  /**
+   * The states in which each uncontrollable event is enabled by all plants and disabled by a specification.
+   */
+  private final int[] badStates;
+
+  /**
+   * The union of {@link #badStates}.
+   */
+  private int allBadStates;
+
+  /**
+   * The breadth first layers of the last exploration, each layer containing the states first reached in it.
+   */
+  private final List<Integer> layers = new ArrayList<>();
+
+  /**
+   * Number of states reached by the last exploration.
+   */
+  private long stateCount;
+
+  /**
+   * The events of the path to the violation found by the last exploration.
+   */
+  private int[] trace;
+
+  /**
+   * The uncontrollable event disabled by a specification found by the last exploration.
+   */
+  private int violatingEvent;
+
+  /**
+   * The metrics the progress of explorations is published to.
+   */
+  private ExplorationMetrics metrics = new ExplorationMetrics();
+
+  /**
+   * Create a symbolic explorer, building the transition relations and bad states of the model.
+   *
+   * @param model   The compiled model to explore.
+   * @param encoder The state tuple encoder for the model, whose bit layout gives the variable order.
+   */
+  public SymbolicExplorer(CompiledModel model, StateTupleEncoder encoder) {
+    transitions = model.getTransitionTables();
+    initialState = model.getInitialState();
+    eventCount = model.getEvents().length;
+    int automatonCount = transitions.length;
+
+    // order the automata as they appear in the state tuple codes, from the most significant bits of the first word
+    int[] packWords = encoder.getPackWords();
+    int[] packShifts = encoder.getPackShifts();
+    int[] packMasks = encoder.getPackMasks();
+    Integer[] order = new Integer[automatonCount];
+    for (int i = 0; i < automatonCount; i++) order[i] = i;
+    Arrays.sort(order, (a, b) -> packWords[a] != packWords[b] ? Integer.compare(packWords[a], packWords[b])
+        : Integer.compare(packShifts[b], packShifts[a]));
+
+    stateCounts = new int[automatonCount];
+    positions = new int[automatonCount][];
+    int bitCount = 0;
+    for (int i : order) {
+      stateCounts[i] = eventCount == 0 ? 1 : transitions[i].length / eventCount;
+      positions[i] = new int[Integer.bitCount(packMasks[i])];
+      for (int b = 0; b < positions[i].length; b++) positions[i][b] = bitCount++;
+    }
+
+    bdd = new BddManager(bitCount << 1, INITIAL_CAPACITY);
+    relations = new int[eventCount];
+    cubes = new int[eventCount];
+    for (int e = 0; e < eventCount; e++) {
+      relations[e] = bdd.ref(buildRelation(e));
+      cubes[e] = bdd.ref(buildCube(e));
+    }
+
+    badStates = new int[eventCount];
+    allBadStates = BddManager.FALSE;
+    boolean[] specs = model.getSpecs();
+    boolean[] uncontrollable = model.getUncontrollable();
+    for (int e = 0; e < eventCount; e++) {
+      if (uncontrollable[e]) {
+        int enabled = BddManager.TRUE;
+        int disabled = BddManager.FALSE;
+        for (int i = 0; i < automatonCount; i++) {
+          if (transitions[i][e] == CompiledModel.NOT_IN_ALPHABET) continue;
+          if (specs[i]) disabled = bdd.or(disabled, bdd.not(buildEnabled(i, e)));
+          else enabled = bdd.and(enabled, buildEnabled(i, e));
+        }
+        badStates[e] = bdd.and(enabled, disabled);
+      }
+      bdd.ref(badStates[e]);
+      allBadStates = bdd.or(allBadStates, badStates[e]);
+    }
+    bdd.ref(allBadStates);
+    bdd.collectGarbage();
+  }
+
+  /**
+   * Sets the metrics to publish the progress of explorations to.
+   *
+   * @param metrics The metrics.
+   */
+  public void setMetrics(ExplorationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Explores all states reachable from the initial state, one breadth first layer at a time.
+   *
+   * @return True if no violation was found, false otherwise.
+   * @throws ResourceLimitException If the exploration exceeds a resource limit of its metrics.
+   */
+  public boolean explore() {
+    for (int layer : layers) bdd.deref(layer);
+    layers.clear();
+
+    int reached = bdd.ref(buildState(initialState));
+    int frontier = reached;
+    // the layers are disjoint, so the reached states are counted by adding up the frontiers
+    double reachedCount = 0;
+    long threshold = bdd.getNodeCount() * 2L;
+    while (frontier != BddManager.FALSE) {
+      layers.add(bdd.ref(frontier));
+      double frontierCount = bdd.satCountCurrent(frontier);
+      reachedCount += frontierCount;
+      metrics.update((long) Math.min(reachedCount, Long.MAX_VALUE), (long) Math.min(frontierCount, Long.MAX_VALUE),
+          layers.size() - 1);
+      metrics.updateStore(0, bdd.getMemoryBytes());
+      int bad = bdd.and(frontier, allBadStates);
+      if (bad != BddManager.FALSE) {
+        stateCount = (long) Math.min(reachedCount, Long.MAX_VALUE);
+        bdd.deref(reached);
+        computeTrace(bad);
+        return false;
+      }
+
+      int image = BddManager.FALSE;
+      for (int e = 0; e < eventCount; e++) {
+        // an event that can never occur or never changes the state adds nothing
+        if (relations[e] <= BddManager.TRUE) continue;
+        image = bdd.or(image, bdd.renameNextToCurrent(bdd.relProd(frontier, relations[e], cubes[e])));
+      }
+
+      frontier = bdd.diff(image, reached);
+      int next = bdd.ref(bdd.or(reached, frontier));
+      bdd.deref(reached);
+      reached = next;
+
+      // only the layers, reached states and relations are referenced between layers
+      if (bdd.getNodeCount() > threshold) {
+        bdd.ref(frontier);
+        bdd.collectGarbage();
+        bdd.deref(frontier);
+        threshold = bdd.getNodeCount() * 2L;
+      }
+    }
+
+    stateCount = (long) Math.min(reachedCount, Long.MAX_VALUE);
+    bdd.deref(reached);
+    return true;
+  }
+
+  /**
+   * Gets the number of states reached by the last exploration.
+   *
+   * @return The number of states.
+   */
+  public long getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * Gets the number of nodes in the diagram table.
+   *
+   * @return The number of nodes.
+   */
+  public int getNodeCount() {
+    return bdd.getNodeCount();
+  }
+
+  /**
+   * Gets the events of the path from the initial state to the state in which the last exploration found a violation.
+   *
+   * @return The indices of the events.
+   */
+  public int[] getTrace() {
+    return trace;
+  }
+
+  /**
+   * Gets the uncontrollable event disabled by a specification found by the last exploration.
+   *
+   * @return The index of the event.
+   */
+  public int getViolatingEvent() {
+    return violatingEvent;
+  }
+
+  /**
+   * Computes a shortest path to a bad state of the last layer by walking back through the layers.
+   *
+   * @param bad The bad states of the last layer.
+   */
+  private void computeTrace(int bad) {
+    int[] state = decode(bdd.satOne(bad));
+    for (int e = 0; e < eventCount; e++) {
+      if (badStates[e] != BddManager.FALSE && bdd.and(buildState(state), badStates[e]) != BddManager.FALSE) {
+        violatingEvent = e;
+        break;
+      }
+    }
+
+    trace = new int[layers.size() - 1];
+    for (int depth = trace.length - 1; depth >= 0; depth--) {
+      int layer = layers.get(depth);
+      for (int e = 0; e < eventCount; e++) {
+        if (relations[e] <= BddManager.TRUE) continue;
+
+        int predecessors = bdd.and(buildPredecessors(state, e), layer);
+        if (predecessors != BddManager.FALSE) {
+          state = decode(bdd.satOne(predecessors));
+          trace[depth] = e;
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the transition relation of an event.
+   *
+   * @param event The index of the event.
+   * @return The transition relation over the current and next state variables of the automata with the event in their
+   * alphabet.
+   */
+  private int buildRelation(int event) {
+    int relation = BddManager.TRUE;
+    for (int i = 0; i < transitions.length; i++) {
+      if (transitions[i][event] == CompiledModel.NOT_IN_ALPHABET) continue;
+
+      int local = BddManager.FALSE;
+      for (int s = 0; s < stateCounts[i]; s++) {
+        int target = transitions[i][s * eventCount + event];
+        if (target >= 0) local = bdd.or(local, buildTransition(i, s, target));
+      }
+      relation = bdd.and(relation, local);
+    }
+
+    return relation;
+  }
+
+  /**
+   * Builds the conjunction of the current state variables of the automata with an event in their alphabet.
+   *
+   * @param event The index of the event.
+   * @return The cube of variables.
+   */
+  private int buildCube(int event) {
+    boolean[] quantified = new boolean[bdd.getVariableCount()];
+    for (int i = 0; i < transitions.length; i++) {
+      if (transitions[i][event] == CompiledModel.NOT_IN_ALPHABET) continue;
+      for (int position : positions[i]) quantified[position << 1] = true;
+    }
+
+    int cube = BddManager.TRUE;
+    for (int v = quantified.length - 1; v >= 0; v--) {
+      if (quantified[v]) cube = bdd.mk(v, BddManager.FALSE, cube);
+    }
+
+    return cube;
+  }
+
+  /**
+   * Builds the set of states of an automaton in which an event is enabled.
+   *
+   * @param automatonIndex Index of the automaton.
+   * @param event          The index of the event.
+   * @return The states over the current state variables of the automaton.
+   */
+  private int buildEnabled(int automatonIndex, int event) {
+    int enabled = BddManager.FALSE;
+    for (int s = 0; s < stateCounts[automatonIndex]; s++) {
+      if (transitions[automatonIndex][s * eventCount + event] >= 0) {
+        enabled = bdd.or(enabled, buildLocalState(automatonIndex, s));
+      }
+    }
+
+    return enabled;
+  }
+
+  /**
+   * Builds the set of states from which an event leads to a state tuple.
+   *
+   * @param state The index of the state of each automaton.
+   * @param event The index of the event.
+   * @return The predecessors over the current state variables.
+   */
+  private int buildPredecessors(int[] state, int event) {
+    int predecessors = BddManager.TRUE;
+    for (int i = transitions.length - 1; i >= 0; i--) {
+      int local;
+      if (transitions[i][event] == CompiledModel.NOT_IN_ALPHABET) {
+        local = buildLocalState(i, state[i]);
+      } else {
+        local = BddManager.FALSE;
+        for (int s = 0; s < stateCounts[i]; s++) {
+          if (transitions[i][s * eventCount + event] == state[i]) {
+            local = bdd.or(local, buildLocalState(i, s));
+          }
+        }
+      }
+      predecessors = bdd.and(predecessors, local);
+    }
+
+    return predecessors;
+  }
+
+  /**
+   * Builds the set containing a single state tuple.
+   *
+   * @param state The index of the state of each automaton.
+   * @return The state tuple over the current state variables.
+   */
+  private int buildState(int[] state) {
+    int result = BddManager.TRUE;
+    for (int i = 0; i < state.length; i++) result = bdd.and(result, buildLocalState(i, state[i]));
+    return result;
+  }
+
+  /**
+   * Builds the set of states where an automaton is in a given state, leaving all other automata unconstrained.
+   *
+   * @param automatonIndex Index of the automaton.
+   * @param state          The index of the state.
+   * @return The states over the current state variables of the automaton.
+   */
+  private int buildLocalState(int automatonIndex, int state) {
+    int[] bits = positions[automatonIndex];
+    int result = BddManager.TRUE;
+    for (int b = bits.length - 1; b >= 0; b--) {
+      boolean value = (state >>> (bits.length - 1 - b) & 1) != 0;
+      int variable = bits[b] << 1;
+      result = value ? bdd.mk(variable, BddManager.FALSE, result) : bdd.mk(variable, result, BddManager.FALSE);
+    }
+
+    return result;
+  }
+
+  /**
+   * Builds the transition of an automaton from a state to a target state, leaving all other automata unconstrained.
+   *
+   * @param automatonIndex Index of the automaton.
+   * @param source         The index of the source state.
+   * @param target         The index of the target state.
+   * @return The transition over the current and next state variables of the automaton.
+   */
+  private int buildTransition(int automatonIndex, int source, int target) {
+    int[] bits = positions[automatonIndex];
+    int result = BddManager.TRUE;
+    for (int b = bits.length - 1; b >= 0; b--) {
+      int shift = bits.length - 1 - b;
+      int variable = bits[b] << 1;
+      result = (target >>> shift & 1) != 0 ? bdd.mk(variable + 1, BddManager.FALSE, result)
+          : bdd.mk(variable + 1, result, BddManager.FALSE);
+      result = (source >>> shift & 1) != 0 ? bdd.mk(variable, BddManager.FALSE, result)
+          : bdd.mk(variable, result, BddManager.FALSE);
+    }
+
+    return result;
+  }
+
+  /**
+   * Converts an assignment of the current state variables to the index of the state of each automaton.
+   *
+   * @param assignment The value of each variable.
+   * @return The index of the state of each automaton.
+   */
+  private int[] decode(boolean[] assignment) {
+    int[] state = new int[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      for (int position : positions[i]) {
+        state[i] = state[i] << 1 | (assignment[position << 1] ? 1 : 0);
+      }
+    }
+
+    return state;
+  }
+}
@@ -0,0 +1,29 @@
+package net.sourceforge.waters.analysis.comp552;
+
+/**
+ * A set of visited state tuples whose codes fit in a single long, for searches that find counterexamples from their
+ * search stack and so do not need to record the previous state of each state.
+ */
+public interface VisitedStateSet {
+  /**
+   * Adds a state tuple to the set if it is not already in it.
+   *
+   * @param state The state tuple code.
+   * @return True if the state tuple was added, false if it was already in the set.
+   */
+  boolean add(long state);
+
+  /**
+   * Gets the number of slots of the set, for its load factor.
+   *
+   * @return The number of slots.
+   */
+  long getCapacity();
+
+  /**
+   * Gets the number of bytes used by the set.
+   *
+   * @return The number of bytes.
+   */
+  long getMemoryBytes();
+}
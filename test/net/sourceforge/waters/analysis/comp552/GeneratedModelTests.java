@@ -0,0 +1,197 @@
+package net.sourceforge.waters.analysis.comp552;
+
+import net.sourceforge.waters.model.analysis.AnalysisException;
+import net.sourceforge.waters.model.des.ProductDESProxy;
+import net.sourceforge.waters.model.des.ProductDESProxyFactory;
+import net.sourceforge.waters.model.des.SafetyCounterExampleProxy;
+import net.sourceforge.waters.plain.des.ProductDESElementFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests on models made by the {@link ModelGenerator}, which need no example files and so run anywhere.
+ */
+public class GeneratedModelTests {
+  private static final int FULL_STATE_COUNT = 65536;
+  private static ProductDESProxyFactory desFactory;
+
+  @BeforeClass
+  public static void setup() {
+    QuietLogConfigurationFactory.install();
+    desFactory = ProductDESElementFactory.getInstance();
+  }
+
+  /**
+   * Creates a generator of models of 8 plants with 4 states each and specifications of one state that disable
+   * nothing, which leave all {@link #FULL_STATE_COUNT} state tuples of the plants reachable.
+   *
+   * @return The generator.
+   */
+  private static ModelGenerator createFullGenerator() {
+    final ModelGenerator generator = new ModelGenerator(desFactory);
+    generator.setPlantCount(8);
+    generator.setStateCount(4);
+    generator.setSpecStateCount(1);
+    generator.setSpecRestriction(0);
+    return generator;
+  }
+
+  @Test
+  public void testRunGenerated() throws AnalysisException {
+    final ProductDESProxy model = createFullGenerator().generate();
+
+    for (StateStorage storage : StateStorage.values()) {
+      final ControllabilityChecker checker = new ControllabilityChecker(model, desFactory);
+      checker.setStateStorage(storage);
+
+      assertTrue(checker.run());
+      assertEquals(FULL_STATE_COUNT, checker.getVisitedStateCount());
+    }
+  }
+
+  @Test
+  public void testRunGeneratedExternalMemory() throws AnalysisException {
+    final ControllabilityChecker checker = new ControllabilityChecker(createFullGenerator().generate(), desFactory);
+    checker.setExplorationStrategy(ExplorationStrategy.EXTERNAL_MEMORY);
+    // a tiny budget writes more runs per level than are merged in one pass
+    checker.setMemoryBudget(1);
+
+    assertTrue(checker.run());
+    assertEquals(FULL_STATE_COUNT, checker.getVisitedStateCount());
+  }
+
+  @Test
+  public void testGeneratedNames() {
+    final ModelGenerator generator = createFullGenerator();
+    final String name = generator.generate().getName();
+    assertEquals(name, createFullGenerator().generate().getName());
+
+    // results and checkpoints are kept by name, so models with different parameters must not share one
+    generator.setSpecRestriction(0.5);
+    assertFalse(name.equals(generator.generate().getName()));
+  }
+
+  @Test
+  public void testRunGeneratedViolation() throws AnalysisException {
+    ControllabilityCounterExampleChecker verifier = new ControllabilityCounterExampleChecker();
+
+    for (int depth = 0; depth < 10; depth++) {
+      final ModelGenerator generator = new ModelGenerator(desFactory);
+      generator.setSeed(depth);
+      generator.setViolationDepth(depth);
+      final ProductDESProxy model = generator.generate();
+      final ControllabilityChecker checker = new ControllabilityChecker(model, desFactory);
+
+      assertFalse(checker.run());
+
+      SafetyCounterExampleProxy counterExample = checker.getCounterExample();
+      assertTrue(verifier.checkCounterExample(model, counterExample));
+      // the shortest counterexample takes the planted number of steps before the fault
+      assertEquals(depth + 1, counterExample.getTrace().getEvents().size());
+    }
+  }
+
+  @Test
+  public void testMetrics() throws AnalysisException {
+    final ProductDESProxy model = createFullGenerator().generate();
+    final ControllabilityChecker checker = new ControllabilityChecker(model, desFactory);
+    final ExplorationMetrics metrics = checker.getMetrics();
+    assertEquals("IDLE", metrics.getPhase());
+
+    assertTrue(checker.run());
+    assertEquals(model.getName(), metrics.getModelName());
+    assertEquals("DONE", metrics.getPhase());
+    assertEquals(checker.getVisitedStateCount(), metrics.getStatesVisited());
+    assertEquals(0, metrics.getFrontierSize());
+    assertTrue(metrics.getDepth() > 0);
+    assertTrue(metrics.getMemoryBytes() > 0);
+    assertTrue(metrics.getLoadFactor() > 0 && metrics.getLoadFactor() <= 1);
+  }
+
+  @Test
+  public void testStateLimit() throws AnalysisException {
+    final ProductDESProxy model = createFullGenerator().generate();
+
+    for (ExplorationStrategy strategy : ExplorationStrategy.values()) {
+      if (strategy == ExplorationStrategy.SYMBOLIC) continue;
+      final ControllabilityChecker checker = new ControllabilityChecker(model, desFactory);
+      checker.setExplorationStrategy(strategy);
+      checker.setStateLimit(10000);
+
+      try {
+        checker.run();
+        fail("Exploration with " + strategy + " was not stopped by the state limit.");
+      } catch (ResourceLimitException exception) {
+        assertEquals(ResourceLimitException.Limit.STATES, exception.getLimit());
+        assertTrue(exception.getStateCount() > 10000);
+        assertEquals(exception.getStateCount(), checker.getVisitedStateCount());
+        assertNull(checker.getCounterExample());
+      }
+    }
+
+    // a limit the exploration stays within does not change the result
+    final ControllabilityChecker checker = new ControllabilityChecker(model, desFactory);
+    checker.setStateLimit(FULL_STATE_COUNT);
+    assertTrue(checker.run());
+
+    // the states of all subsystems of a modular check count towards its limit
+    final ModelGenerator generator = createFullGenerator();
+    generator.setSpecCount(4);
+    generator.setAlphabetOverlap(0.5);
+    generator.setUncontrollableRatio(0.6);
+    final ProductDESProxy modularModel = generator.generate();
+    final ControllabilityChecker modular = new ControllabilityChecker(modularModel, desFactory);
+    modular.setModular(true);
+    assertTrue(modular.run());
+    final long modularStateCount = modular.getVisitedStateCount();
+
+    final ControllabilityChecker limited = new ControllabilityChecker(modularModel, desFactory);
+    limited.setModular(true);
+    limited.setStateLimit(modularStateCount - 1);
+    try {
+      limited.run();
+      fail("Modular exploration was not stopped by the state limit.");
+    } catch (ResourceLimitException exception) {
+      assertEquals(ResourceLimitException.Limit.STATES, exception.getLimit());
+      assertTrue(exception.getStateCount() >= modularStateCount);
+      assertEquals(exception.getStateCount(), limited.getVisitedStateCount());
+    }
+  }
+
+  @Test
+  public void testCheckpoint() throws AnalysisException, IOException {
+    final ProductDESProxy model = createFullGenerator().generate();
+    final Path checkpointDirectory = Files.createTempDirectory("checkpoint");
+
+    try {
+      // a run stopped by a limit leaves a checkpoint behind
+      final ControllabilityChecker first = new ControllabilityChecker(model, desFactory);
+      first.setCheckpointDirectory(checkpointDirectory.toFile());
+      first.setStateLimit(10000);
+      try {
+        first.run();
+        fail("Exploration was not stopped by the state limit.");
+      } catch (ResourceLimitException exception) {
+        assertEquals(1, checkpointDirectory.toFile().listFiles().length);
+      }
+
+      // the next run continues it and deletes the checkpoint once it is complete
+      final ControllabilityChecker second = new ControllabilityChecker(model, desFactory);
+      second.setCheckpointDirectory(checkpointDirectory.toFile());
+      assertTrue(second.run());
+      assertTrue(second.isResumed());
+      assertEquals(FULL_STATE_COUNT, second.getVisitedStateCount());
+      assertEquals(0, checkpointDirectory.toFile().listFiles().length);
+    } finally {
+      for (File file : checkpointDirectory.toFile().listFiles()) file.delete();
+      Files.delete(checkpointDirectory);
+    }
+  }
+}